@@ -1,33 +1,58 @@
 package org.example.bot;
 
-import org.example.bot.ban.types.BanType;
-import org.example.bot.ban.types.ban.info.BanInfo;
+import org.example.bot.ban.FloodControl;
+import org.example.bot.broadcast.BroadcastService;
 import org.example.bot.config.BotConfig;
+import org.example.bot.dispatcher.ChatLaneExecutor;
+import org.example.bot.dispatcher.UpdateDispatcher;
+import org.example.bot.dispatcher.UpdatePriority;
+import org.example.bot.dispatcher.UpdateScheduler;
+import org.example.bot.message.MessageBuilder;
 import org.example.bot.message.markup.MarkupSetter;
 import org.example.bot.response.CallbackResponseHandler;
 import org.example.bot.response.DocumentResponseHandler;
 import org.example.bot.response.TextResponseHandler;
+import org.example.bot.sender.OutboundScheduler;
+import org.example.bot.state.ConversationState;
+import org.example.bot.state.ConversationStateStore;
+import org.example.controller.BroadcastController;
 import org.example.controller.FilesAndFoldersController;
 import org.example.controller.LinksAndGroupsController;
 import org.example.controller.UserBansController;
 import org.example.controller.UserController;
 import org.example.database.repository.DeletionLogRepository;
+import org.example.dto.UserContext;
+import org.example.files.BlobStore;
+import org.example.files.DocumentDownloader;
 import org.example.files.FilesController;
+import org.example.files.StorageWatcher;
 import org.example.site.manager.ScheduleManager;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.concurrent.*;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class TBot extends TelegramLongPollingBot {
 
-    private ExecutorService executorService;
+    private UpdateDispatcher updateDispatcher;
+    private ChatLaneExecutor chatLaneExecutor;
+    private ConversationStateStore conversationStates;
+    private UpdateScheduler updateScheduler;
     private TextResponseHandler textResponseHandler;
     private CallbackResponseHandler callbackResponseHandler;
     private FilesController filesController;
+    private DocumentDownloader documentDownloader;
+    private StorageWatcher storageWatcher;
     private UserController userController;
     private UserBansController userBansController;
+    private FloodControl floodControl;
+    private OutboundScheduler outboundScheduler;
+    private BroadcastService broadcastService;
     private MarkupSetter markupSetter;
     private FilesAndFoldersController filesAndFoldersController;
     private LinksAndGroupsController linksAndGroupsController;
@@ -36,54 +61,101 @@ public class TBot extends TelegramLongPollingBot {
 
     public final StringBuilder notification = new StringBuilder("Нет каких либо оповещений");
 
+    private static final String BUSY_TEXT = "Бот сейчас перегружен, попробуйте еще раз через несколько секунд";
+    private static final String FLOOD_TEXT = "Слишком много запросов, подождите немного";
+
     public TBot() {
         loadConfig();
     }
 
     private void loadConfig() {
-        // Инициализация ExecutorService
-        executorService = new ThreadPoolExecutor(
+        // Инициализация диспетчера апдейтов (пул потоков или виртуальные потоки)
+        updateDispatcher = new UpdateDispatcher(
+                BotConfig.getDispatcherMode(),
                 BotConfig.getThreadPoolSize(),
                 BotConfig.getMaxThreadPoolSize(),
-                60L, TimeUnit.SECONDS,
-                new LinkedBlockingDeque<>(100)
+                BotConfig.getUpdateQueueCapacity(),
+                BotConfig.getMaxConcurrentUpdates()
+        );
+        // Апдейты одного чата выполняются по порядку, разных чатов - параллельно
+        chatLaneExecutor = new ChatLaneExecutor(updateDispatcher);
+
+        // Все исходящие запросы к Telegram идут через общую очередь с лимитами
+        outboundScheduler = new OutboundScheduler(
+                this,
+                BotConfig.getOutboundGlobalPerSecond(),
+                BotConfig.getOutboundChatPerSecond(),
+                BotConfig.getOutboundChatBurst(),
+                BotConfig.getOutboundMaxAttempts(),
+                BotConfig.getOutboundBackoffMillis()
         );
 
         // Инициализация контроллеров
         filesAndFoldersController = new FilesAndFoldersController();
-        userController = new UserController();
+        userController = new UserController(
+                Duration.ofSeconds(BotConfig.getProfileFlushSeconds()),
+                Duration.ofSeconds(BotConfig.getAdminRefreshSeconds())
+        );
         linksAndGroupsController = new LinksAndGroupsController();
         userBansController = new UserBansController();
+        floodControl = new FloodControl(
+                BotConfig.getFloodBurst(),
+                BotConfig.getFloodRefillPerMinute(),
+                BotConfig.getFloodBanThreshold(),
+                Duration.ofMinutes(BotConfig.getFloodIdleMinutes())
+        );
+
+        // Загрузка присланных документов на отдельных потоках
+        // Одинаковое содержимое хранится один раз, файлы в папках ссылаются на него
+        BlobStore blobStore = new BlobStore(BotConfig.getFileStoragePath(), filesAndFoldersController);
+        documentDownloader = new DocumentDownloader(
+                outboundScheduler, blobStore, BotConfig.getBotToken(), BotConfig.getFileStoragePath(),
+                BotConfig.getDownloadConcurrency(),
+                Duration.ofSeconds(BotConfig.getDownloadConnectTimeoutSeconds()),
+                Duration.ofSeconds(BotConfig.getDownloadReadTimeoutSeconds()),
+                BotConfig.getDownloadMaxAttempts()
+        );
 
         // Инициализация FilesController
         filesController = new FilesController(
-                this, filesAndFoldersController, BotConfig.getBotToken(),
+                filesAndFoldersController, documentDownloader, blobStore,
                 BotConfig.getFileDelimiter(), BotConfig.getFileStoragePath(),
                 BotConfig.getMaxFileSize()
         );
 
         // Инициализация кэша расписания
-        scheduleManager = new ScheduleManager();
+        scheduleManager = new ScheduleManager(Duration.ofMinutes(BotConfig.getScheduleMaxStaleMinutes()));
         // Инициализация MarkupSetter
         markupSetter = new MarkupSetter(
                 filesController, filesAndFoldersController,
-                userController, linksAndGroupsController,
-                scheduleManager
+                linksAndGroupsController, scheduleManager
+        );
+
+        // Состояния диалога (ожидание названия папки, группы или ссылки)
+        conversationStates = new ConversationStateStore(
+                Duration.ofMinutes(BotConfig.getConversationStateTtlMinutes()),
+                Duration.ofSeconds(BotConfig.getConversationStateFlushSeconds()),
+                BotConfig.isConversationStatePersistent() ? userController : null
         );
 
         // Инициализация репозитория логов удаления
         DeletionLogRepository deletionLogRepository = new DeletionLogRepository();
 
+        // Рассылки выполняются в фоне и продолжаются после перезапуска
+        broadcastService = new BroadcastService(outboundScheduler, userController, new BroadcastController());
+
         // Инициализация обработчиков ответов
         textResponseHandler = new TextResponseHandler(
                 this, markupSetter, filesAndFoldersController,
-                linksAndGroupsController, userController, userBansController
+                linksAndGroupsController, userController, userBansController,
+                conversationStates, outboundScheduler, broadcastService
         );
 
         callbackResponseHandler = new CallbackResponseHandler(
                 this, markupSetter, filesAndFoldersController,
                 linksAndGroupsController, userController, userBansController,
-                filesController, deletionLogRepository, scheduleManager
+                filesController, deletionLogRepository, scheduleManager,
+                conversationStates, outboundScheduler
         );
 
         documentResponseHandler = new DocumentResponseHandler(
@@ -94,21 +166,134 @@ public class TBot extends TelegramLongPollingBot {
         // Настройка админов
         userController.addAdminsFromProperty(BotConfig.getInitialAdmins());
 
-        // Синхронизация с БД
-        filesController.synchronizeFoldersWithDatabase();
-        filesController.synchronizeFilesWithDatabase();
+        // Изменения в хранилище мимо бота применяются по ходу работы
+        if (BotConfig.isStorageWatch()) {
+            try {
+                storageWatcher = new StorageWatcher(BotConfig.getFileStoragePath(), filesController,
+                        Duration.ofMillis(BotConfig.getStorageWatchDebounceMillis()));
+                storageWatcher.start();
+            } catch (IOException e) {
+                System.err.println("Error (TBot - storage watcher) " + e);
+            }
+        }
+
+        // Сверка папок и файлов с БД идет в фоне, бот начинает принимать апдейты сразу.
+        // Нужна для изменений, сделанных пока бот не работал
+        if (BotConfig.isStorageStartupSync() || storageWatcher == null) {
+            filesController.synchronizeInBackground();
+        }
+
+        // Незавершенные рассылки, очередь отправки уже работает
+        broadcastService.resumeUnfinished();
+
+        // Очереди по приоритету, запускаются последними, когда все обработчики готовы
+        updateScheduler = new UpdateScheduler(
+                chatLaneExecutor, updateDispatcher.getCapacity(),
+                Map.of(
+                        UpdatePriority.CALLBACK, BotConfig.getCallbackQueueCapacity(),
+                        UpdatePriority.TEXT, BotConfig.getTextQueueCapacity(),
+                        UpdatePriority.HEAVY, BotConfig.getHeavyQueueCapacity()
+                ),
+                BotConfig.getIngestWaitStrategy(),
+                userController::getChatId, this::handleUpdate, this::handleOverload
+        );
 
         // Настройка shutdown hook
-        Runtime.getRuntime().addShutdownHook(new Thread(executorService::shutdown));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            updateScheduler.shutdown();
+            conversationStates.shutdown();
+            userController.shutdown();
+            floodControl.shutdown();
+            userBansController.shutdown();
+            // Ждет, пока рассылка дождется поставленных сообщений и сохранит курсор, поэтому до outboundScheduler
+            broadcastService.shutdown();
+            documentDownloader.shutdown();
+            scheduleManager.shutdown();
+            if (storageWatcher != null) {
+                storageWatcher.shutdown();
+            }
+            outboundScheduler.shutdown();
+            updateDispatcher.shutdown();
+        }));
     }
 
     @Override
     public void onUpdateReceived(Update update) {
-        executorService.submit(() -> handleUpdate(update));
+        // Флуд отсекается до очереди, чтобы лишние апдейты не занимали места в буферах
+        if (isFlooding(update, userController.getChatId(update))) {
+            return;
+        }
+        updateScheduler.submit(update);
+    }
+
+    public String getDispatcherStats() {
+        return updateDispatcher.getStats() + "\n\n" + updateScheduler.getStats() + "\n\n" + chatLaneExecutor.getStats()
+                + "\n\n" + floodControl.getStats() + "\n\n" + outboundScheduler.getStats()
+                + "\n\n" + scheduleManager.getStats();
+    }
+
+    // Вызывается в потоке опроса, поэтому ответ отправляется асинхронно
+    private void handleOverload(Update update) {
+        long chatId = userController.getChatId(update);
+        System.err.printf("Update dropped, bot is overloaded (chatId: %d)%n", chatId);
+        sendShortNotice(update, chatId, BUSY_TEXT, "Overload");
+    }
+
+    // Короткий ответ без обращения к базе: всплывающее уведомление для callback или простое сообщение.
+    // Не ждет отправки, так как может вызываться в потоке опроса
+    private void sendShortNotice(Update update, long chatId, String text, String errorType) {
+        CompletableFuture<?> result;
+        if (update.hasCallbackQuery()) {
+            AnswerCallbackQuery answer = new AnswerCallbackQuery(update.getCallbackQuery().getId());
+            answer.setText(text);
+            result = outboundScheduler.submit(chatId, answer, errorType);
+        } else if (update.getMessage() != null) {
+            result = outboundScheduler.submit(chatId, new MessageBuilder(text, chatId).getMessage(), errorType);
+        } else {
+            return;
+        }
+        result.whenComplete((ignored, e) -> {
+            if (e != null) {
+                System.err.printf("Error (TBot - %s, chatId: %d): %s%n", errorType, chatId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Ограничение частоты апдейтов от одного чата. Вызывается в потоке опроса, поэтому ничего не ждет:
+     * апдейт, на котором выдан бан, пропускается в очередь, и о бане сообщает handleUpdate
+     *
+     * @return true, если апдейт нужно отбросить
+     */
+    private boolean isFlooding(Update update, long chatId) {
+        switch (floodControl.acquire(chatId)) {
+            case ALLOW -> {
+                return false;
+            }
+            case THROTTLE_NOTIFY -> sendShortNotice(update, chatId, FLOOD_TEXT, "Flood");
+            case BAN -> {
+                Duration duration = Duration.ofMinutes(BotConfig.getFloodBanMinutes());
+                String reason = "Слишком много запросов, блокировка на " + duration.toMinutes() + " мин.";
+                if (userBansController.tempBanUser(chatId, reason, duration)) {
+                    System.err.printf("Flood ban (chatId: %d) for %d min%n", chatId, duration.toMinutes());
+                    return false;
+                }
+            }
+            case THROTTLE -> {
+            }
+        }
+        return true;
     }
 
     private void handleUpdate(Update update) {
         try {
+            // Полный бан проверяется первым и только в памяти, до любых запросов к базе
+            long chatId = userController.getChatId(update);
+            if (userBansController.isUserFullBanned(chatId)) {
+                handleFullBan(update, chatId);
+                return;
+            }
+
             if (update.hasCallbackQuery()) {
                 handleCallbackQuery(update);
             } else if (update.getMessage() != null && update.getMessage().hasDocument()) {
@@ -122,44 +307,37 @@ public class TBot extends TelegramLongPollingBot {
         }
     }
 
+    private void handleFullBan(Update update, long chatId) {
+        if (update.hasCallbackQuery()) {
+            int messageId = update.getCallbackQuery().getMessage().getMessageId();
+            callbackResponseHandler.handleFullBan(chatId, messageId);
+        } else if (update.getMessage() != null && (update.getMessage().hasText() || update.getMessage().hasDocument())) {
+            textResponseHandler.handleTextResponse(chatId, "FullBan");
+        }
+    }
+
     private void handleCallbackQuery(Update update) {
-        long chatId = update.getCallbackQuery().getMessage().getChatId();
-        userController.checkAndAddUser(update);
+        UserContext userContext = userController.checkAndAddUser(update);
 
         String callbackData = update.getCallbackQuery().getData().trim();
         int messageId = update.getCallbackQuery().getMessage().getMessageId();
 
-        // Проверка бана
-        if (userBansController.isUserBanned(chatId)) {
-            BanInfo banInfo = userBansController.getUserBanInfo(chatId);
-            if (banInfo != null && banInfo.getBanType().equals(BanType.FULL_BAN.toString())) {
-                callbackResponseHandler.handleFullBan(chatId, messageId);
-                return;
-            }
-        }
-
-        boolean isAdmin = userController.checkAdminByChatId(chatId);
-
         // Обработка callback
         callbackResponseHandler.handleCallback(
-                chatId, callbackData, messageId, isAdmin,
+                userContext, callbackData, messageId,
                 notification.toString(), textResponseHandler
         );
     }
 
     private void handleDocument(Update update) {
         long chatId = userController.getChatId(update);
-
-        // Проверка бана
-        if (checkBanAndRespond(chatId, BanType.FULL_BAN)) {
-            return;
-        }
+        UserContext userContext = userController.checkAndAddUser(update);
 
         // Сброс статуса добавления папки
-        userController.updateCanAddFolder(chatId, (byte) 0);
+        conversationStates.reset(chatId, ConversationState.AWAITING_FOLDER_NAME);
 
         // Проверка выбранного пути
-        String userPath = userController.getFilePath(chatId);
+        String userPath = userContext.getFilePath();
         if (userPath.isEmpty()) {
             textResponseHandler.handleTextResponse(chatId, "PathCheckError");
             return;
@@ -173,36 +351,13 @@ public class TBot extends TelegramLongPollingBot {
 
     private void handleTextMessage(Update update) {
         long chatId = userController.getChatId(update);
-
-        // Проверка бана (полный бан)
-        if (checkBanAndRespond(chatId, BanType.FULL_BAN)) {
-            textResponseHandler.handleTextResponse(chatId, "FullBan");
-            return;
-        }
-
         String text = update.getMessage().getText();
-        userController.checkAndAddUser(update);
+        UserContext userContext = userController.checkAndAddUser(update);
 
         logMessage(chatId, text);
 
         // Обработка команд
-        textResponseHandler.handleTextResponse(chatId, text);
-    }
-
-    private boolean checkBanAndRespond(long chatId, BanType banType) {
-        if (userBansController.isUserBanned(chatId)) {
-            BanInfo banInfo = userBansController.getUserBanInfo(chatId);
-            if (banInfo != null) {
-                if (banType == BanType.FULL_BAN && banInfo.getBanType().equals(BanType.FULL_BAN.toString())) {
-                    textResponseHandler.handleTextResponse(chatId, "FullBan");
-                    return true;
-                } else if (banType == BanType.SHARING_BAN && banInfo.getBanType().equals(BanType.SHARING_BAN.toString())) {
-                    textResponseHandler.handleTextResponse(chatId, "SharingBan");
-                    return true;
-                }
-            }
-        }
-        return false;
+        textResponseHandler.handleTextResponse(userContext, text);
     }
 
     public void logMessage(long chatId, String text) {
@@ -0,0 +1,220 @@
+package org.example.bot.ban;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограничение входящих апдейтов по chatId (token bucket).
+ * Каждому чату доступно burst апдейтов подряд, дальше токены восстанавливаются с заданной скоростью.
+ * Апдейты сверх лимита отбрасываются, а если чат продолжает слать их, не дожидаясь полного восстановления,
+ * то после banThreshold отброшенных апдейтов возвращается BAN.
+ * Состояние хранится в таблицах с открытой адресацией по примитивным long, разбитых на сегменты со своими блокировками.
+ * Чаты, от которых давно ничего не приходило, периодически удаляются
+ */
+public class FloodControl {
+    public enum Decision {
+        ALLOW,
+        // Первый отброшенный апдейт в серии, пользователю стоит ответить один раз
+        THROTTLE_NOTIFY,
+        THROTTLE,
+        BAN
+    }
+
+    private static final int STRIPES = 16;
+
+    private final int burst;
+    private final double tokensPerNano;
+    private final int banThreshold;
+    private final long idleNanos;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder bans = new LongAdder();
+
+    public FloodControl(int burst, double refillPerMinute, int banThreshold, Duration idleTimeout) {
+        this.burst = burst;
+        this.tokensPerNano = refillPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.banThreshold = banThreshold;
+        // Раньше полного восстановления удалять нельзя, иначе чат получит новый полный запас
+        long fullRefillNanos = (long) Math.ceil(burst / tokensPerNano);
+        this.idleNanos = Math.max(idleTimeout.toNanos(), fullRefillNanos);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "flood-control");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(idleNanos) / 2);
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                evictIdle();
+            } catch (RuntimeException e) {
+                System.err.printf("Error (FloodControl - scheduled eviction): %s%n", e);
+            }
+        }, period, period, TimeUnit.SECONDS);
+    }
+
+    private static int hash(long chatId) {
+        long h = chatId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public Decision acquire(long chatId) {
+        int hash = hash(chatId);
+        // Старшие биты выбирают сегмент, младшие - слот внутри него
+        Stripe stripe = stripes[(hash >>> 28) & (STRIPES - 1)];
+        Decision decision;
+        synchronized (stripe) {
+            decision = stripe.acquire(chatId, hash, System.nanoTime());
+        }
+        switch (decision) {
+            case ALLOW -> allowed.increment();
+            case BAN -> bans.increment();
+            default -> throttled.increment();
+        }
+        return decision;
+    }
+
+    /**
+     * Удаляет чаты, простаивающие дольше idleTimeout
+     *
+     * @return количество удаленных чатов
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                evicted += stripe.evictIdle(now);
+            }
+        }
+        return evicted;
+    }
+
+    public int getTrackedCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.size;
+            }
+        }
+        return count;
+    }
+
+    public String getStats() {
+        return String.format("""
+                Контроль флуда: отслеживается чатов %d
+                Пропущено апдейтов: %d, отброшено: %d, временных банов: %d""",
+                getTrackedCount(), allowed.sum(), throttled.sum(), bans.sum());
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Сегмент таблицы. Все методы вызываются под блокировкой сегмента
+     */
+    private final class Stripe {
+        private long[] keys;
+        private boolean[] used;
+        private double[] tokens;
+        private long[] lastRefill;
+        // Отброшенные апдейты с момента, когда запас токенов был полным
+        private int[] strikes;
+        private int mask;
+        private int size;
+
+        private Stripe() {
+            allocate(16);
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            used = new boolean[capacity];
+            tokens = new double[capacity];
+            lastRefill = new long[capacity];
+            strikes = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private Decision acquire(long chatId, int hash, long now) {
+            int index = hash & mask;
+            while (used[index] && keys[index] != chatId) {
+                index = (index + 1) & mask;
+            }
+            if (!used[index]) {
+                if ((size + 1) * 2 > keys.length) {
+                    resize(keys.length << 1, now, false);
+                    return acquire(chatId, hash, now);
+                }
+                used[index] = true;
+                keys[index] = chatId;
+                tokens[index] = burst;
+                lastRefill[index] = now;
+                strikes[index] = 0;
+                size++;
+            }
+
+            double available = Math.min(burst, tokens[index] + (now - lastRefill[index]) * tokensPerNano);
+            lastRefill[index] = now;
+            if (available >= burst) {
+                strikes[index] = 0;
+            }
+            if (available >= 1) {
+                tokens[index] = available - 1;
+                return Decision.ALLOW;
+            }
+            tokens[index] = available;
+            int strike = ++strikes[index];
+            if (strike >= banThreshold) {
+                strikes[index] = 0;
+                return Decision.BAN;
+            }
+            return strike == 1 ? Decision.THROTTLE_NOTIFY : Decision.THROTTLE;
+        }
+
+        private int evictIdle(long now) {
+            int before = size;
+            resize(keys.length, now, true);
+            // Сжатие после всплеска, чтобы таблица не оставалась большой
+            while (keys.length > 16 && size * 8 < keys.length) {
+                resize(keys.length >> 1, now, false);
+            }
+            return before - size;
+        }
+
+        // Пересобирает таблицу заданного размера, при dropIdle пропускает простаивающие чаты
+        private void resize(int capacity, long now, boolean dropIdle) {
+            long[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            double[] oldTokens = tokens;
+            long[] oldLastRefill = lastRefill;
+            int[] oldStrikes = strikes;
+            allocate(capacity);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (!oldUsed[i] || (dropIdle && now - oldLastRefill[i] >= idleNanos)) {
+                    continue;
+                }
+                int index = hash(oldKeys[i]) & mask;
+                while (used[index]) {
+                    index = (index + 1) & mask;
+                }
+                used[index] = true;
+                keys[index] = oldKeys[i];
+                tokens[index] = oldTokens[i];
+                lastRefill[index] = oldLastRefill[i];
+                strikes[index] = oldStrikes[i];
+                size++;
+            }
+        }
+    }
+}
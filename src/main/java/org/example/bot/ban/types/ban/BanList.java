@@ -1,30 +1,161 @@
 package org.example.bot.ban.types.ban;
 
+import org.example.bot.ban.types.BanType;
 import org.example.bot.ban.types.ban.info.BanInfo;
 
-import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Баны по chatId: таблица с открытой адресацией по примитивным long, копируемая при записи.
+ * Баны меняются редко, а проверяются на каждом апдейте из разных потоков, поэтому чтение идет
+ * без блокировок по неизменяемому снимку, а запись (под блокировкой) собирает новую таблицу и подменяет ссылку
+ */
 public class BanList {
-    private final Map<Long, BanInfo> banList;
+    private static final String FULL_BAN = BanType.FULL_BAN.toString();
+
+    private static final class Table {
+        private final long[] keys;
+        // Пустой слот - null в values, так chatId может быть любым числом
+        private final BanInfo[] values;
+        private final boolean[] fullBan;
+        private final long[] expiresAt;
+        private final int mask;
+        private final int size;
+
+        private Table(int size) {
+            int capacity = 16;
+            // Заполнение не больше половины, чтобы цепочки проб оставались короткими
+            while (capacity < size * 2) {
+                capacity <<= 1;
+            }
+            keys = new long[capacity];
+            values = new BanInfo[capacity];
+            fullBan = new boolean[capacity];
+            expiresAt = new long[capacity];
+            mask = capacity - 1;
+            this.size = size;
+        }
+
+        private int indexOf(long chatId) {
+            int index = hash(chatId) & mask;
+            while (values[index] != null) {
+                if (keys[index] == chatId) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void insert(long chatId, BanInfo banInfo) {
+            int index = hash(chatId) & mask;
+            while (values[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = chatId;
+            values[index] = banInfo;
+            fullBan[index] = FULL_BAN.equals(banInfo.getBanType());
+            expiresAt[index] = banInfo.getExpiresAt();
+        }
+
+        // Индекс действующего бана или -1, истекший временный бан считается снятым
+        private int activeIndexOf(long chatId) {
+            int index = indexOf(chatId);
+            if (index >= 0 && expiresAt[index] != 0 && expiresAt[index] <= System.currentTimeMillis()) {
+                return -1;
+            }
+            return index;
+        }
+    }
+
+    private volatile Table table;
 
     public BanList(Map<Long, BanInfo> map) {
-        banList = new HashMap<>(map);
+        Table initial = new Table(map.size());
+        map.forEach(initial::insert);
+        table = initial;
+    }
+
+    private static int hash(long chatId) {
+        long h = chatId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
     }
 
     public boolean isUserBanned(long chatId) {
-        return banList.containsKey(chatId);
+        return table.activeIndexOf(chatId) >= 0;
+    }
+
+    /**
+     * Проверка полного бана без обращения к BanInfo и сравнения строк
+     */
+    public boolean isUserFullBanned(long chatId) {
+        Table current = table;
+        int index = current.activeIndexOf(chatId);
+        return index >= 0 && current.fullBan[index];
     }
 
     public BanInfo getBanInfo(long chatId) {
-        return banList.get(chatId);
+        Table current = table;
+        int index = current.activeIndexOf(chatId);
+        return index >= 0 ? current.values[index] : null;
+    }
+
+    public synchronized void addToList(long chatId, BanInfo banInfo) {
+        Table current = table;
+        boolean exists = current.indexOf(chatId) >= 0;
+        Table next = new Table(exists ? current.size : current.size + 1);
+        copy(current, next, chatId);
+        next.insert(chatId, banInfo);
+        table = next;
+    }
+
+    public synchronized void removeFromList(long chatId) {
+        Table current = table;
+        if (current.indexOf(chatId) < 0) {
+            return;
+        }
+        Table next = new Table(current.size - 1);
+        copy(current, next, chatId);
+        table = next;
+    }
+
+    /**
+     * Убирает истекшие временные баны из таблицы
+     *
+     * @return количество снятых банов
+     */
+    public synchronized int removeExpired() {
+        Table current = table;
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (int i = 0; i < current.values.length; i++) {
+            if (current.values[i] != null && current.expiresAt[i] != 0 && current.expiresAt[i] <= now) {
+                expired++;
+            }
+        }
+        if (expired == 0) {
+            return 0;
+        }
+        Table next = new Table(current.size - expired);
+        for (int i = 0; i < current.values.length; i++) {
+            if (current.values[i] != null && (current.expiresAt[i] == 0 || current.expiresAt[i] > now)) {
+                next.insert(current.keys[i], current.values[i]);
+            }
+        }
+        table = next;
+        return expired;
     }
 
-    public void addToList(long chatId, BanInfo banInfo) {
-        banList.put(chatId, banInfo);
+    public int size() {
+        return table.size;
     }
 
-    public void removeFromList(long chatId) {
-        banList.remove(chatId);
+    // Переносит все записи, кроме skipChatId
+    private static void copy(Table from, Table to, long skipChatId) {
+        for (int i = 0; i < from.values.length; i++) {
+            if (from.values[i] != null && from.keys[i] != skipChatId) {
+                to.insert(from.keys[i], from.values[i]);
+            }
+        }
     }
 }
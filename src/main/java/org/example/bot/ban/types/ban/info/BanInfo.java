@@ -4,11 +4,14 @@ public class BanInfo {
     private String reason;
     private String banType;
     private long adminChatId;
+    // Время окончания бана в миллисекундах, 0 - бессрочный
+    private long expiresAt;
 
     private BanInfo(Builder builder) {
         this.banType = builder.banType;
         this.reason = builder.reason;
         this.adminChatId = builder.adminChatId;
+        this.expiresAt = builder.expiresAt;
     }
 
     public String getBanType() {
@@ -23,6 +26,14 @@ public class BanInfo {
         return adminChatId;
     }
 
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isTemporary() {
+        return expiresAt != 0;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -31,6 +42,7 @@ public class BanInfo {
         private String reason;
         private String banType;
         private long adminChatId;
+        private long expiresAt;
 
         public Builder reason(String reason) {
             this.reason = reason;
@@ -47,6 +59,11 @@ public class BanInfo {
             return this;
         }
 
+        public Builder expiresAt(long expiresAt) {
+            this.expiresAt = expiresAt;
+            return this;
+        }
+
         public BanInfo build() {
             return new BanInfo(this);
         }
@@ -0,0 +1,11 @@
+package org.example.bot.broadcast;
+
+/**
+ * Кому отправляется рассылка
+ */
+public enum BroadcastSegment {
+    ALL,
+    // Пользователи с выбранной группой расписания (users.GroupId)
+    GROUP,
+    ADMINS
+}
@@ -0,0 +1,279 @@
+package org.example.bot.broadcast;
+
+import org.example.bot.message.EditMessageBuilder;
+import org.example.bot.message.MessageBuilder;
+import org.example.bot.sender.OutboundScheduler;
+import org.example.controller.BroadcastController;
+import org.example.controller.UserController;
+import org.example.dto.BroadcastDTO;
+import org.example.dto.ChatIdPage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Рассылка сообщений пользователям (/sendToAll).
+ * Получатели читаются из users страницами по Id, сообщения отправляются через OutboundScheduler
+ * с ограниченным числом одновременно ожидающих отправки, чтобы ответы остальным пользователям не ждали всю рассылку.
+ * Каждые SAVE_EVERY получателей и после каждой страницы в таблицу broadcasts записывается Id последнего
+ * обработанного получателя, поэтому незавершенная рассылка продолжается после перезапуска бота.
+ * Админ, запустивший рассылку, получает сообщение с прогрессом, скоростью и оставшимся временем
+ */
+public class BroadcastService {
+    private static final int PAGE_SIZE = 200;
+    // Сколько сообщений рассылки может одновременно стоять в очереди отправки
+    private static final int IN_FLIGHT = 10;
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // Через сколько обработанных получателей сохраняется курсор внутри страницы
+    private static final int SAVE_EVERY = 20;
+    // Сколько остановка бота ждет, пока рассылка дождется уже отправленных и сохранит курсор
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 15;
+
+    private final OutboundScheduler sender;
+    private final UserController userController;
+    private final BroadcastController broadcastController;
+    // Рассылки выполняются по одной
+    private final ExecutorService executor;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean stopping;
+
+    public BroadcastService(OutboundScheduler sender, UserController userController,
+                            BroadcastController broadcastController) {
+        this.sender = sender;
+        this.userController = userController;
+        this.broadcastController = broadcastController;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "broadcast");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запускает рассылку в фоне
+     *
+     * @return false, если уже идет другая рассылка или ее не удалось сохранить
+     */
+    public boolean start(long adminChatId, BroadcastSegment segment, String groupId, String text) {
+        if (!pending.compareAndSet(0, 1)) {
+            return false;
+        }
+        BroadcastDTO broadcast = BroadcastDTO.builder()
+                .adminChatId(adminChatId)
+                .text(text)
+                .segment(segment)
+                .segmentValue(groupId)
+                .total(userController.countUsers(segment, groupId))
+                .build();
+        long id = broadcastController.addBroadcast(broadcast);
+        if (id < 0) {
+            pending.decrementAndGet();
+            return false;
+        }
+        BroadcastDTO saved = BroadcastDTO.builder()
+                .id(id)
+                .adminChatId(adminChatId)
+                .text(text)
+                .segment(segment)
+                .segmentValue(groupId)
+                .total(broadcast.getTotal())
+                .build();
+        executor.execute(() -> runSafely(saved));
+        return true;
+    }
+
+    /**
+     * Продолжает рассылки, прерванные остановкой бота
+     */
+    public void resumeUnfinished() {
+        List<BroadcastDTO> unfinished = broadcastController.getUnfinishedBroadcasts();
+        for (BroadcastDTO broadcast : unfinished) {
+            pending.incrementAndGet();
+            System.out.printf("Resume broadcast %d from user id %d%n", broadcast.getId(), broadcast.getLastUserId());
+            executor.execute(() -> runSafely(broadcast));
+        }
+    }
+
+    public boolean isRunning() {
+        return pending.get() > 0;
+    }
+
+    private void runSafely(BroadcastDTO broadcast) {
+        try {
+            run(broadcast);
+        } catch (RuntimeException e) {
+            // Статус остается RUNNING, рассылка продолжится после перезапуска
+            System.err.printf("Error (BroadcastService - broadcast: %d): %s%n", broadcast.getId(), e);
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    private void run(BroadcastDTO broadcast) {
+        if (stopping) {
+            return;
+        }
+        long id = broadcast.getId();
+        long adminChatId = broadcast.getAdminChatId();
+        Progress progress = new Progress(broadcast.getLastUserId(), broadcast.getSent(), broadcast.getFailed());
+        int processedBefore = progress.processed();
+
+        Integer progressMessageId = sendProgressMessage(adminChatId,
+                formatProgress(broadcast, progress.sent, progress.failed, 0, 0));
+        long startedAt = System.nanoTime();
+        long lastReport = startedAt;
+
+        ArrayDeque<CompletableFuture<?>> inFlight = new ArrayDeque<>(IN_FLIGHT);
+        ArrayDeque<Long> inFlightIds = new ArrayDeque<>(IN_FLIGHT);
+        boolean interrupted = false;
+        while (!stopping && !interrupted) {
+            ChatIdPage page = userController.getChatIdPage(broadcast.getSegment(), broadcast.getSegmentValue(),
+                    progress.cursor, PAGE_SIZE);
+            if (page == null) {
+                // Ошибка базы: прогресс сохранен, рассылка продолжится после перезапуска
+                return;
+            }
+            if (page.isEmpty()) {
+                break;
+            }
+            for (int i = 0; i < page.size() && !stopping && !interrupted; i++) {
+                long chatId = page.getChatId(i);
+                inFlight.addLast(sender.submit(chatId, new MessageBuilder(broadcast.getText(), chatId).getMessage(),
+                        "Broadcast"));
+                inFlightIds.addLast(page.getId(i));
+                if (inFlight.size() >= IN_FLIGHT) {
+                    interrupted = !complete(id, progress, inFlight.pollFirst(), inFlightIds.pollFirst());
+                }
+            }
+            // Дожидаемся отправленных, чтобы сохраненный курсор покрывал только обработанных.
+            // После остановки очереди курсор дальше не двигается, эти получатели будут обработаны после перезапуска
+            while (!inFlight.isEmpty()) {
+                CompletableFuture<?> future = inFlight.pollFirst();
+                long userId = inFlightIds.pollFirst();
+                if (!interrupted && !complete(id, progress, future, userId)) {
+                    interrupted = true;
+                }
+            }
+            broadcastController.updateProgress(id, progress.cursor, progress.sent, progress.failed);
+
+            long now = System.nanoTime();
+            if (progressMessageId != null && now - lastReport >= REPORT_INTERVAL_NANOS) {
+                lastReport = now;
+                editProgressMessage(adminChatId, progressMessageId, formatProgress(broadcast, progress.sent,
+                        progress.failed, progress.processed() - processedBefore, now - startedAt));
+            }
+        }
+        if (stopping || interrupted) {
+            return;
+        }
+
+        broadcastController.finishBroadcast(id);
+        String result = String.format("Рассылка #%d завершена: доставлено %d, ошибок %d", id, progress.sent, progress.failed);
+        if (progressMessageId != null) {
+            editProgressMessage(adminChatId, progressMessageId, result);
+        } else {
+            sender.submit(adminChatId, new MessageBuilder(result, adminChatId).getMessage(), "BroadcastDone");
+        }
+        System.out.println(result);
+    }
+
+    /**
+     * Дожидается отправки следующего по порядку сообщения и сдвигает курсор на его получателя.
+     * Каждые SAVE_EVERY получателей прогресс сохраняется, чтобы при аварийной остановке повторно
+     * получили сообщение не больше SAVE_EVERY + IN_FLIGHT человек
+     *
+     * @return false, если очередь отправки остановлена: получатель не считается обработанным
+     */
+    private boolean complete(long id, Progress progress, CompletableFuture<?> future, long userId) {
+        try {
+            future.join();
+            progress.sent++;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof OutboundScheduler.SchedulerStoppedException) {
+                return false;
+            }
+            // Пользователь заблокировал бота или удалил чат
+            progress.failed++;
+        }
+        progress.cursor = userId;
+        if (++progress.unsaved >= SAVE_EVERY) {
+            broadcastController.updateProgress(id, progress.cursor, progress.sent, progress.failed);
+            progress.unsaved = 0;
+        }
+        return true;
+    }
+
+    private Integer sendProgressMessage(long adminChatId, String text) {
+        try {
+            Message message = sender.execute(adminChatId, new MessageBuilder(text, adminChatId).getMessage(),
+                    "BroadcastProgress");
+            return message.getMessageId();
+        } catch (TelegramApiException e) {
+            System.err.printf("Error (BroadcastService - context: BroadcastProgress, chatId: %d): %s%n",
+                    adminChatId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void editProgressMessage(long adminChatId, int messageId, String text) {
+        sender.submit(adminChatId, new EditMessageBuilder(adminChatId, text, messageId).getMessage(), "BroadcastProgress");
+    }
+
+    private static String formatProgress(BroadcastDTO broadcast, int sent, int failed, int processedNow, long elapsedNanos) {
+        int processed = sent + failed;
+        StringBuilder text = new StringBuilder(String.format("Рассылка #%d: обработано %d из %d (ошибок %d)",
+                broadcast.getId(), processed, broadcast.getTotal(), failed));
+        if (processedNow > 0 && elapsedNanos > 0) {
+            double perSecond = processedNow / (elapsedNanos / 1e9);
+            long remaining = Math.max(0, broadcast.getTotal() - processed);
+            Duration eta = Duration.ofSeconds((long) Math.ceil(remaining / perSecond));
+            text.append(String.format("%nСкорость: %.1f сообщ./с, осталось примерно %d мин %d с",
+                    perSecond, eta.toMinutes(), eta.toSecondsPart()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Останавливает рассылку: новые сообщения не ставятся в очередь, уже поставленные дожидаются отправки
+     * и курсор сохраняется. Вызывать до остановки OutboundScheduler
+     */
+    public void shutdown() {
+        stopping = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.printf("Error (BroadcastService - shutdown): broadcast did not stop in %d s%n",
+                        SHUTDOWN_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Состояние рассылки в потоке broadcast
+    private static final class Progress {
+        private long cursor;
+        private int sent;
+        private int failed;
+        private int unsaved;
+
+        private Progress(long cursor, int sent, int failed) {
+            this.cursor = cursor;
+            this.sent = sent;
+            this.failed = failed;
+        }
+
+        private int processed() {
+            return sent + failed;
+        }
+    }
+}
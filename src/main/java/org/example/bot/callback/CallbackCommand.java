@@ -0,0 +1,72 @@
+package org.example.bot.callback;
+
+import java.time.LocalDate;
+
+/**
+ * Разобранные callback данные: тип команды и уже декодированный аргумент
+ */
+public class CallbackCommand {
+    private static final CallbackCommand[] WITHOUT_ARGS = new CallbackCommand[CallbackType.values().length];
+
+    static {
+        for (CallbackType type : CallbackType.values()) {
+            WITHOUT_ARGS[type.ordinal()] = new CallbackCommand(type, 0, null, null);
+        }
+    }
+
+    private final CallbackType type;
+    private final long id;
+    private final String text;
+    private final LocalDate date;
+
+    private CallbackCommand(CallbackType type, long id, String text, LocalDate date) {
+        this.type = type;
+        this.id = id;
+        this.text = text;
+        this.date = date;
+    }
+
+    public static CallbackCommand of(CallbackType type) {
+        return WITHOUT_ARGS[type.ordinal()];
+    }
+
+    public static CallbackCommand withId(CallbackType type, long id) {
+        return new CallbackCommand(type, id, null, null);
+    }
+
+    public static CallbackCommand withText(CallbackType type, String text) {
+        return new CallbackCommand(type, 0, text, null);
+    }
+
+    public static CallbackCommand withDate(CallbackType type, LocalDate date) {
+        return new CallbackCommand(type, 0, null, date);
+    }
+
+    public CallbackType getType() {
+        return type;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    @Override
+    public String toString() {
+        if (text != null) {
+            return type + "(" + text + ")";
+        } else if (date != null) {
+            return type + "(" + date + ")";
+        } else if (type.getFormat() != CallbackType.Format.EXACT) {
+            return type + "(" + id + ")";
+        }
+        return type.toString();
+    }
+}
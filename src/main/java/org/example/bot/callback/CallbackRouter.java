@@ -0,0 +1,161 @@
+package org.example.bot.callback;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Разбирает callback данные в CallbackCommand за один проход по строке без регулярных выражений.
+ * Точные команды ищутся в хэш-таблице, суффиксы - в префиксном дереве, построенном по перевернутым суффиксам,
+ * которое обходится с конца строки. Маркеры Year/Group проверяются последними, как и в старой цепочке проверок
+ */
+public class CallbackRouter {
+    private static final int ALPHABET = 128;
+    private static final int MAX_ID_DIGITS = 18;
+
+    private final Map<String, CallbackType> exactCommands = new HashMap<>();
+    private final Node suffixRoot = new Node();
+
+    private static class Node {
+        private final Node[] next = new Node[ALPHABET];
+        private CallbackType type;
+    }
+
+    public CallbackRouter() {
+        for (CallbackType type : CallbackType.values()) {
+            switch (type.getFormat()) {
+                case EXACT -> {
+                    if (type != CallbackType.UNKNOWN) {
+                        exactCommands.put(type.getToken(), type);
+                    }
+                }
+                case ID_SUFFIX, TEXT_SUFFIX, DATE_SUFFIX -> addSuffix(type);
+                default -> {
+                }
+            }
+        }
+    }
+
+    private void addSuffix(CallbackType type) {
+        String suffix = type.getToken();
+        Node node = suffixRoot;
+        for (int i = suffix.length() - 1; i >= 0; i--) {
+            char c = suffix.charAt(i);
+            if (node.next[c] == null) {
+                node.next[c] = new Node();
+            }
+            node = node.next[c];
+        }
+        node.type = type;
+    }
+
+    public CallbackCommand route(String data) {
+        CallbackType exact = exactCommands.get(data);
+        if (exact != null) {
+            return CallbackCommand.of(exact);
+        }
+        CallbackCommand bySuffix = routeBySuffix(data);
+        if (bySuffix != null) {
+            return bySuffix;
+        }
+        return routeByMarker(data);
+    }
+
+    private CallbackCommand routeBySuffix(String data) {
+        Node node = suffixRoot;
+        CallbackType matched = null;
+        int argumentEnd = -1;
+        for (int i = data.length() - 1; i >= 0; i--) {
+            char c = data.charAt(i);
+            if (c >= ALPHABET || node.next[c] == null) {
+                break;
+            }
+            node = node.next[c];
+            if (node.type != null) {
+                matched = node.type;
+                argumentEnd = i;
+            }
+        }
+        if (matched == null) {
+            return null;
+        }
+
+        switch (matched.getFormat()) {
+            case ID_SUFFIX -> {
+                long id = parseId(data, 0, argumentEnd);
+                return id < 0 ? null : CallbackCommand.withId(matched, id);
+            }
+            case DATE_SUFFIX -> {
+                LocalDate date = parseIsoDate(data, argumentEnd);
+                return date == null ? null : CallbackCommand.withDate(matched, date);
+            }
+            default -> {
+                return CallbackCommand.withText(matched, data.substring(0, argumentEnd));
+            }
+        }
+    }
+
+    private CallbackCommand routeByMarker(String data) {
+        String yearMarker = CallbackType.YEAR.getToken();
+        int yearIndex = data.indexOf(yearMarker);
+        if (yearIndex != -1) {
+            long year = parseId(data, yearIndex + yearMarker.length(), data.length());
+            if (year >= 0) {
+                return CallbackCommand.withId(CallbackType.YEAR, year);
+            }
+        }
+
+        String groupMarker = CallbackType.GROUP.getToken();
+        int groupIndex = data.indexOf(groupMarker);
+        if (groupIndex != -1) {
+            int start = groupIndex + groupMarker.length();
+            // Если есть "=", пропускаем его
+            if (start < data.length() && data.charAt(start) == '=') {
+                start++;
+            }
+            if (start < data.length()) {
+                return CallbackCommand.withText(CallbackType.GROUP, data.substring(start));
+            }
+        }
+        return CallbackCommand.of(CallbackType.UNKNOWN);
+    }
+
+    /**
+     * Неотрицательное число из символов [from, to), -1 если там не только цифры
+     */
+    private static long parseId(String data, int from, int to) {
+        if (from >= to || to - from > MAX_ID_DIGITS) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = data.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Дата в формате yyyy-MM-dd, которая занимает строку до позиции end
+     */
+    private static LocalDate parseIsoDate(String data, int end) {
+        if (end != 10 || data.charAt(4) != '-' || data.charAt(7) != '-') {
+            return null;
+        }
+        long year = parseId(data, 0, 4);
+        long month = parseId(data, 5, 7);
+        long day = parseId(data, 8, 10);
+        if (year < 0 || month < 0 || day < 0) {
+            return null;
+        }
+        try {
+            return LocalDate.of((int) year, (int) month, (int) day);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.bot.callback;
+
+import java.time.LocalDate;
+
+/**
+ * Все виды callback данных кнопок и то, как в них закодирован аргумент.
+ * Используется и для разбора нажатий (CallbackRouter), и для создания callback данных кнопок
+ */
+public enum CallbackType {
+    // Команды без аргументов
+    HELP("Help", Format.EXACT),
+    LESSON_MENU("LessonButton", Format.EXACT),
+    BACK("BackButton", Format.EXACT),
+    FILES_MENU("FileButton", Format.EXACT),
+    ADD_FOLDER("AddFolderButton", Format.EXACT),
+    ADD_GROUP("AddGroupButton", Format.EXACT),
+    TODAY_SCHEDULE("TodayScheduleButton", Format.EXACT),
+    TOMORROW_SCHEDULE("TomorrowScheduleButton", Format.EXACT),
+    SELECT_YEAR("SelectYearButton", Format.EXACT),
+    NOTIFICATION("GetNotification", Format.EXACT),
+    DELETE_FILE_MENU("DeleteFileButton", Format.EXACT),
+    GROUP_NOT_SELECTED("GroupNotSelected", Format.EXACT),
+    LINKS_MENU("LinksButton", Format.EXACT),
+    DELETE_LINKS_MENU("DeleteLinksButton", Format.EXACT),
+    FULL_BAN("FullBan", Format.EXACT),
+    SHARING_BAN("SharingBan", Format.EXACT),
+    SIMPLE_ERROR("SimpleError", Format.EXACT),
+    ADMIN_ERROR("AdminError", Format.EXACT),
+    SCHEDULE_DAYS("ScheduleDay", Format.EXACT),
+
+    // id + суффикс
+    FOLDER_FILES_FOR_DELETE("FilesDelAdm", Format.ID_SUFFIX),
+    SEND_FILE("File", Format.ID_SUFFIX),
+    DELETE_FILE("_FDel", Format.ID_SUFFIX),
+    DELETE_LINK("_LDel", Format.ID_SUFFIX),
+    DELETE_FOLDER("_DFolder", Format.ID_SUFFIX),
+    DELETE_GROUP("_DGroup", Format.ID_SUFFIX),
+    GROUP_LINKS_FOR_DELETE("_LinkFlrDel", Format.ID_SUFFIX),
+    GROUP_LINKS("GroupForLinks", Format.ID_SUFFIX),
+    SEND_LINK("_lnk", Format.ID_SUFFIX),
+
+    // текст + суффикс
+    FOLDER("_Folder", Format.TEXT_SUFFIX),
+    SET_FILE_FOLDER("AddFileButton", Format.TEXT_SUFFIX),
+    ADD_LINK("AddLinkButton", Format.TEXT_SUFFIX),
+
+    // дата (yyyy-MM-dd) + суффикс
+    SCHEDULE_DATE("_ScheduleDate", Format.DATE_SUFFIX),
+
+    // название + маркер + значение (кнопки курсов и групп с сайта колледжа)
+    YEAR("Year", Format.ID_AFTER_MARKER),
+    GROUP("Group", Format.TEXT_AFTER_MARKER),
+
+    UNKNOWN("", Format.EXACT);
+
+    public enum Format {
+        EXACT,
+        ID_SUFFIX,
+        TEXT_SUFFIX,
+        DATE_SUFFIX,
+        ID_AFTER_MARKER,
+        TEXT_AFTER_MARKER
+    }
+
+    private final String token;
+    private final Format format;
+
+    CallbackType(String token, Format format) {
+        this.token = token;
+        this.format = format;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public String encode() {
+        return token;
+    }
+
+    public String encode(long id) {
+        return id + token;
+    }
+
+    public String encode(String text) {
+        return text + token;
+    }
+
+    public String encode(LocalDate date) {
+        return date + token;
+    }
+
+    /**
+     * Для кнопок вида "название" + маркер + значение
+     */
+    public String encode(String title, String value) {
+        return title + token + value;
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.bot.command;
+
+import org.example.dto.UserContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Выбирает обработчик текстового сообщения по самому тексту.
+ * Порядок проверок: точное совпадение, команда по первому слову ("/cmd аргументы"),
+ * шаблоны в порядке регистрации и в конце обработчик произвольного текста.
+ * Состояние диалога (ConversationStateStore, в памяти) проверяет только тот обработчик, которому оно действительно нужно
+ */
+public class TextCommandDispatcher {
+    // Как в CallbackRouter: 18 цифр всегда помещаются в long
+    private static final int MAX_ID_DIGITS = 18;
+
+    private final Map<String, TextCommandHandler> exactCommands = new HashMap<>();
+    private final Map<String, TextCommandHandler> prefixCommands = new HashMap<>();
+    private final List<PatternCommand> patternCommands = new ArrayList<>();
+    private TextCommandHandler fallback;
+
+    private static class PatternCommand {
+        private final Predicate<String> pattern;
+        private final TextCommandHandler handler;
+
+        private PatternCommand(Predicate<String> pattern, TextCommandHandler handler) {
+            this.pattern = pattern;
+            this.handler = handler;
+        }
+    }
+
+    public TextCommandDispatcher exact(String text, TextCommandHandler handler) {
+        exactCommands.put(text, handler);
+        return this;
+    }
+
+    /**
+     * Команда вида "/cmd" или "/cmd аргументы"
+     */
+    public TextCommandDispatcher prefix(String command, TextCommandHandler handler) {
+        prefixCommands.put(command, handler);
+        return this;
+    }
+
+    public TextCommandDispatcher pattern(Predicate<String> pattern, TextCommandHandler handler) {
+        patternCommands.add(new PatternCommand(pattern, handler));
+        return this;
+    }
+
+    public TextCommandDispatcher fallback(TextCommandHandler handler) {
+        this.fallback = handler;
+        return this;
+    }
+
+    /**
+     * Возвращает false, если для текста не нашлось обработчика
+     */
+    public boolean dispatch(UserContext user, String text) {
+        TextCommandHandler handler = resolve(text);
+        if (handler == null) {
+            return false;
+        }
+        handler.handle(user, text);
+        return true;
+    }
+
+    private TextCommandHandler resolve(String text) {
+        TextCommandHandler handler = exactCommands.get(text);
+        if (handler != null) {
+            return handler;
+        }
+        if (text.startsWith("/")) {
+            int end = text.indexOf(' ');
+            handler = prefixCommands.get(end == -1 ? text : text.substring(0, end));
+            if (handler != null) {
+                return handler;
+            }
+        }
+        for (PatternCommand command : patternCommands) {
+            if (command.pattern.test(text)) {
+                return command.handler;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * true если текст - это неотрицательное число, за которым сразу идет suffix, например "15File".
+     * Число длиннее MAX_ID_DIGITS не подходит: оно может не поместиться в long
+     */
+    public static boolean isIdWithSuffix(String text, String suffix) {
+        int end = text.length() - suffix.length();
+        if (end <= 0 || end > MAX_ID_DIGITS || !text.endsWith(suffix)) {
+            return false;
+        }
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,11 @@
+package org.example.bot.command;
+
+import org.example.dto.UserContext;
+
+/**
+ * Обработчик текстовой команды, получает контекст пользователя и исходный текст сообщения целиком
+ */
+@FunctionalInterface
+public interface TextCommandHandler {
+    void handle(UserContext user, String text);
+}
@@ -1,5 +1,8 @@
 package org.example.bot.config;
 
+import org.example.bot.dispatcher.DispatcherMode;
+import org.example.bot.dispatcher.WaitStrategy;
+
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -19,6 +22,36 @@ public class BotConfig {
     private static List<String> initialAdmins;
     private static int threadPoolSize;
     private static int maxThreadPoolSize;
+    private static DispatcherMode dispatcherMode;
+    private static int maxConcurrentUpdates;
+    private static int updateQueueCapacity;
+    private static int callbackQueueCapacity;
+    private static int textQueueCapacity;
+    private static int heavyQueueCapacity;
+    private static WaitStrategy ingestWaitStrategy;
+    private static int conversationStateTtlMinutes;
+    private static boolean conversationStatePersistent;
+    private static int conversationStateFlushSeconds;
+    private static int profileFlushSeconds;
+    private static int adminRefreshSeconds;
+    private static int floodBurst;
+    private static double floodRefillPerMinute;
+    private static int floodBanThreshold;
+    private static int floodBanMinutes;
+    private static int floodIdleMinutes;
+    private static double outboundGlobalPerSecond;
+    private static double outboundChatPerSecond;
+    private static int outboundChatBurst;
+    private static int outboundMaxAttempts;
+    private static long outboundBackoffMillis;
+    private static int downloadConcurrency;
+    private static int downloadConnectTimeoutSeconds;
+    private static int downloadReadTimeoutSeconds;
+    private static int downloadMaxAttempts;
+    private static boolean storageWatch;
+    private static int storageWatchDebounceMillis;
+    private static boolean storageStartupSync;
+    private static int scheduleMaxStaleMinutes;
 
     public static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy");
 
@@ -41,6 +74,36 @@ public class BotConfig {
             initialAdmins = List.of(properties.getProperty("admins", "").split(","));
             threadPoolSize = Integer.parseInt(properties.getProperty("thread_pool_size", "4"));
             maxThreadPoolSize = Integer.parseInt(properties.getProperty("max_thread_pool_size", "10"));
+            dispatcherMode = DispatcherMode.valueOf(properties.getProperty("dispatcher_mode", "VIRTUAL").trim().toUpperCase());
+            maxConcurrentUpdates = Integer.parseInt(properties.getProperty("max_concurrent_updates", "256"));
+            updateQueueCapacity = Integer.parseInt(properties.getProperty("update_queue_capacity", "100"));
+            callbackQueueCapacity = Integer.parseInt(properties.getProperty("callback_queue_capacity", "200"));
+            textQueueCapacity = Integer.parseInt(properties.getProperty("text_queue_capacity", "200"));
+            heavyQueueCapacity = Integer.parseInt(properties.getProperty("heavy_queue_capacity", "20"));
+            ingestWaitStrategy = WaitStrategy.valueOf(properties.getProperty("ingest_wait_strategy", "BLOCKING").trim().toUpperCase());
+            conversationStateTtlMinutes = Integer.parseInt(properties.getProperty("conversation_state_ttl_minutes", "15"));
+            conversationStatePersistent = Boolean.parseBoolean(properties.getProperty("conversation_state_persist", "false").trim());
+            conversationStateFlushSeconds = Integer.parseInt(properties.getProperty("conversation_state_flush_seconds", "30"));
+            profileFlushSeconds = Integer.parseInt(properties.getProperty("profile_flush_seconds", "10"));
+            adminRefreshSeconds = Integer.parseInt(properties.getProperty("admin_refresh_seconds", "300"));
+            floodBurst = Integer.parseInt(properties.getProperty("flood_burst", "20"));
+            floodRefillPerMinute = Double.parseDouble(properties.getProperty("flood_refill_per_minute", "30"));
+            floodBanThreshold = Integer.parseInt(properties.getProperty("flood_ban_threshold", "40"));
+            floodBanMinutes = Integer.parseInt(properties.getProperty("flood_ban_minutes", "10"));
+            floodIdleMinutes = Integer.parseInt(properties.getProperty("flood_idle_minutes", "10"));
+            outboundGlobalPerSecond = Double.parseDouble(properties.getProperty("outbound_global_per_second", "30"));
+            outboundChatPerSecond = Double.parseDouble(properties.getProperty("outbound_chat_per_second", "1"));
+            outboundChatBurst = Integer.parseInt(properties.getProperty("outbound_chat_burst", "3"));
+            outboundMaxAttempts = Integer.parseInt(properties.getProperty("outbound_max_attempts", "5"));
+            outboundBackoffMillis = Long.parseLong(properties.getProperty("outbound_backoff_millis", "500"));
+            downloadConcurrency = Integer.parseInt(properties.getProperty("download_concurrency", "2"));
+            downloadConnectTimeoutSeconds = Integer.parseInt(properties.getProperty("download_connect_timeout_seconds", "10"));
+            downloadReadTimeoutSeconds = Integer.parseInt(properties.getProperty("download_read_timeout_seconds", "30"));
+            downloadMaxAttempts = Integer.parseInt(properties.getProperty("download_max_attempts", "3"));
+            storageWatch = Boolean.parseBoolean(properties.getProperty("storage_watch", "true").trim());
+            storageWatchDebounceMillis = Integer.parseInt(properties.getProperty("storage_watch_debounce_millis", "2000"));
+            storageStartupSync = Boolean.parseBoolean(properties.getProperty("storage_startup_sync", "true").trim());
+            scheduleMaxStaleMinutes = Integer.parseInt(properties.getProperty("schedule_max_stale_minutes", "360"));
         } catch (IOException e) {
             throw new RuntimeException("Failed to load bot configuration", e);
         }
@@ -58,4 +121,34 @@ public class BotConfig {
     public static List<String> getInitialAdmins() { return initialAdmins; }
     public static int getThreadPoolSize() { return threadPoolSize; }
     public static int getMaxThreadPoolSize() { return maxThreadPoolSize; }
+    public static DispatcherMode getDispatcherMode() { return dispatcherMode; }
+    public static int getMaxConcurrentUpdates() { return maxConcurrentUpdates; }
+    public static int getUpdateQueueCapacity() { return updateQueueCapacity; }
+    public static int getCallbackQueueCapacity() { return callbackQueueCapacity; }
+    public static int getTextQueueCapacity() { return textQueueCapacity; }
+    public static int getHeavyQueueCapacity() { return heavyQueueCapacity; }
+    public static WaitStrategy getIngestWaitStrategy() { return ingestWaitStrategy; }
+    public static int getConversationStateTtlMinutes() { return conversationStateTtlMinutes; }
+    public static boolean isConversationStatePersistent() { return conversationStatePersistent; }
+    public static int getConversationStateFlushSeconds() { return conversationStateFlushSeconds; }
+    public static int getProfileFlushSeconds() { return profileFlushSeconds; }
+    public static int getAdminRefreshSeconds() { return adminRefreshSeconds; }
+    public static int getFloodBurst() { return floodBurst; }
+    public static double getFloodRefillPerMinute() { return floodRefillPerMinute; }
+    public static int getFloodBanThreshold() { return floodBanThreshold; }
+    public static int getFloodBanMinutes() { return floodBanMinutes; }
+    public static int getFloodIdleMinutes() { return floodIdleMinutes; }
+    public static double getOutboundGlobalPerSecond() { return outboundGlobalPerSecond; }
+    public static double getOutboundChatPerSecond() { return outboundChatPerSecond; }
+    public static int getOutboundChatBurst() { return outboundChatBurst; }
+    public static int getOutboundMaxAttempts() { return outboundMaxAttempts; }
+    public static long getOutboundBackoffMillis() { return outboundBackoffMillis; }
+    public static int getDownloadConcurrency() { return downloadConcurrency; }
+    public static int getDownloadConnectTimeoutSeconds() { return downloadConnectTimeoutSeconds; }
+    public static int getDownloadReadTimeoutSeconds() { return downloadReadTimeoutSeconds; }
+    public static int getDownloadMaxAttempts() { return downloadMaxAttempts; }
+    public static boolean isStorageWatch() { return storageWatch; }
+    public static int getStorageWatchDebounceMillis() { return storageWatchDebounceMillis; }
+    public static boolean isStorageStartupSync() { return storageStartupSync; }
+    public static int getScheduleMaxStaleMinutes() { return scheduleMaxStaleMinutes; }
 }
@@ -0,0 +1,115 @@
+package org.example.bot.dispatcher;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Выполняет задачи одного чата строго по порядку, а задачи разных чатов параллельно.
+ * Для каждого чата с незавершёнными задачами существует своя очередь (lane),
+ * которую разбирает одна задача диспетчера. Lane находится в карте ровно пока её кто-то разбирает.
+ */
+public class ChatLaneExecutor {
+    private static final int TOP_LANES_IN_STATS = 5;
+
+    private final UpdateDispatcher dispatcher;
+    private final ConcurrentHashMap<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger peakLaneLength = new AtomicInteger();
+    private final AtomicInteger peakActiveLanes = new AtomicInteger();
+    private final AtomicLong lanesStarted = new AtomicLong();
+    private final AtomicLong tasksQueued = new AtomicLong();
+
+    public ChatLaneExecutor(UpdateDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    private static class Lane {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger length = new AtomicInteger();
+    }
+
+    /**
+     * Поставить задачу в очередь чата, возвращает false если диспетчер отклонил очередь
+     */
+    public boolean submit(long chatId, Runnable task) {
+        Lane[] started = new Lane[1];
+        // Добавление происходит под блокировкой ключа, поэтому не пересекается с удалением пустой lane
+        Lane lane = lanes.compute(chatId, (id, existing) -> {
+            Lane current = existing;
+            if (current == null) {
+                current = new Lane();
+                started[0] = current;
+            }
+            current.tasks.add(task);
+            peakLaneLength.accumulateAndGet(current.length.incrementAndGet(), Math::max);
+            return current;
+        });
+        tasksQueued.incrementAndGet();
+
+        if (started[0] == null) {
+            return true;
+        }
+        lanesStarted.incrementAndGet();
+        peakActiveLanes.accumulateAndGet(lanes.size(), Math::max);
+        if (!dispatcher.dispatch(() -> drain(chatId, lane))) {
+            // Lane без обработчика зависла бы навсегда, поэтому сбрасываем её целиком
+            lanes.remove(chatId, lane);
+            return false;
+        }
+        return true;
+    }
+
+    private void drain(long chatId, Lane lane) {
+        while (true) {
+            Runnable task = lane.tasks.poll();
+            if (task == null) {
+                // Удаляем lane, только если пока мы проверяли в неё ничего не добавили
+                Lane remaining = lanes.computeIfPresent(chatId, (id, current) ->
+                        current == lane && lane.tasks.isEmpty() ? null : current);
+                if (remaining != lane) {
+                    return;
+                }
+                continue;
+            }
+            lane.length.decrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.printf("Error (ChatLaneExecutor - chatId: %d): %s%n", chatId, e);
+            }
+        }
+    }
+
+    public int getActiveLanes() {
+        return lanes.size();
+    }
+
+    public String getStats() {
+        List<long[]> lengths = new ArrayList<>();
+        long queued = 0;
+        for (var entry : lanes.entrySet()) {
+            int length = entry.getValue().length.get();
+            queued += length;
+            lengths.add(new long[]{entry.getKey(), length});
+        }
+        lengths.sort(Comparator.comparingLong((long[] lane) -> lane[1]).reversed());
+
+        StringBuilder stats = new StringBuilder();
+        stats.append(String.format("""
+                Очереди чатов: %d активных (пик %d), всего запусков %d
+                Ожидают в очередях чатов: %d, макс. длина очереди: %d
+                Всего задач: %d""",
+                lengths.size(), peakActiveLanes.get(), lanesStarted.get(),
+                queued, peakLaneLength.get(), tasksQueued.get()));
+        for (int i = 0; i < Math.min(TOP_LANES_IN_STATS, lengths.size()); i++) {
+            stats.append(String.format("%nchatId %d: %d", lengths.get(i)[0], lengths.get(i)[1]));
+        }
+        return stats.toString();
+    }
+}
@@ -0,0 +1,6 @@
+package org.example.bot.dispatcher;
+
+public enum DispatcherMode {
+    POOL,
+    VIRTUAL
+}
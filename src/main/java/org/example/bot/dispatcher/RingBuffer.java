@@ -0,0 +1,114 @@
+package org.example.bot.dispatcher;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+/**
+ * Ограниченный кольцевой буфер в стиле Disruptor: много производителей, один потребитель.
+ * Ячейки выделяются один раз при создании, производители занимают номер через CAS,
+ * а потребитель забирает элементы пачками и сдвигает свою позицию один раз за пачку.
+ * Блокировок и выделения памяти на элемент нет.
+ */
+public class RingBuffer<E> {
+    private static final VarHandle CLAIM;
+    private static final VarHandle CONSUMED;
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(int[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            CLAIM = lookup.findVarHandle(RingBuffer.class, "claimSequence", long.class);
+            CONSUMED = lookup.findVarHandle(RingBuffer.class, "consumedSequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] slots;
+    // Номер круга, в котором ячейка была опубликована; -1 - еще ни разу
+    private final int[] published;
+    private final int mask;
+    private final int shift;
+
+    // Поля разнесены заполнителями, чтобы производители и потребитель не делили одну кэш-линию
+    @SuppressWarnings("unused")
+    private long p01, p02, p03, p04, p05, p06, p07;
+    private volatile long claimSequence;
+    @SuppressWarnings("unused")
+    private long p11, p12, p13, p14, p15, p16, p17;
+    private volatile long consumedSequence;
+    @SuppressWarnings("unused")
+    private long p21, p22, p23, p24, p25, p26, p27;
+
+    public RingBuffer(int requestedCapacity) {
+        int capacity = requestedCapacity <= 2 ? 2 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+        slots = new Object[capacity];
+        published = new int[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfTrailingZeros(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published[i] = -1;
+        }
+    }
+
+    /**
+     * Добавить элемент, возвращает false если буфер заполнен
+     */
+    public boolean offer(E element) {
+        long sequence;
+        do {
+            sequence = (long) CLAIM.getVolatile(this);
+            if (sequence - (long) CONSUMED.getAcquire(this) >= slots.length) {
+                return false;
+            }
+        } while (!CLAIM.compareAndSet(this, sequence, sequence + 1));
+
+        int index = (int) sequence & mask;
+        slots[index] = element;
+        PUBLISHED.setRelease(published, index, (int) (sequence >>> shift));
+        return true;
+    }
+
+    /**
+     * Забрать до max опубликованных элементов подряд, возвращает сколько было передано в handler.
+     * Вызывается только из одного потока-потребителя
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> handler, int max) {
+        long start = (long) CONSUMED.getOpaque(this);
+        long next = start;
+        try {
+            while (next - start < max) {
+                int index = (int) next & mask;
+                if ((int) PUBLISHED.getAcquire(published, index) != (int) (next >>> shift)) {
+                    break;
+                }
+                E element = (E) slots[index];
+                slots[index] = null;
+                next++;
+                handler.accept(element);
+            }
+        } finally {
+            if (next != start) {
+                CONSUMED.setRelease(this, next);
+            }
+        }
+        return (int) (next - start);
+    }
+
+    /**
+     * true если какой-то производитель уже занял ячейку, даже если еще не опубликовал ее
+     */
+    public boolean hasClaimed() {
+        return claimSequence != consumedSequence;
+    }
+
+    public int size() {
+        return (int) Math.max(0, claimSequence - consumedSequence);
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.bot.dispatcher;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Запускает обработку апдейтов либо на пуле платформенных потоков (POOL),
+ * либо на виртуальном потоке на каждый апдейт (VIRTUAL).
+ * В режиме VIRTUAL число одновременно работающих обработчиков ограничено семафором,
+ * а ожидающие разрешения виртуальные потоки считаются очередью.
+ */
+public class UpdateDispatcher {
+    private final DispatcherMode mode;
+    private final ExecutorService executorService;
+    private final Semaphore permits;
+    private final int capacity;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakWaiting = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public UpdateDispatcher(DispatcherMode mode, int corePoolSize, int maxPoolSize,
+                            int queueCapacity, int maxConcurrency) {
+        this.mode = mode;
+        if (mode == DispatcherMode.VIRTUAL) {
+            ThreadFactory factory = Thread.ofVirtual().name("update-", 0).factory();
+            executorService = Executors.newThreadPerTaskExecutor(factory);
+            permits = new Semaphore(maxConcurrency);
+            capacity = maxConcurrency;
+        } else {
+            executorService = new ThreadPoolExecutor(
+                    corePoolSize,
+                    maxPoolSize,
+                    60L, TimeUnit.SECONDS,
+                    new LinkedBlockingDeque<>(queueCapacity)
+            );
+            permits = null;
+            capacity = maxPoolSize + queueCapacity;
+        }
+    }
+
+    /**
+     * Передать задачу на выполнение, возвращает false если задача была отклонена
+     */
+    public boolean dispatch(Runnable task) {
+        submitted.incrementAndGet();
+        try {
+            executorService.execute(() -> run(task));
+            if (permits == null) {
+                peakWaiting.accumulateAndGet(getQueueDepth(), Math::max);
+            }
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            System.err.printf("Error (UpdateDispatcher - mode: %s): update rejected, queue: %d%n",
+                    mode, getQueueDepth());
+            return false;
+        }
+    }
+
+    private void run(Runnable task) {
+        if (permits != null) {
+            int depth = waiting.incrementAndGet();
+            peakWaiting.accumulateAndGet(depth, Math::max);
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+        active.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            active.decrementAndGet();
+            completed.incrementAndGet();
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    public DispatcherMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Сколько задач может находиться в работе и в очереди одновременно без отказа
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getQueueDepth() {
+        if (executorService instanceof ThreadPoolExecutor pool) {
+            return pool.getQueue().size();
+        }
+        return waiting.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public String getStats() {
+        return String.format("""
+                Диспетчер: %s
+                В работе: %d
+                В очереди: %d (пик %d)
+                Принято: %d, обработано: %d, отклонено: %d""",
+                mode, active.get(), getQueueDepth(), peakWaiting.get(),
+                submitted.get(), completed.get(), rejected.get());
+    }
+
+    public void shutdown() {
+        executorService.shutdown();
+    }
+}
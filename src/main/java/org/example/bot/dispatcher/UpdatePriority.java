@@ -0,0 +1,37 @@
+package org.example.bot.dispatcher;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * Очереди апдейтов по приоритету, weight - сколько апдейтов берется из очереди за один раунд
+ */
+public enum UpdatePriority {
+    // Нажатия на кнопки меню - дешевые и интерактивные
+    CALLBACK(6),
+    // Текстовые сообщения и команды
+    TEXT(3),
+    // Загрузка документов - долгие операции (рассылка выполняется в фоне и сюда не относится)
+    HEAVY(1);
+
+    private final int weight;
+
+    UpdatePriority(int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public static UpdatePriority of(Update update) {
+        if (update.hasCallbackQuery()) {
+            return CALLBACK;
+        }
+        if (update.getMessage() != null) {
+            if (update.getMessage().hasDocument()) {
+                return HEAVY;
+            }
+        }
+        return TEXT;
+    }
+}
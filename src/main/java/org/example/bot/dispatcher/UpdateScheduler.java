@@ -0,0 +1,290 @@
+package org.example.bot.dispatcher;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Принимает апдейты от потока опроса в ограниченные кольцевые буферы по приоритету
+ * и по мере освобождения мест в диспетчере передает их в очереди чатов.
+ * Буферы разбираются пачками взвешенным round-robin, поэтому поток загрузок не задерживает нажатия на кнопки.
+ * Приоритет действует только между чатами: апдейт чата не обгоняет его более ранние апдейты из других буферов,
+ * а ждет их и передается в очередь чата следом.
+ * Если буфер переполнен, апдейт не теряется молча, а передается в обработчик перегрузки.
+ */
+public class UpdateScheduler {
+    private final ChatLaneExecutor chatLaneExecutor;
+    private final ToLongFunction<Update> chatIdResolver;
+    private final Consumer<Update> handler;
+    private final Consumer<Update> overloadHandler;
+
+    private final Map<UpdatePriority, RingBuffer<QueuedUpdate>> queues = new EnumMap<>(UpdatePriority.class);
+    private final Map<UpdatePriority, AtomicLong> shedCounters = new EnumMap<>(UpdatePriority.class);
+    private final Semaphore inFlight;
+    private final int inFlightLimit;
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    // Чаты, у которых есть апдейты в буферах
+    private final ConcurrentHashMap<Long, ChatOrder> chatOrders = new ConcurrentHashMap<>();
+    private final WaitStrategy waitStrategy;
+    private final Thread schedulerThread;
+    private volatile boolean parked;
+
+    public UpdateScheduler(ChatLaneExecutor chatLaneExecutor, int inFlightLimit,
+                           Map<UpdatePriority, Integer> capacities, WaitStrategy waitStrategy,
+                           ToLongFunction<Update> chatIdResolver,
+                           Consumer<Update> handler, Consumer<Update> overloadHandler) {
+        this.chatLaneExecutor = chatLaneExecutor;
+        this.chatIdResolver = chatIdResolver;
+        this.handler = handler;
+        this.overloadHandler = overloadHandler;
+        this.inFlightLimit = inFlightLimit;
+        this.inFlight = new Semaphore(inFlightLimit);
+        this.waitStrategy = waitStrategy;
+        for (UpdatePriority priority : UpdatePriority.values()) {
+            queues.put(priority, new RingBuffer<>(capacities.get(priority)));
+            shedCounters.put(priority, new AtomicLong());
+        }
+        schedulerThread = new Thread(this::runLoop, "update-scheduler");
+        schedulerThread.setDaemon(true);
+        schedulerThread.start();
+    }
+
+    /**
+     * Поставить апдейт в очередь, возвращает false если апдейт был сброшен из-за перегрузки
+     */
+    public boolean submit(Update update) {
+        UpdatePriority priority = UpdatePriority.of(update);
+        long chatId = chatIdResolver.applyAsLong(update);
+        QueuedUpdate queued = new QueuedUpdate(update, chatId, sequence.incrementAndGet());
+        // Номер регистрируется до публикации, поэтому потребитель всегда знает о более ранних апдейтах чата
+        chatOrders.compute(chatId, (id, order) -> {
+            ChatOrder current = order == null ? new ChatOrder() : order;
+            current.pending.addLast(queued.sequence);
+            return current;
+        });
+        if (!queues.get(priority).offer(queued)) {
+            List<QueuedUpdate> ready = new ArrayList<>();
+            chatOrders.compute(chatId, (id, order) -> {
+                order.pending.remove(queued.sequence);
+                order.releaseReady(ready);
+                return order.isEmpty() ? null : order;
+            });
+            ready.forEach(this::dispatchHeld);
+            shed(update, priority);
+            return false;
+        }
+        if (waitStrategy.needsSignal() && parked) {
+            LockSupport.unpark(schedulerThread);
+        }
+        return true;
+    }
+
+    private void shed(Update update, UpdatePriority priority) {
+        shedCounters.get(priority).incrementAndGet();
+        try {
+            overloadHandler.accept(update);
+        } catch (RuntimeException e) {
+            System.err.printf("Error (UpdateScheduler - overload handler, priority: %s): %s%n", priority, e);
+        }
+    }
+
+    private void runLoop() {
+        UpdatePriority[] priorities = UpdatePriority.values();
+        int[] credits = new int[priorities.length];
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // Забираем сразу все свободные места, чтобы разобрать буферы пачкой
+            int budget = 1 + inFlight.drainPermits();
+            int dispatched = 0;
+            int idle = 0;
+            while (dispatched == 0) {
+                dispatched = drainRound(priorities, credits, budget);
+                if (dispatched > 0) {
+                    break;
+                }
+                if (hasPending()) {
+                    // Во всех непустых буферах закончились кредиты - начинаем новый раунд
+                    if (!refillCredits(priorities, credits)) {
+                        // Кредиты есть, значит производитель занял ячейку, но еще не опубликовал ее
+                        Thread.yield();
+                    }
+                    continue;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                idle = awaitUpdates(idle);
+            }
+            inFlight.release(budget - dispatched);
+        }
+    }
+
+    private int drainRound(UpdatePriority[] priorities, int[] credits, int budget) {
+        int dispatched = 0;
+        for (UpdatePriority priority : priorities) {
+            int limit = Math.min(credits[priority.ordinal()], budget - dispatched);
+            if (limit > 0) {
+                int drained = queues.get(priority).drain(this::dispatch, limit);
+                credits[priority.ordinal()] -= drained;
+                dispatched += drained;
+            }
+        }
+        return dispatched;
+    }
+
+    private boolean refillCredits(UpdatePriority[] priorities, int[] credits) {
+        boolean refilled = false;
+        for (UpdatePriority priority : priorities) {
+            if (credits[priority.ordinal()] < priority.getWeight()) {
+                credits[priority.ordinal()] = priority.getWeight();
+                refilled = true;
+            }
+        }
+        return refilled;
+    }
+
+    private boolean hasPending() {
+        for (RingBuffer<QueuedUpdate> queue : queues.values()) {
+            if (queue.hasClaimed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int awaitUpdates(int idle) {
+        if (!waitStrategy.needsSignal()) {
+            return waitStrategy.idle(idle, this);
+        }
+        // Флаг выставляется до повторной проверки, поэтому производитель не пропустит спящего потребителя
+        parked = true;
+        try {
+            if (hasPending()) {
+                return idle;
+            }
+            return waitStrategy.idle(idle, this);
+        } finally {
+            parked = false;
+        }
+    }
+
+    /**
+     * Вызывается для апдейта, забранного из буфера, под занятым местом в inFlight
+     */
+    private void dispatch(QueuedUpdate queued) {
+        List<QueuedUpdate> ready = new ArrayList<>();
+        boolean[] held = new boolean[1];
+        chatOrders.compute(queued.chatId, (id, order) -> {
+            if (order.pending.peekFirst() != queued.sequence) {
+                // Более ранний апдейт чата еще в другом буфере: ждем его
+                order.held.put(queued.sequence, queued);
+                held[0] = true;
+                return order;
+            }
+            order.pending.pollFirst();
+            order.releaseReady(ready);
+            return order.isEmpty() ? null : order;
+        });
+        if (held[0]) {
+            // Отложенный апдейт не занимает место, иначе более ранние могли бы не дождаться свободного
+            inFlight.release();
+            return;
+        }
+        submitToLane(queued, true);
+        ready.forEach(this::dispatchHeld);
+    }
+
+    private void dispatchHeld(QueuedUpdate queued) {
+        submitToLane(queued, inFlight.tryAcquire());
+    }
+
+    /**
+     * @param holdsPermit апдейт занимает место в inFlight и освобождает его по завершении
+     */
+    private void submitToLane(QueuedUpdate queued, boolean holdsPermit) {
+        inFlightCount.incrementAndGet();
+        boolean accepted = chatLaneExecutor.submit(queued.chatId, () -> {
+            try {
+                handler.accept(queued.update);
+            } finally {
+                inFlightCount.decrementAndGet();
+                if (holdsPermit) {
+                    inFlight.release();
+                }
+            }
+        });
+        if (!accepted) {
+            inFlightCount.decrementAndGet();
+            if (holdsPermit) {
+                inFlight.release();
+            }
+            shed(queued.update, UpdatePriority.of(queued.update));
+        }
+    }
+
+    public String getStats() {
+        StringBuilder stats = new StringBuilder(String.format("Ожидание входящих: %s%nВ обработке: %d / %d",
+                waitStrategy, inFlightCount.get(), inFlightLimit));
+        for (UpdatePriority priority : UpdatePriority.values()) {
+            RingBuffer<QueuedUpdate> queue = queues.get(priority);
+            stats.append(String.format("%n%s: в очереди %d / %d, сброшено %d",
+                    priority, queue.size(), queue.capacity(),
+                    shedCounters.get(priority).get()));
+        }
+        return stats.toString();
+    }
+
+    public void shutdown() {
+        schedulerThread.interrupt();
+    }
+
+    private static final class QueuedUpdate {
+        private final Update update;
+        private final long chatId;
+        private final long sequence;
+
+        private QueuedUpdate(Update update, long chatId, long sequence) {
+            this.update = update;
+            this.chatId = chatId;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Порядок апдейтов чата, еще не переданных в очередь чата. Меняется только внутри compute по chatId
+     */
+    private static final class ChatOrder {
+        // Номера апдейтов в порядке поступления
+        private final ArrayDeque<Long> pending = new ArrayDeque<>();
+        // Апдейты, забранные из буфера раньше более ранних апдейтов того же чата
+        private final TreeMap<Long, QueuedUpdate> held = new TreeMap<>();
+
+        // Переносит в ready отложенные апдейты, до которых дошла очередь
+        private void releaseReady(List<QueuedUpdate> ready) {
+            while (!pending.isEmpty() && held.containsKey(pending.peekFirst())) {
+                ready.add(held.remove(pending.pollFirst()));
+            }
+        }
+
+        private boolean isEmpty() {
+            return pending.isEmpty() && held.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.bot.dispatcher;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Как поток-потребитель ждет новые элементы в кольцевых буферах.
+ * idle получает число подряд идущих пустых проверок и возвращает его увеличенным
+ */
+public enum WaitStrategy {
+    // Минимальная задержка, но занимает ядро целиком
+    BUSY_SPIN {
+        @Override
+        int idle(int counter, Object blocker) {
+            Thread.onSpinWait();
+            return counter + 1;
+        }
+    },
+    // Крутится недолго, затем уступает процессор другим потокам
+    YIELDING {
+        @Override
+        int idle(int counter, Object blocker) {
+            if (counter < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+            return counter + 1;
+        }
+    },
+    // Крутится, уступает, а затем засыпает на короткое время
+    SLEEPING {
+        @Override
+        int idle(int counter, Object blocker) {
+            if (counter < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (counter < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(blocker, SLEEP_NANOS);
+            }
+            return counter + 1;
+        }
+    },
+    // Засыпает до сигнала от производителя, не тратит процессор в простое
+    BLOCKING {
+        @Override
+        int idle(int counter, Object blocker) {
+            LockSupport.parkNanos(blocker, MAX_PARK_NANOS);
+            return counter + 1;
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = 100_000L;
+    // Страховка от потерянного сигнала
+    private static final long MAX_PARK_NANOS = 50_000_000L;
+
+    abstract int idle(int counter, Object blocker);
+
+    /**
+     * Нужно ли производителю будить потребителя после публикации
+     */
+    boolean needsSignal() {
+        return this == BLOCKING || this == SLEEPING;
+    }
+}
@@ -9,14 +9,45 @@ import java.io.File;
 
 public class MessageWithDocBuilder {
     SendDocument sendDocument = new SendDocument();
+    private final boolean cached;
+    private final long fileModified;
 
     public MessageWithDocBuilder(long chatId, FileDTO fileDTO) {
+        this(chatId, fileDTO, true);
+    }
+
+    /**
+     * @param useCache отправлять по сохраненному file_id, если файл на диске не менялся с момента его получения
+     */
+    public MessageWithDocBuilder(long chatId, FileDTO fileDTO, boolean useCache) {
         sendDocument.setChatId(chatId);
         String correctPath = BotConfig.getFileStoragePath() + fileDTO.getFolder() + BotConfig.getFileDelimiter() + fileDTO.getFileName();
-        sendDocument.setDocument(new InputFile(new File(correctPath)));
+        File file = new File(correctPath);
+        fileModified = file.lastModified();
+        // Файл заменен на диске - сохраненный file_id указывает на старое содержимое
+        cached = useCache && fileDTO.getTelegramFileId() != null && fileDTO.getTelegramFileModified() == fileModified;
+        if (cached) {
+            sendDocument.setDocument(new InputFile(fileDTO.getTelegramFileId()));
+        } else {
+            sendDocument.setDocument(new InputFile(file));
+        }
     }
 
     public SendDocument getMessage() {
         return sendDocument;
     }
+
+    /**
+     * true, если документ отправляется по file_id без загрузки файла
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * Время изменения файла на диске на момент сборки сообщения
+     */
+    public long getFileModified() {
+        return fileModified;
+    }
 }
@@ -1,14 +1,15 @@
 package org.example.bot.message.markup;
 
+import org.example.bot.callback.CallbackType;
 import org.example.bot.config.BotConfig;
 import org.example.bot.message.markup.button.ButtonSetter;
 import org.example.controller.FilesAndFoldersController;
 import org.example.controller.LinksAndGroupsController;
-import org.example.controller.UserController;
 import org.example.dto.FileDTO;
 import org.example.dto.FolderDTO;
 import org.example.dto.GroupDTO;
 import org.example.dto.LinkDTO;
+import org.example.dto.UserContext;
 import org.example.files.FilesController;
 import org.example.site.YearsAndGroupParser;
 import org.example.site.manager.ScheduleManager;
@@ -24,7 +25,6 @@ public class MarkupSetter {
 
     private final FilesController filesController;
     private final FilesAndFoldersController filesAndFoldersController;
-    private final UserController userController;
     private final LinksAndGroupsController linksAndGroupsController;
     private final ScheduleManager scheduleManager;
 
@@ -35,18 +35,17 @@ public class MarkupSetter {
     private static InlineKeyboardButton backButtonToLessons;
 
     public MarkupSetter(FilesController filesController, FilesAndFoldersController filesAndFoldersController,
-                        UserController userController, LinksAndGroupsController linksAndGroupsController,
+                        LinksAndGroupsController linksAndGroupsController,
                         ScheduleManager scheduleManager) {
         this.filesController = filesController;
         this.filesAndFoldersController = filesAndFoldersController;
-        this.userController = userController;
         this.linksAndGroupsController = linksAndGroupsController;
         this.scheduleManager = scheduleManager;
-        backButtonToMainMenu = ButtonSetter.setButton("Назад", "BackButton");
-        backButtonToFiles = ButtonSetter.setButton("Назад", "FileButton");
-        backButtonToLinks = ButtonSetter.setButton("Назад", "LinksButton");
-        backButtonToLessons = ButtonSetter.setButton("Назад", "LessonButton");
-        addNewGroupButton = ButtonSetter.setButton("Добавить группу", "AddGroupButton");
+        backButtonToMainMenu = ButtonSetter.setButton("Назад", CallbackType.BACK.encode());
+        backButtonToFiles = ButtonSetter.setButton("Назад", CallbackType.FILES_MENU.encode());
+        backButtonToLinks = ButtonSetter.setButton("Назад", CallbackType.LINKS_MENU.encode());
+        backButtonToLessons = ButtonSetter.setButton("Назад", CallbackType.LESSON_MENU.encode());
+        addNewGroupButton = ButtonSetter.setButton("Добавить группу", CallbackType.ADD_GROUP.encode());
     }
 
     private final ConcurrentHashMap<MarkupKey, InlineKeyboardMarkup> savedBasicMarkup = new ConcurrentHashMap<>();
@@ -111,10 +110,6 @@ public class MarkupSetter {
         return markup;
     }
 
-    private boolean userIsAdmin(long chatId) {
-        return userController.checkAdminByChatId(chatId);
-    }
-
     private InlineKeyboardMarkup getLessonMenuButtons() {
 
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
@@ -122,10 +117,10 @@ public class MarkupSetter {
         //создание кнопок и добавление к ним возвращаемого значения при нажатии
 //        InlineKeyboardButton today = ButtonSetter.setButton("На сегодня", "TodayScheduleButton");
 //        InlineKeyboardButton tomorrow = ButtonSetter.setButton("На завтра", "TomorrowScheduleButton");
-        InlineKeyboardButton scheduleDay = ButtonSetter.setButton("Расписание", "ScheduleDay");
+        InlineKeyboardButton scheduleDay = ButtonSetter.setButton("Расписание", CallbackType.SCHEDULE_DAYS.encode());
         keyboard.add(ButtonSetter.setRow(scheduleDay));
 
-        InlineKeyboardButton selectYear = ButtonSetter.setButton("Выбрать курс", "SelectYearButton");
+        InlineKeyboardButton selectYear = ButtonSetter.setButton("Выбрать курс", CallbackType.SELECT_YEAR.encode());
         //кнопка для выбора курса
         keyboard.add(ButtonSetter.setRow(selectYear));
 
@@ -144,19 +139,19 @@ public class MarkupSetter {
 
     private InlineKeyboardMarkup getMainMenuButtons() {
         //создание кнопки и установка текста и возвращаемого значения при нажатии
-        InlineKeyboardButton lessonButton = ButtonSetter.setButton("Расписание", "LessonButton");
-        InlineKeyboardButton fileButton = ButtonSetter.setButton("Файлы", "FileButton");
-        InlineKeyboardButton linksButton = ButtonSetter.setButton("Ссылки", "LinksButton");
+        InlineKeyboardButton lessonButton = ButtonSetter.setButton("Расписание", CallbackType.LESSON_MENU.encode());
+        InlineKeyboardButton fileButton = ButtonSetter.setButton("Файлы", CallbackType.FILES_MENU.encode());
+        InlineKeyboardButton linksButton = ButtonSetter.setButton("Ссылки", CallbackType.LINKS_MENU.encode());
 
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
         //добавляем ряд кнопок в клавиатуру
         keyboard.add(ButtonSetter.setRow(lessonButton));
         keyboard.add(ButtonSetter.setRow(fileButton, linksButton));
 
-        InlineKeyboardButton notificationButton = ButtonSetter.setButton("Объявления", "GetNotification");
+        InlineKeyboardButton notificationButton = ButtonSetter.setButton("Объявления", CallbackType.NOTIFICATION.encode());
         keyboard.add(ButtonSetter.setRow(notificationButton));
 
-        InlineKeyboardButton helpButton = ButtonSetter.setButton("Помощь", "Help");
+        InlineKeyboardButton helpButton = ButtonSetter.setButton("Помощь", CallbackType.HELP.encode());
         keyboard.add(ButtonSetter.setRow(helpButton));
 
         //создание самого объекта клавиатуры, к которому все добавляем
@@ -192,7 +187,7 @@ public class MarkupSetter {
             for (FileDTO fileDTO : filesDTOs) {
                 String filePath = fileDTO.getFolder() + BotConfig.getFileDelimiter() + fileDTO.getFileName();
                 long fileId = fileDTO.getId();
-                InlineKeyboardButton button = ButtonSetter.setButton(filePath, fileId + "_FDel");
+                InlineKeyboardButton button = ButtonSetter.setButton(filePath, CallbackType.DELETE_FILE.encode(fileId));
                 keyboard.add(ButtonSetter.setRow(button));
             }
         }
@@ -210,7 +205,7 @@ public class MarkupSetter {
             for (FolderDTO folder : folders) {
                 long id = folder.getId();
                 String folderName = folder.getFolder();
-                InlineKeyboardButton button = ButtonSetter.setButton(folderName, id + "FilesDelAdm");
+                InlineKeyboardButton button = ButtonSetter.setButton(folderName, CallbackType.FOLDER_FILES_FOR_DELETE.encode(id));
                 keyboard.add(ButtonSetter.setRow(button));
             }
         }
@@ -220,7 +215,7 @@ public class MarkupSetter {
     }
 
     // Задание клавиатуры для удаления файлов админом
-    private InlineKeyboardMarkup getDeleteFilesFromFolderByAdm(long id) {
+    public InlineKeyboardMarkup getDeleteFilesFromFolderByAdm(long id) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
         String folderName = filesAndFoldersController.getFolderNameById(id);
@@ -229,7 +224,7 @@ public class MarkupSetter {
             for (FileDTO file : files) {
                 long fileId = file.getId();
                 String fileName = file.getFileName();
-                InlineKeyboardButton button = ButtonSetter.setButton(fileName, fileId + "_FDel");
+                InlineKeyboardButton button = ButtonSetter.setButton(fileName, CallbackType.DELETE_FILE.encode(fileId));
                 keyboard.add(ButtonSetter.setRow(button));
             }
         }
@@ -238,43 +233,34 @@ public class MarkupSetter {
         return markup;
     }
 
-    // Проверка является ли пользователь админом и последующие шаги
-    private InlineKeyboardMarkup getDeleteFilesMarkup(String key) {
-        if (key.contains("DeleteFileButton")) {
-            long chatId = Long.parseLong(key.replaceAll("DeleteFileButton", ""));
-            if (userIsAdmin(chatId)) {
-                return getSelectFolderToDeleteFilesByAdmin();
-            } else {
-                return getDeleteUserFilesMarkup(chatId);
-            }
-        } else if (key.contains("FilesDelAdm")) {
-            long folderId = Long.parseLong(key.replaceAll("FilesDelAdm", ""));
-            return getDeleteFilesFromFolderByAdm(folderId);
+    // Админ выбирает папку, обычный пользователь видит только свои файлы
+    public InlineKeyboardMarkup getDeleteFilesMarkup(UserContext user) {
+        if (user.isAdmin()) {
+            return getSelectFolderToDeleteFilesByAdmin();
         }
-        return getBasicMarkup(MarkupKey.MAIN_MENU);
+        return getDeleteUserFilesMarkup(user.getChatId());
     }
 
-    private InlineKeyboardMarkup getLinksMainMarkup() {
+    public InlineKeyboardMarkup getLinksMainMarkup() {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
         List<GroupDTO> groups = linksAndGroupsController.getAllGroups();
         for (GroupDTO group : groups) {
             long id = group.getId();
             String groupName = group.getGroupName();
-            InlineKeyboardButton button = ButtonSetter.setButton(groupName, id + "GroupForLinks");
+            InlineKeyboardButton button = ButtonSetter.setButton(groupName, CallbackType.GROUP_LINKS.encode(id));
             keyboard.add(ButtonSetter.setRow(button));
         }
-        InlineKeyboardButton deleteLinksButton = ButtonSetter.setButton("Удалить ссылку", "DeleteLinksButton");
+        InlineKeyboardButton deleteLinksButton = ButtonSetter.setButton("Удалить ссылку", CallbackType.DELETE_LINKS_MENU.encode());
         keyboard.add(ButtonSetter.setRow(addNewGroupButton, deleteLinksButton));
         keyboard.add(ButtonSetter.setRow(backButtonToMainMenu));
         markup.setKeyboard(keyboard);
         return markup;
     }
 
-    private InlineKeyboardMarkup getLinksFromGroup(String key) {
+    public InlineKeyboardMarkup getLinksFromGroup(long groupId) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
-        long groupId = Long.parseLong(key.replace("GroupForLinks", ""));
 
         String group = linksAndGroupsController.getGroupNameById(groupId);
         List<LinkDTO> links = linksAndGroupsController.getAllLinksByGroupName(group);
@@ -282,17 +268,17 @@ public class MarkupSetter {
             for (LinkDTO link : links) {
                 long id = link.getId();
                 String linkName = link.getLinkName();
-                InlineKeyboardButton button = ButtonSetter.setButton(linkName, id + "_lnk");
+                InlineKeyboardButton button = ButtonSetter.setButton(linkName, CallbackType.SEND_LINK.encode(id));
                 keyboard.add(ButtonSetter.setRow(button));
             }
         }
-        InlineKeyboardButton addLinkButton = ButtonSetter.setButton("Добавить ссылку", group + "AddLinkButton");
+        InlineKeyboardButton addLinkButton = ButtonSetter.setButton("Добавить ссылку", CallbackType.ADD_LINK.encode(group));
         keyboard.add(ButtonSetter.setRow(backButtonToLinks, addLinkButton));
         markup.setKeyboard(keyboard);
         return markup;
     }
 
-    private InlineKeyboardMarkup getFilesFromFolderMarkup(String folder) {
+    public InlineKeyboardMarkup getFilesFromFolderMarkup(String folder) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
         List<FileDTO> files = filesController.getFilesFromDatabaseByFolder(folder);
@@ -300,11 +286,11 @@ public class MarkupSetter {
             for (FileDTO file : files) {
                 long fileId = file.getId();
                 String fileName = file.getFileName();
-                InlineKeyboardButton button = ButtonSetter.setButton(fileName, fileId + "File");
+                InlineKeyboardButton button = ButtonSetter.setButton(fileName, CallbackType.SEND_FILE.encode(fileId));
                 keyboard.add(ButtonSetter.setRow(button));
             }
         }
-        InlineKeyboardButton addFileButtons = ButtonSetter.setButton("Сделать основной", folder + "AddFileButton");
+        InlineKeyboardButton addFileButtons = ButtonSetter.setButton("Сделать основной", CallbackType.SET_FILE_FOLDER.encode(folder));
         keyboard.add(ButtonSetter.setRow(backButtonToFiles, addFileButtons));
         markup.setKeyboard(keyboard);
         return markup;
@@ -312,11 +298,11 @@ public class MarkupSetter {
 
     private List<InlineKeyboardButton> setRowForFolder(String data) {
         List<InlineKeyboardButton> row = new ArrayList<>();
-        row.add(ButtonSetter.setButton(data, data + "_Folder"));
+        row.add(ButtonSetter.setButton(data, CallbackType.FOLDER.encode(data)));
         return row;
     }
 
-    private InlineKeyboardMarkup getFoldersFromDatabaseMarkup() {
+    public InlineKeyboardMarkup getFoldersFromDatabaseMarkup() {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
         List<FolderDTO> folders = filesAndFoldersController.getFolders();
@@ -326,8 +312,8 @@ public class MarkupSetter {
                 keyboard.add(setRowForFolder(folderName));
             }
         }
-        InlineKeyboardButton deleteButton = ButtonSetter.setButton("Удалить файл", "DeleteFileButton");
-        InlineKeyboardButton addFolder = ButtonSetter.setButton("Добавить папку", "AddFolderButton");
+        InlineKeyboardButton deleteButton = ButtonSetter.setButton("Удалить файл", CallbackType.DELETE_FILE_MENU.encode());
+        InlineKeyboardButton addFolder = ButtonSetter.setButton("Добавить папку", CallbackType.ADD_FOLDER.encode());
         keyboard.add(ButtonSetter.setRow(addFolder, deleteButton));
 
         keyboard.add(ButtonSetter.setRow(backButtonToMainMenu));
@@ -344,7 +330,7 @@ public class MarkupSetter {
             long id = link.getId();
             String linkName = link.getLinkName();
             String groupName = link.getGroupName();
-            InlineKeyboardButton button = ButtonSetter.setButton(groupName + " " + linkName, id + "_LDel");
+            InlineKeyboardButton button = ButtonSetter.setButton(groupName + " " + linkName, CallbackType.DELETE_LINK.encode(id));
             keyboard.add(ButtonSetter.setRow(button));
         }
         keyboard.add(ButtonSetter.setRow(backButtonToLinks));
@@ -359,7 +345,7 @@ public class MarkupSetter {
         for (GroupDTO group : groups) {
             long id = group.getId();
             String groupName = group.getGroupName();
-            InlineKeyboardButton button = ButtonSetter.setButton(groupName, id + "_LinkFlrDel");
+            InlineKeyboardButton button = ButtonSetter.setButton(groupName, CallbackType.GROUP_LINKS_FOR_DELETE.encode(id));
             keyboard.add(ButtonSetter.setRow(button));
         }
         keyboard.add(ButtonSetter.setRow(backButtonToLinks));
@@ -367,16 +353,15 @@ public class MarkupSetter {
         return markup;
     }
 
-    private InlineKeyboardMarkup checkAdminBeforeSetDeleteLinksMarkup(String key) {
-        long chatId = Long.parseLong(key.replaceAll("DeleteLinksButton", ""));
-        if (userIsAdmin(chatId)) {
+    // Админ выбирает группу, обычный пользователь видит только свои ссылки
+    public InlineKeyboardMarkup getDeleteLinksMarkup(UserContext user) {
+        if (user.isAdmin()) {
             return getSelectGroupToDeleteLinksByAdminMarkup();
-        } else {
-            return getDeleteLinksMarkup(chatId);
         }
+        return getDeleteLinksMarkup(user.getChatId());
     }
 
-    private InlineKeyboardMarkup setLinksForDeleteFromGroup(long groupId) {
+    public InlineKeyboardMarkup setLinksForDeleteFromGroup(long groupId) {
         String group = linksAndGroupsController.getGroupNameById(groupId);
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
@@ -384,7 +369,7 @@ public class MarkupSetter {
         for (LinkDTO link : links) {
             long id = link.getId();
             String linkName = link.getLinkName();
-            InlineKeyboardButton button = ButtonSetter.setButton(linkName, id + "_LDel");
+            InlineKeyboardButton button = ButtonSetter.setButton(linkName, CallbackType.DELETE_LINK.encode(id));
             keyboard.add(ButtonSetter.setRow(button));
         }
         keyboard.add(ButtonSetter.setRow(backButtonToLinks));
@@ -392,7 +377,7 @@ public class MarkupSetter {
         return markup;
     }
 
-    private InlineKeyboardMarkup getDeleteFolders() throws IllegalArgumentException {
+    public InlineKeyboardMarkup getDeleteFolders() {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
         List<FolderDTO> folders = filesAndFoldersController.getFolders();
@@ -401,7 +386,7 @@ public class MarkupSetter {
             for (FolderDTO folder : folders) {
                 long folderId = folder.getId();
                 String folderName = folder.getFolder();
-                InlineKeyboardButton button = ButtonSetter.setButton(folderName, folderId + "_DFolder");
+                InlineKeyboardButton button = ButtonSetter.setButton(folderName, CallbackType.DELETE_FOLDER.encode(folderId));
                 keyboard.add(ButtonSetter.setRow(button));
             }
         }
@@ -410,7 +395,7 @@ public class MarkupSetter {
         return markup;
     }
 
-    private InlineKeyboardMarkup getDeleteGroups() throws IllegalArgumentException {
+    public InlineKeyboardMarkup getDeleteGroups() {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
         List<GroupDTO> folders = linksAndGroupsController.getAllGroups();
@@ -419,7 +404,7 @@ public class MarkupSetter {
             for (GroupDTO folder : folders) {
                 long groupId = folder.getId();
                 String groupName = folder.getGroupName();
-                InlineKeyboardButton button = ButtonSetter.setButton(groupName, groupId + "_DGroup");
+                InlineKeyboardButton button = ButtonSetter.setButton(groupName, CallbackType.DELETE_GROUP.encode(groupId));
                 keyboard.add(ButtonSetter.setRow(button));
             }
         }
@@ -440,10 +425,9 @@ public class MarkupSetter {
         return text;
     }
 
-    private InlineKeyboardMarkup getScheduledDays(String key) {
+    public InlineKeyboardMarkup getScheduledDays(String groupId) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
-        String groupId = key.replaceAll("ScheduleDay", "");
         List<LocalDate> availableDates = scheduleManager.getAvailableDates(groupId);
 
         // Обрабатываем даты парами с проверкой границ массива
@@ -455,7 +439,7 @@ public class MarkupSetter {
             // Проверяем, является ли дата сегодняшним днем
             dateText = formatIfDateEqTodayOrTomorrow(dateText);
 
-            InlineKeyboardButton button = ButtonSetter.setButton(dateText, date + "_ScheduleDate");
+            InlineKeyboardButton button = ButtonSetter.setButton(dateText, CallbackType.SCHEDULE_DATE.encode(date));
 
             // Проверяем, есть ли следующая дата в массиве
             if (i + 1 < availableDates.size()) {
@@ -465,7 +449,7 @@ public class MarkupSetter {
                 // Проверяем, является ли вторая дата сегодняшним днем
                 dateText1 = formatIfDateEqTodayOrTomorrow(dateText1);
 
-                InlineKeyboardButton button1 = ButtonSetter.setButton(dateText1, date1 + "_ScheduleDate");
+                InlineKeyboardButton button1 = ButtonSetter.setButton(dateText1, CallbackType.SCHEDULE_DATE.encode(date1));
                 keyboard.add(ButtonSetter.setRow(button, button1));
                 i++; // Увеличиваем i, так как обработали две даты
             } else {
@@ -479,83 +463,24 @@ public class MarkupSetter {
         return markup;
     }
 
-    private InlineKeyboardMarkup folderCase(String key) throws IllegalArgumentException {
-        if (key.contains("_Folder")) {
-            key = key.replace("_Folder", "");
-            return getFilesFromFolderMarkup(key);
+    public InlineKeyboardMarkup getYearsMarkup() {
+        if (!savedChangeableMarkup.containsKey("Year")) {
+            YearsAndGroupParser yearsAndGroupParser = new YearsAndGroupParser();
+            List<String> yearsList = yearsAndGroupParser.getYears();
+            InlineKeyboardMarkup markup = setMarkupFromList(yearsList, "Year");
+            savedChangeableMarkup.put("Year", markup);
         }
-        throw new IllegalArgumentException("Illegal argument(key) in method folderCase() MarkupSetterClass() \n " +
-                "Argument is : " + key);
+        return savedChangeableMarkup.get("Year");
     }
 
-    private InlineKeyboardMarkup fileCase(String key) throws IllegalArgumentException {
-        if (key.equals("FileButton")) {
-            return getFoldersFromDatabaseMarkup();
-        } else if (key.contains("DeleteFileButton") || key.contains("FilesDelAdm")) {
-            return getDeleteFilesMarkup(key);
-        } else {
-            throw new IllegalArgumentException("Illegal argument(key) in method fileCase() MarkupSetterClass() \n " +
-                    "Argument is : " + key);
-        }
-    }
-
-    private InlineKeyboardMarkup linksCase(String key) throws IllegalArgumentException {
-        if (key.equals("LinksButton")) {
-            return getLinksMainMarkup();
-        } else if (key.contains("DeleteLinksButton")) {
-            return checkAdminBeforeSetDeleteLinksMarkup(key);
-        } else if (key.contains("GroupForLinks")) {
-            return getLinksFromGroup(key);
-        } else if (key.endsWith("_LinkFlrDel")) {
-            long groupId = Long.parseLong(key.replaceAll("_LinkFlrDel$", ""));
-            return setLinksForDeleteFromGroup(groupId);
-        } else {
-            throw new IllegalArgumentException("Illegal argument(key) in method linkCase() MarkupSetterClass() \n " +
-                    "Argument is : " + key);
-        }
-    }
-
-    private InlineKeyboardMarkup commandCase(String key) throws IllegalArgumentException{
-        if (key.equals("/delete_Folder")) {
-            return getDeleteFolders();
-        } else if (key.equals("/delete_Group")) {
-            return getDeleteGroups();
-        }
-        throw new IllegalArgumentException("Illegal argument(key) in method commandCase() MarkupSetterClass() \n " +
-                "Argument is : " + key);
-    }
-
-    public InlineKeyboardMarkup getChangeableMarkup(String key) throws IllegalArgumentException {
-        if (key.startsWith("/")) {
-            return commandCase(key);
-        } else if (key.contains("ScheduleDay")) {
-            return getScheduledDays(key);
-        } else if (key.contains("_Folder")) {
-            return folderCase(key);
-        } else if (key.contains("File") && !key.contains("Links")) {
-            return fileCase(key);
-        } else if (key.contains("Link")) {
-            return linksCase(key);
-        } else if (key.contains("Year")) {
-            if (!savedChangeableMarkup.containsKey("Year")) {
-                YearsAndGroupParser yearsAndGroupParser = new YearsAndGroupParser();
-                List<String> yearsList = yearsAndGroupParser.getYears();
-                InlineKeyboardMarkup markup = setMarkupFromList(yearsList, "Year");
-                savedChangeableMarkup.put("Year", markup);
-            }
-            return savedChangeableMarkup.get("Year");
-        } else if (key.contains("Group")) {
-            if (!savedChangeableMarkup.containsKey(key)) {
-                String num = key.replace("Group", "");
-                int number = Integer.parseInt(num);
-                YearsAndGroupParser yearsAndGroupParser = new YearsAndGroupParser();
-                List<String> groupList = yearsAndGroupParser.getGroups(number);
-                InlineKeyboardMarkup markup = setMarkupFromList(groupList, "Group");
-                savedChangeableMarkup.put("Group" + number, markup);
-            }
-            return savedChangeableMarkup.get(key);
+    public InlineKeyboardMarkup getGroupsMarkup(int year) {
+        String key = "Group" + year;
+        if (!savedChangeableMarkup.containsKey(key)) {
+            YearsAndGroupParser yearsAndGroupParser = new YearsAndGroupParser();
+            List<String> groupList = yearsAndGroupParser.getGroups(year);
+            InlineKeyboardMarkup markup = setMarkupFromList(groupList, "Group");
+            savedChangeableMarkup.put(key, markup);
         }
-        throw new IllegalArgumentException("Illegal argument(key) in method getChangeableMarkup() MarkupSetterClass() \n" +
-                "Argument is : " + key);
+        return savedChangeableMarkup.get(key);
     }
 }
@@ -2,24 +2,28 @@ package org.example.bot.response;
 
 import org.example.bot.TBot;
 import org.example.bot.ban.types.ban.info.BanInfo;
+import org.example.bot.callback.CallbackCommand;
+import org.example.bot.callback.CallbackRouter;
 import org.example.bot.message.DeleteMessageBuilder;
 import org.example.bot.message.EditMessageBuilder;
 import org.example.bot.message.markup.MarkupKey;
 import org.example.bot.message.markup.MarkupSetter;
+import org.example.bot.sender.OutboundScheduler;
+import org.example.bot.state.ConversationState;
+import org.example.bot.state.ConversationStateStore;
 import org.example.controller.FilesAndFoldersController;
 import org.example.controller.LinksAndGroupsController;
 import org.example.controller.UserBansController;
 import org.example.controller.UserController;
 import org.example.database.repository.DeletionLogRepository;
 import org.example.dto.FileDTO;
+import org.example.dto.UserContext;
 import org.example.files.FilesController;
 import org.example.site.manager.ScheduleManager;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
 import java.io.IOException;
 import java.time.LocalDate;
-import java.time.format.DateTimeParseException;
 
 public class CallbackResponseHandler {
 
@@ -32,13 +36,17 @@ public class CallbackResponseHandler {
     private final FilesController filesController;
     private final DeletionLogRepository deletionLogRepository;
     private final ScheduleManager scheduleManager;
+    private final ConversationStateStore conversationStates;
+    private final OutboundScheduler sender;
+    private final CallbackRouter callbackRouter = new CallbackRouter();
 
     public CallbackResponseHandler(TBot bot, MarkupSetter markupSetter,
                                    FilesAndFoldersController filesAndFoldersController,
                                    LinksAndGroupsController linksAndGroupsController,
                                    UserController userController, UserBansController userBansController,
                                    FilesController filesController, DeletionLogRepository deletionLogRepository,
-                                   ScheduleManager scheduleManager) {
+                                   ScheduleManager scheduleManager, ConversationStateStore conversationStates,
+                                   OutboundScheduler sender) {
         this.bot = bot;
         this.markupSetter = markupSetter;
         this.filesAndFoldersController = filesAndFoldersController;
@@ -48,153 +56,71 @@ public class CallbackResponseHandler {
         this.filesController = filesController;
         this.deletionLogRepository = deletionLogRepository;
         this.scheduleManager = scheduleManager;
+        this.conversationStates = conversationStates;
+        this.sender = sender;
     }
 
-    public void handleCallback(long chatId, String callbackData, int messageId,
-                               boolean isAdmin, String notification,
-                               TextResponseHandler textHandler) {
+    public void handleCallback(UserContext user, String callbackData, int messageId,
+                               String notification, TextResponseHandler textHandler) {
+        long chatId = user.getChatId();
+        boolean isAdmin = user.isAdmin();
         System.out.printf("handleCallback (chatId : %d, callbackData : %s, messageId : %d)%n", chatId, callbackData, messageId);
 
         // Очистка статусов пользователя
-        resetUserStatuses(chatId);
-
-        if (handleBasicCommand(chatId, callbackData, messageId, isAdmin, notification)) {
-            return;
-        }
-
-        // Обработка callback по типам
-        if (callbackData.endsWith("_Folder") || callbackData.equals("FileButton")) {
-            handleFolderNavigation(chatId, callbackData, messageId);
-        } else if (callbackData.contains("DeleteFileButton") || callbackData.contains("FilesDelAdm")) {
-            handleFileDeletionMenu(chatId, callbackData, messageId);
-        } else if (callbackData.contains("ScheduleDay")) {
-            handleScheduleDay(chatId, messageId);
-        } else if (callbackData.endsWith("_ScheduleDate")) {
-            handleScheduleDate(chatId, messageId, callbackData);
-        } else if (callbackData.endsWith("File")) {
-            deleteMessageAndSendFile(chatId, callbackData, messageId, textHandler);
-        } else if (callbackData.endsWith("_FDel")) {
-            handleFileDeletion(chatId, callbackData, messageId);
-        } else if (callbackData.endsWith("_LDel")) {
-            handleLinkDeletion(chatId, callbackData, messageId);
-        } else if (callbackData.endsWith("_DFolder")) {
-            handleFolderDeletion(chatId, callbackData, messageId);
-        } else if (callbackData.endsWith("_DGroup")) {
-            handleGroupDeletion(chatId, callbackData, messageId);
-        } else if (callbackData.endsWith("_LinkFlrDel")) {
-            handleLinkDeletionMenu(chatId, callbackData, messageId);
-        } else if (callbackData.endsWith("GroupForLinks")) {
-            handleLinksGroupSelection(chatId, callbackData, messageId);
-        } else if (callbackData.endsWith("AddFileButton")) {
-            handleAddFileButton(chatId, callbackData, messageId);
-        } else if (callbackData.endsWith("AddLinkButton")) {
-            handleAddLinkButton(chatId, callbackData, messageId);
-        } else if (callbackData.endsWith("_lnk")) {
-            deleteMessageAndSendLink(chatId, callbackData, messageId, textHandler);
-        } else if (callbackData.contains("Year")) {
-            handleGroupSelectionFromYearList(chatId, callbackData, messageId);
-        } else if (callbackData.contains("Group")) {
-            handleGroupSelect(chatId, callbackData, messageId);
-        } else {
-            handleSimpleError(chatId, messageId);
-        }
-    }
-
-    private void resetUserStatuses(long chatId) {
-        userController.updateCanAddFolder(chatId, (byte) 0);
-        userController.updateCanAddGroup(chatId, (byte) 0);
-        userController.updateCanAddLink(chatId, (byte) 0);
-    }
-
-    private boolean handleBasicCommand(long chatId, String data, int messageId,
-                                    boolean isAdmin, String notification) {
-        switch (data) {
-            case "Help" -> {
-                handleHelpResponse(chatId, messageId, isAdmin);
-                return true;
-            }
-            case "LessonButton" -> {
-                handleLessonButton(chatId, messageId);
-                return true;
-            }
-            case "BackButton" -> {
-                handleBackButton(chatId, messageId);
-                return true;
-            }
-            case "FileButton" -> {
-                handleFileButton(chatId, messageId);
-                return true;
-            }
-            case "AddFolderButton" -> {
-                handleAddFolderButton(chatId, messageId, isAdmin);
-                return true;
-            }
-            case "AddGroupButton" -> {
-                handleAddGroupButton(chatId, messageId, isAdmin);
-                return true;
-            }
-            case "TodayScheduleButton" -> {
-                handleTodaySchedule(chatId, messageId);
-                return true;
-            }
-            case "TomorrowScheduleButton" -> {
-                handleTomorrowSchedule(chatId, messageId);
-                return true;
-            }
-            case "SelectYearButton" -> {
-                handleSelectYearButton(chatId, messageId);
-                return true;
-            }
-            case "GetNotification" -> {
-                handleGetNotification(chatId, messageId, notification);
-                return true;
-            }
-            case "DeleteFileButton" -> {
-                handleDeleteFileButton(chatId, messageId);
-                return true;
-            }
-            case "GroupNotSelected" -> {
-                handleGroupNotSelected(chatId, messageId);
-                return true;
-            }
-            case "LinksButton" -> {
-                handleLinksButton(chatId, messageId);
-                return true;
-            }
-            case "DeleteLinksButton" -> {
-                handleDeleteLinksButton(chatId, messageId);
-                return true;
-            }
-            case "FullBan" -> {
-                handleFullBan(chatId, messageId);
-                return true;
-            }
-            case "SharingBan" -> {
-                handleSharingBan(chatId, messageId);
-                return true;
-            }
-            case "SimpleError" -> {
-                handleSimpleError(chatId, messageId);
-                return true;
-            }
-            case "AdminError" -> {
-                handleAdminError(chatId, messageId);
-                return true;
-            }
+        conversationStates.reset(chatId);
+
+        CallbackCommand command = callbackRouter.route(callbackData);
+        switch (command.getType()) {
+            case HELP -> handleHelpResponse(chatId, messageId, isAdmin);
+            case LESSON_MENU -> handleLessonButton(chatId, messageId);
+            case BACK -> handleBackButton(chatId, messageId);
+            case FILES_MENU -> handleFileButton(chatId, messageId);
+            case ADD_FOLDER -> handleAddFolderButton(chatId, messageId, isAdmin);
+            case ADD_GROUP -> handleAddGroupButton(chatId, messageId, isAdmin);
+            case TODAY_SCHEDULE -> handleTodaySchedule(chatId, messageId, user.getGroupId());
+            case TOMORROW_SCHEDULE -> handleTomorrowSchedule(chatId, messageId, user.getGroupId());
+            case SELECT_YEAR -> handleSelectYearButton(chatId, messageId);
+            case NOTIFICATION -> handleGetNotification(chatId, messageId, notification);
+            case DELETE_FILE_MENU -> handleDeleteFileButton(user, messageId);
+            case GROUP_NOT_SELECTED -> handleGroupNotSelected(chatId, messageId);
+            case LINKS_MENU -> handleLinksButton(chatId, messageId);
+            case DELETE_LINKS_MENU -> handleDeleteLinksButton(user, messageId);
+            case FULL_BAN -> handleFullBan(chatId, messageId);
+            case SHARING_BAN -> handleSharingBan(chatId, messageId);
+            case ADMIN_ERROR -> handleAdminError(chatId, messageId);
+            case SCHEDULE_DAYS -> handleScheduleDay(chatId, messageId, user.getGroupId());
+            case FOLDER -> handleFolderNavigation(chatId, command.getText(), messageId);
+            case FOLDER_FILES_FOR_DELETE -> handleFileDeletionMenu(chatId, command.getId(), messageId);
+            case SCHEDULE_DATE -> handleScheduleDate(chatId, messageId, user.getGroupId(), command.getDate());
+            case SEND_FILE -> deleteMessageAndSendFile(user, command.getId(), messageId, textHandler);
+            case DELETE_FILE -> handleFileDeletion(chatId, command.getId(), messageId);
+            case DELETE_LINK -> handleLinkDeletion(chatId, command.getId(), messageId);
+            case DELETE_FOLDER -> handleFolderDeletion(chatId, command.getId(), messageId);
+            case DELETE_GROUP -> handleGroupDeletion(chatId, command.getId(), messageId);
+            case GROUP_LINKS_FOR_DELETE -> handleLinkDeletionMenu(chatId, command.getId(), messageId);
+            case GROUP_LINKS -> handleLinksGroupSelection(chatId, command.getId(), messageId);
+            case SET_FILE_FOLDER -> handleAddFileButton(chatId, command.getText(), messageId);
+            case ADD_LINK -> handleAddLinkButton(chatId, command.getText(), messageId);
+            case SEND_LINK -> deleteMessageAndSendLink(user, command.getId(), messageId, textHandler);
+            case YEAR -> handleGroupSelectionFromYearList(chatId, (int) command.getId(), messageId);
+            case GROUP -> handleGroupSelect(chatId, command.getText(), messageId);
+            default -> handleSimpleError(chatId, messageId);
         }
-        return false;
     }
 
     public void handleHelpResponse(long chatId, int messageId, boolean isAdmin) {
         String adminHelp = """
                 Команды :
                 /sendToAll text - Отправляет всем пользователям бота сообщение с указанным текстом
+                /sendToAll group=GroupId text - только пользователям выбранной группы
+                /sendToAll admins text - только админам
                 /sendNotification text - Устанавливает текст при нажатии кнопки
                 /addAdmin username - Добавляет нового админа с базовыми правами
                 /delete_Folder - позволяет удалить папку с файлами
                 /delete_Group - позволяет удалить группу с ссылками
                 /ban_user chatId banType(FULL_BAN | SHARING_BAN) причина - блокирует пользователя
                 /unban_user chatId - снять бан с пользователя
+                /stats - статистика очереди обработки апдейтов
                 """;
         String userHelp = "Напишите /start, если что-то сломалось \n" +
                 "Чтобы сохранить файл, выберите путь и скиньте файл боту\n" +
@@ -221,8 +147,8 @@ public class CallbackResponseHandler {
     public void handleFileButton(long chatId, int messageId) {
         EditMessageText message = createEditMessage(chatId, "Выберите вашу группу", messageId);
         try {
-            message.setReplyMarkup(markupSetter.getChangeableMarkup("FileButton"));
-            bot.execute(message);
+            message.setReplyMarkup(markupSetter.getFoldersFromDatabaseMarkup());
+            executeEditOrError(message, "FileButton", chatId, messageId);
         } catch (Exception e) {
             handleSimpleError(chatId, messageId);
         }
@@ -233,7 +159,7 @@ public class CallbackResponseHandler {
             handleAdminError(chatId, messageId);
             return;
         }
-        userController.updateCanAddFolder(chatId, (byte) 1);
+        conversationStates.set(chatId, ConversationState.AWAITING_FOLDER_NAME);
         EditMessageText message = createEditMessage(chatId, "Отправьте название папки", messageId);
         message.setReplyMarkup(markupSetter.getBasicMarkup(MarkupKey.ONLY_BACK_TO_FILES));
         executeEditSafely(message, "AddFolderButton", chatId);
@@ -244,14 +170,13 @@ public class CallbackResponseHandler {
             handleAdminError(chatId, messageId);
             return;
         }
-        userController.updateCanAddGroup(chatId, (byte) 1);
+        conversationStates.set(chatId, ConversationState.AWAITING_GROUP_NAME);
         EditMessageText message = createEditMessage(chatId, "Отправьте название группы", messageId);
         message.setReplyMarkup(markupSetter.getBasicMarkup(MarkupKey.ONLY_BACK_TO_LINKS));
         executeEditSafely(message, "AddGroupButton", chatId);
     }
 
-    public void handleScheduleDay(long chatId, int messageId) {
-        String groupId = userController.getGroupId(chatId);
+    public void handleScheduleDay(long chatId, int messageId, String groupId) {
         if (groupId.isEmpty()) {
             handleGroupNotSelected(chatId, messageId);
             return;
@@ -259,26 +184,18 @@ public class CallbackResponseHandler {
         // Здесь должен быть вызов scheduleCache
 
         EditMessageText message = createEditMessage(chatId, "Выберите день", messageId);
-        message.setReplyMarkup(markupSetter.getChangeableMarkup("ScheduleDay" + groupId));
+        message.setReplyMarkup(markupSetter.getScheduledDays(groupId));
         executeEditSafely(message, "ScheduleDay", chatId);
     }
 
-    public void handleScheduleDate(long chatId, int messageId, String key) {
-        LocalDate date = null;
-        try {
-            date = LocalDate.parse(key.replaceAll("_ScheduleDate", ""));
-        } catch (DateTimeParseException e) {
-            System.err.println("Date parse error " + key.replaceAll("_ScheduleDate", ""));
-        }
-        String group = userController.getGroupId(chatId);
-        String schedule = scheduleManager.getScheduleForDate(group, date);
+    public void handleScheduleDate(long chatId, int messageId, String groupId, LocalDate date) {
+        String schedule = scheduleManager.getScheduleForDate(groupId, date);
         EditMessageText message = createEditMessage(chatId, schedule, messageId);
         message.setReplyMarkup(markupSetter.getBasicMarkup(MarkupKey.ONLY_BACK_TO_SCHEDULE));
         executeEditSafely(message, "ScheduleDate", chatId);
     }
 
-    public void handleTodaySchedule(long chatId, int messageId) {
-        String groupId = userController.getGroupId(chatId);
+    public void handleTodaySchedule(long chatId, int messageId, String groupId) {
         if (groupId.isEmpty()) {
             handleGroupNotSelected(chatId, messageId);
             return;
@@ -290,8 +207,7 @@ public class CallbackResponseHandler {
         executeEditSafely(message, "TodayScheduleButton", chatId);
     }
 
-    public void handleTomorrowSchedule(long chatId, int messageId) {
-        String groupId = userController.getGroupId(chatId);
+    public void handleTomorrowSchedule(long chatId, int messageId, String groupId) {
         if (groupId.isEmpty()) {
             handleGroupNotSelected(chatId, messageId);
             return;
@@ -306,8 +222,8 @@ public class CallbackResponseHandler {
     public void handleSelectYearButton(long chatId, int messageId) {
         EditMessageText message = createEditMessage(chatId, "Выберите курс", messageId);
         try {
-            message.setReplyMarkup(markupSetter.getChangeableMarkup("Year"));
-            bot.execute(message);
+            message.setReplyMarkup(markupSetter.getYearsMarkup());
+            executeEditOrError(message, "SelectYearButton", chatId, messageId);
         } catch (Exception e) {
             handleSimpleError(chatId, messageId);
         }
@@ -319,11 +235,12 @@ public class CallbackResponseHandler {
         executeEditSafely(message, "GetNotification", chatId);
     }
 
-    public void handleDeleteFileButton(long chatId, int messageId) {
+    public void handleDeleteFileButton(UserContext user, int messageId) {
+        long chatId = user.getChatId();
         EditMessageText message = createEditMessage(chatId, "Выберите файл, который хотите удалить", messageId);
         try {
-            message.setReplyMarkup(markupSetter.getChangeableMarkup("DeleteFileButton" + chatId));
-            bot.execute(message);
+            message.setReplyMarkup(markupSetter.getDeleteFilesMarkup(user));
+            executeEditOrError(message, "DeleteFileButton", chatId, messageId);
         } catch (Exception e) {
             handleSimpleError(chatId, messageId);
         }
@@ -332,8 +249,8 @@ public class CallbackResponseHandler {
     public void handleGroupNotSelected(long chatId, int messageId) {
         EditMessageText message = createEditMessage(chatId, "У вас не выбрана группа \n Выберите курс", messageId);
         try {
-            message.setReplyMarkup(markupSetter.getChangeableMarkup("Year"));
-            bot.execute(message);
+            message.setReplyMarkup(markupSetter.getYearsMarkup());
+            executeEditOrError(message, "GroupNotSelected", chatId, messageId);
         } catch (Exception e) {
             handleSimpleError(chatId, messageId);
         }
@@ -342,18 +259,19 @@ public class CallbackResponseHandler {
     public void handleLinksButton(long chatId, int messageId) {
         EditMessageText message = createEditMessage(chatId, "Выберите группу", messageId);
         try {
-            message.setReplyMarkup(markupSetter.getChangeableMarkup("LinksButton"));
-            bot.execute(message);
+            message.setReplyMarkup(markupSetter.getLinksMainMarkup());
+            executeEditOrError(message, "LinksButton", chatId, messageId);
         } catch (Exception e) {
             handleSimpleError(chatId, messageId);
         }
     }
 
-    public void handleDeleteLinksButton(long chatId, int messageId) {
+    public void handleDeleteLinksButton(UserContext user, int messageId) {
+        long chatId = user.getChatId();
         EditMessageText message = createEditMessage(chatId, "Выберите группу", messageId);
         try {
-            message.setReplyMarkup(markupSetter.getChangeableMarkup("DeleteLinksButton" + chatId));
-            bot.execute(message);
+            message.setReplyMarkup(markupSetter.getDeleteLinksMarkup(user));
+            executeEditOrError(message, "DeleteLinksButton", chatId, messageId);
         } catch (Exception e) {
             handleSimpleError(chatId, messageId);
         }
@@ -398,54 +316,49 @@ public class CallbackResponseHandler {
     }
 
     // Обработчики навигации и специальных действий
-    private void handleFolderNavigation(long chatId, String data, int messageId) {
+    private void handleFolderNavigation(long chatId, String folder, int messageId) {
         EditMessageText message = createEditMessage(chatId, "Выберите вашу группу", messageId);
         try {
-            message.setReplyMarkup(markupSetter.getChangeableMarkup(data));
-            bot.execute(message);
+            message.setReplyMarkup(markupSetter.getFilesFromFolderMarkup(folder));
+            executeEditOrError(message, "FolderNavigation", chatId, messageId);
         } catch (Exception e) {
             handleSimpleError(chatId, messageId);
         }
     }
 
-    private void handleFileDeletionMenu(long chatId, String data, int messageId) {
+    private void handleFileDeletionMenu(long chatId, long folderId, int messageId) {
         EditMessageText message = createEditMessage(chatId, "Выберите файл, который хотите удалить", messageId);
         try {
-            message.setReplyMarkup(markupSetter.getChangeableMarkup(data));
-            bot.execute(message);
+            message.setReplyMarkup(markupSetter.getDeleteFilesFromFolderByAdm(folderId));
+            executeEditOrError(message, "FileDeletionMenu", chatId, messageId);
         } catch (Exception e) {
             handleSimpleError(chatId, messageId);
         }
     }
 
-    private void deleteMessageAndSendFile(long chatId, String data, int messageId,
+    private void deleteMessageAndSendFile(UserContext user, long fileId, int messageId,
                                           TextResponseHandler textHandler) {
-        deleteMessage(chatId, messageId);
-        textHandler.handleTextResponse(chatId, data);
+        deleteMessage(user.getChatId(), messageId);
+        textHandler.sendFile(user, fileId);
     }
 
-    private void handleFileDeletion(long chatId, String data, int messageId) {
-        long fileId = Long.parseLong(data.replaceAll("_FDel$", ""));
+    private void handleFileDeletion(long chatId, long fileId, int messageId) {
         try {
             FileDTO fileDTO = filesAndFoldersController.getFileInfoByFileId(fileId);
-            String correctPath = fileDTO.getFolder() + "/" + fileDTO.getFileName();
-            filesController.deleteFile(correctPath);
-
-            if (filesAndFoldersController.deleteUserFileFromRepository(fileId)) {
+            if (filesController.deleteFile(fileDTO)) {
                 EditMessageText message = createEditMessage(chatId, "Файл удален!", messageId);
                 message.setReplyMarkup(markupSetter.getBasicMarkup(MarkupKey.MAIN_MENU));
-                bot.execute(message);
+                executeEditOrError(message, "FileDeletion", chatId, messageId);
             } else {
                 handleSimpleError(chatId, messageId);
             }
-        } catch (IOException | TelegramApiException e) {
+        } catch (IOException e) {
             System.err.printf("Error deleting file: %s%n", e.getMessage());
             handleSimpleError(chatId, messageId);
         }
     }
 
-    private void handleLinkDeletion(long chatId, String data, int messageId) {
-        long linkId = Long.parseLong(data.replaceAll("_LDel", ""));
+    private void handleLinkDeletion(long chatId, long linkId, int messageId) {
         boolean isDeleted = linksAndGroupsController.deleteLinkById(linkId);
 
         if (isDeleted) {
@@ -457,8 +370,7 @@ public class CallbackResponseHandler {
         }
     }
 
-    private void handleFolderDeletion(long chatId, String data, int messageId) {
-        long folderId = Long.parseLong(data.replaceAll("_DFolder$", ""));
+    private void handleFolderDeletion(long chatId, long folderId, int messageId) {
         String folderName = filesAndFoldersController.getFolderNameById(folderId);
 
         if (filesAndFoldersController.deleteFolderById(folderId)) {
@@ -468,8 +380,8 @@ public class CallbackResponseHandler {
 
                 EditMessageText message = createEditMessage(chatId, "Папка успешно удалена", messageId);
                 message.setReplyMarkup(markupSetter.getBasicMarkup(MarkupKey.MAIN_MENU));
-                bot.execute(message);
-            } catch (IOException | TelegramApiException e) {
+                executeEditOrError(message, "FolderDeletion", chatId, messageId);
+            } catch (IOException e) {
                 handleSimpleError(chatId, messageId);
             }
         } else {
@@ -477,8 +389,7 @@ public class CallbackResponseHandler {
         }
     }
 
-    private void handleGroupDeletion(long chatId, String data, int messageId) {
-        long groupId = Long.parseLong(data.replaceAll("_DGroup$", ""));
+    private void handleGroupDeletion(long chatId, long groupId, int messageId) {
         String groupName = linksAndGroupsController.getGroupNameById(groupId);
 
         linksAndGroupsController.deleteGroupWithLinksByGroupId(groupId);
@@ -486,35 +397,34 @@ public class CallbackResponseHandler {
 
         try {
             EditMessageText message = createEditMessage(chatId, "Группа с ссылками удалена", messageId);
-            message.setReplyMarkup(markupSetter.getChangeableMarkup("LinksButton"));
-            bot.execute(message);
+            message.setReplyMarkup(markupSetter.getLinksMainMarkup());
+            executeEditOrError(message, "GroupDeletion", chatId, messageId);
         } catch (Exception e) {
             handleSimpleError(chatId, messageId);
         }
     }
 
-    private void handleLinkDeletionMenu(long chatId, String data, int messageId) {
+    private void handleLinkDeletionMenu(long chatId, long groupId, int messageId) {
         EditMessageText message = createEditMessage(chatId, "Выберите ссылку, которую хотите удалить", messageId);
         try {
-            message.setReplyMarkup(markupSetter.getChangeableMarkup(data));
-            bot.execute(message);
+            message.setReplyMarkup(markupSetter.setLinksForDeleteFromGroup(groupId));
+            executeEditOrError(message, "LinkDeletionMenu", chatId, messageId);
         } catch (Exception e) {
             handleSimpleError(chatId, messageId);
         }
     }
 
-    private void handleLinksGroupSelection(long chatId, String data, int messageId) {
+    private void handleLinksGroupSelection(long chatId, long groupId, int messageId) {
         EditMessageText message = createEditMessage(chatId, "Выберите нужную вам ссылку", messageId);
         try {
-            message.setReplyMarkup(markupSetter.getChangeableMarkup(data));
-            bot.execute(message);
+            message.setReplyMarkup(markupSetter.getLinksFromGroup(groupId));
+            executeEditOrError(message, "LinksGroupSelection", chatId, messageId);
         } catch (Exception e) {
             handleSimpleError(chatId, messageId);
         }
     }
 
-    private void handleAddFileButton(long chatId, String data, int messageId) {
-        String folder = data.replaceAll("AddFileButton$", "");
+    private void handleAddFileButton(long chatId, String folder, int messageId) {
         userController.updateFilePath(chatId, folder);
 
         EditMessageText message = createEditMessage(chatId,
@@ -522,63 +432,41 @@ public class CallbackResponseHandler {
                 messageId);
         try {
             message.setReplyMarkup(markupSetter.getBasicMarkup(MarkupKey.ONLY_BACK_TO_FILES));
-            bot.execute(message);
+            executeEditOrError(message, "AddFileButton", chatId, messageId);
         } catch (Exception e) {
             handleSimpleError(chatId, messageId);
         }
     }
 
-    private void handleAddLinkButton(long chatId, String data, int messageId) {
-        String group = data.replace("AddLinkButton", "");
+    private void handleAddLinkButton(long chatId, String group, int messageId) {
         userController.updateGroupForLinks(chatId, group);
-        userController.updateCanAddLink(chatId, (byte) 1);
+        conversationStates.set(chatId, ConversationState.AWAITING_LINK);
 
         EditMessageText message = createEditMessage(chatId,
                 "Отправьте название ссылки и саму ссылку в виде\nназвание_ссылки:ссылка",
                 messageId);
-        try {
-            message.setReplyMarkup(markupSetter.getBasicMarkup(MarkupKey.ONLY_BACK_TO_LINKS));
-            bot.execute(message);
-        } catch (Exception e) {
-            userController.updateCanAddLink(chatId, (byte) 0);
-            handleSimpleError(chatId, messageId);
-        }
+        message.setReplyMarkup(markupSetter.getBasicMarkup(MarkupKey.ONLY_BACK_TO_LINKS));
+        sender.submit(chatId, message, "AddLinkButton").whenComplete((result, e) -> {
+            if (e != null) {
+                conversationStates.reset(chatId);
+                handleSimpleError(chatId, messageId);
+            }
+        });
     }
 
-    private void deleteMessageAndSendLink(long chatId, String data, int messageId,
+    private void deleteMessageAndSendLink(UserContext user, long linkId, int messageId,
                                           TextResponseHandler textHandler) {
-        deleteMessage(chatId, messageId);
-        textHandler.handleTextResponse(chatId, data + "_lnk");
+        deleteMessage(user.getChatId(), messageId);
+        textHandler.sendLink(user, linkId);
     }
 
-    private void handleGroupSelectionFromYearList(long chatId, String data, int messageId) {
+    private void handleGroupSelectionFromYearList(long chatId, int year, int messageId) {
         EditMessageText message = createEditMessage(chatId, "Выберите вашу группу", messageId);
-        int index = data.indexOf("Year");
-        String groupNum = data.substring(index).replace("Year", "");
-        message.setReplyMarkup(markupSetter.getChangeableMarkup("Group" + groupNum));
+        message.setReplyMarkup(markupSetter.getGroupsMarkup(year));
         executeEditSafely(message, "YearSelectionFromList", chatId);
     }
 
-    private void handleGroupSelect(long chatId, String data, int messageId) {
-        int index = data.indexOf("Group");
-        if (index == -1) {
-            handleSimpleError(chatId, messageId);
-            return;
-        }
-
-        String group;
-        if (data.length() > index + 5) {
-            group = data.substring(index + 5); // Берем все после "Group"
-        } else {
-            handleSimpleError(chatId, messageId);
-            return;
-        }
-
-        // Если есть "=", удаляем его
-        if (group.startsWith("=")) {
-            group = group.substring(1);
-        }
-
+    private void handleGroupSelect(long chatId, String group, int messageId) {
         userController.updateGroupId(chatId, group);
 
         EditMessageText message = createEditMessage(chatId, "Группа сохранена", messageId);
@@ -600,20 +488,31 @@ public class CallbackResponseHandler {
 
     public void deleteMessage(long chatId, int messageId) {
         DeleteMessageBuilder message = new DeleteMessageBuilder(chatId, messageId);
-        try {
-            bot.execute(message.getMessage());
-        } catch (TelegramApiException e) {
-            System.err.println("Error deleting message: " + e);
-            handleSimpleError(chatId, messageId);
-        }
+        sender.submit(chatId, message.getMessage(), "DeleteMessage").whenComplete((result, e) -> {
+            if (e != null) {
+                System.err.println("Error deleting message: " + OutboundScheduler.unwrap(e));
+                handleSimpleError(chatId, messageId);
+            }
+        });
     }
 
     private void executeEditSafely(EditMessageText message, String context, long chatId) {
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            System.err.printf("Error (CallbackResponseHandler - context: %s, chatId: %d): %s%n",
-                    context, chatId, e.getMessage());
-        }
+        sender.submit(chatId, message, context).whenComplete((result, e) -> {
+            if (e != null) {
+                System.err.printf("Error (CallbackResponseHandler - context: %s, chatId: %d): %s%n",
+                        context, chatId, OutboundScheduler.unwrap(e).getMessage());
+            }
+        });
+    }
+
+    // Отправка без ожидания ответа Telegram, при ошибке пользователь получает сообщение об ошибке
+    private void executeEditOrError(EditMessageText message, String context, long chatId, int messageId) {
+        sender.submit(chatId, message, context).whenComplete((result, e) -> {
+            if (e != null) {
+                System.err.printf("Error (CallbackResponseHandler - context: %s, chatId: %d): %s%n",
+                        context, chatId, OutboundScheduler.unwrap(e).getMessage());
+                handleSimpleError(chatId, messageId);
+            }
+        });
     }
 }
\ No newline at end of file
@@ -4,18 +4,19 @@ import org.example.bot.TBot;
 import org.example.bot.ban.types.BanType;
 import org.example.bot.ban.types.ban.info.BanInfo;
 import org.example.bot.config.BotConfig;
+import org.example.bot.sender.OutboundScheduler;
 import org.example.controller.FilesAndFoldersController;
 import org.example.controller.UserBansController;
 import org.example.controller.UserController;
+import org.example.files.DocumentDownloader;
 import org.example.files.FilesController;
 import org.example.files.exception.FileSizeException;
 import org.example.files.exception.IncorrectExtensionException;
 import org.example.files.exception.InvalidCallbackDataException;
 import org.telegram.telegrambots.meta.api.objects.Document;
 import org.telegram.telegrambots.meta.api.objects.Update;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
-import java.io.IOException;
+import java.io.File;
 
 public class DocumentResponseHandler {
     private final TBot bot;
@@ -40,9 +41,6 @@ public class DocumentResponseHandler {
         } catch (FileSizeException e) {
             bot.logError("FileSizeException", chatId, e);
             textResponseHandler.handleTextResponse(chatId, "FileSizeException");
-        } catch (TelegramApiException | IOException e) {
-            bot.logError("TelegramApi/IOException", chatId, e);
-            textResponseHandler.handleTextResponse(chatId, "SimpleError");
         } catch (InvalidCallbackDataException e) {
             bot.logError("InvalidCallbackDataException", chatId, e);
             textResponseHandler.handleTextResponse(chatId, "InvalidFileName");
@@ -50,8 +48,7 @@ public class DocumentResponseHandler {
     }
 
     private void saveDocument(Update update, String fileName, String userPath, long chatId)
-            throws IncorrectExtensionException, IOException, FileSizeException,
-            TelegramApiException, InvalidCallbackDataException {
+            throws IncorrectExtensionException, FileSizeException, InvalidCallbackDataException {
 
         String extension = org.example.files.FilesController.checkFileExtension(
                 fileName, BotConfig.getAllowedExtensions());
@@ -59,21 +56,41 @@ public class DocumentResponseHandler {
         Document document = update.getMessage().getDocument();
         String caption = update.getMessage().getCaption();
 
-        String pathToFile = filesController.saveDocument(document, caption, extension, userPath);
-
-        if (!pathToFile.isEmpty()) {
-            String target = pathToFile.replace(BotConfig.getFileStoragePath(), "");
-            int delimiterIndex = target.indexOf(BotConfig.getFileDelimiter());
-            String folder = target.substring(0, delimiterIndex);
-            String file = target.substring(delimiterIndex + 1);
+        // Загрузка идет на своих потоках, поток обработки апдейтов освобождается сразу
+        filesController.saveDocument(chatId, document, caption, extension, userPath,
+                        position -> textResponseHandler.handleDownloadQueued(chatId, position))
+                .whenComplete((downloadedFile, e) -> {
+                    if (e != null) {
+                        Throwable cause = OutboundScheduler.unwrap(e);
+                        System.err.printf("Error (DocumentResponseHandler - download, chatId: %d): %s%n",
+                                chatId, cause);
+                        textResponseHandler.handleTextResponse(chatId, "SimpleError");
+                        return;
+                    }
+                    registerDocument(document, downloadedFile, chatId);
+                });
+    }
 
-            filesAndFoldersController.putFileInfo(chatId, folder, file);
-            System.out.printf("Сохранен документ от пользователя %d%nДокумент: %s/%s%n",
-                    chatId, folder, document.getFileName());
+    private void registerDocument(Document document, DocumentDownloader.DownloadedFile downloadedFile, long chatId) {
+        String pathToFile = downloadedFile.getPath().toString();
+        String target = pathToFile.replace(BotConfig.getFileStoragePath(), "");
+        int delimiterIndex = target.indexOf(BotConfig.getFileDelimiter());
+        String folder = target.substring(0, delimiterIndex);
+        String file = target.substring(delimiterIndex + 1);
 
-            textResponseHandler.handleTextResponse(chatId, "DocumentSaved");
+        // file_id присланного документа сразу годится для отправки, повторно загружать файл не нужно.
+        // Если файл переименован подписью, по file_id пользователи получили бы старое имя, поэтому кэш не заполняется
+        if (file.equals(document.getFileName())) {
+            long modified = new File(pathToFile).lastModified();
+            filesAndFoldersController.putFileInfo(chatId, folder, file, document.getFileId(), modified,
+                    downloadedFile.getSha256());
         } else {
-            textResponseHandler.handleTextResponse(chatId, "SimpleError");
+            filesAndFoldersController.putFileInfo(chatId, folder, file, null, 0, downloadedFile.getSha256());
         }
+        System.out.printf("Сохранен документ от пользователя %d%nДокумент: %s/%s (%d байт, sha256 %s%s)%n",
+                chatId, folder, document.getFileName(), downloadedFile.getSize(), downloadedFile.getSha256(),
+                downloadedFile.isDeduplicated() ? ", без загрузки" : "");
+
+        textResponseHandler.handleTextResponse(chatId, "DocumentSaved");
     }
 }
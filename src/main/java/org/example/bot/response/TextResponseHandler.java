@@ -3,23 +3,31 @@ package org.example.bot.response;
 import org.example.bot.TBot;
 import org.example.bot.ban.types.BanType;
 import org.example.bot.ban.types.ban.info.BanInfo;
+import org.example.bot.broadcast.BroadcastSegment;
+import org.example.bot.broadcast.BroadcastService;
+import org.example.bot.callback.CallbackType;
+import org.example.bot.command.TextCommandDispatcher;
+import org.example.bot.command.TextCommandHandler;
 import org.example.bot.message.MessageBuilder;
 import org.example.bot.message.MessageWithDocBuilder;
 import org.example.bot.message.markup.MarkupKey;
 import org.example.bot.message.markup.MarkupSetter;
+import org.example.bot.sender.OutboundScheduler;
+import org.example.bot.state.ConversationState;
+import org.example.bot.state.ConversationStateStore;
 import org.example.controller.FilesAndFoldersController;
 import org.example.controller.LinksAndGroupsController;
 import org.example.controller.UserBansController;
 import org.example.controller.UserController;
 import org.example.dto.FileDTO;
-import org.example.role.AdminRole;
+import org.example.dto.UserContext;
 import org.example.utility.LinkUtil;
 import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 
 import java.util.Arrays;
-import java.util.List;
 
 public class TextResponseHandler {
 
@@ -29,17 +37,27 @@ public class TextResponseHandler {
     private final LinksAndGroupsController linksAndGroupsController;
     private final UserController userController;
     private final UserBansController userBansController;
+    private final ConversationStateStore conversationStates;
+    private final OutboundScheduler sender;
+    private final BroadcastService broadcastService;
+    private final TextCommandDispatcher commandDispatcher;
 
     public TextResponseHandler(TBot bot, MarkupSetter markupSetter,
                                FilesAndFoldersController filesAndFoldersController,
                                LinksAndGroupsController linksAndGroupsController,
-                               UserController userController, UserBansController userBansController) {
+                               UserController userController, UserBansController userBansController,
+                               ConversationStateStore conversationStates, OutboundScheduler sender,
+                               BroadcastService broadcastService) {
         this.bot = bot;
         this.markupSetter = markupSetter;
         this.filesAndFoldersController = filesAndFoldersController;
         this.linksAndGroupsController = linksAndGroupsController;
         this.userController = userController;
         this.userBansController = userBansController;
+        this.conversationStates = conversationStates;
+        this.sender = sender;
+        this.broadcastService = broadcastService;
+        this.commandDispatcher = createCommandDispatcher();
     }
 
     public SendMessage createMessageWithMarkup(long chatId, String data, MarkupKey key) {
@@ -51,45 +69,84 @@ public class TextResponseHandler {
         return sendMessage;
     }
 
-    public SendMessage createMessageWithChangeableMarkup(long chatId, String data, String markupKey) {
+    public SendMessage createMessageWithInlineMarkup(long chatId, String data, InlineKeyboardMarkup markup) {
         MessageBuilder messageBuilder = new MessageBuilder(data, chatId);
         SendMessage sendMessage = messageBuilder.getMessage();
-        sendMessage.setReplyMarkup(markupSetter.getChangeableMarkup(markupKey));
+        sendMessage.setReplyMarkup(markup);
         return sendMessage;
     }
 
+    // Внутренние ответы бота, которым не нужны данные пользователя
     public void handleTextResponse(long chatId, String data) {
-        if (handleSpecCommand(chatId, data)) return;
-        if (handleBasicCommands(chatId, data)) return;
+        handleTextResponse(UserContext.of(chatId), data);
+    }
+
+    public void handleTextResponse(UserContext user, String data) {
+        commandDispatcher.dispatch(user, data);
+    }
+
+    private TextCommandDispatcher createCommandDispatcher() {
+        return new TextCommandDispatcher()
+                // Команды
+                .prefix("/start", (user, text) -> handleStartMenu(user.getChatId()))
+                .prefix("/sendToAll", this::handleSendToAllUsers)
+                .prefix("/sendNotification", this::handleSendNotification)
+                .prefix("/addAdmin", this::handleAddAdmin)
+                .prefix("/deleteFolder", (user, text) -> handleDeleteFolder(user))
+                .prefix("/deleteGroup", (user, text) -> handleDeleteGroup(user))
+                .prefix("/ban_user", this::handleBanUser)
+                .prefix("/unban_user", this::handleUnbanUser)
+                .prefix("/stats", (user, text) -> handleStats(user))
+                // Внутренние ответы бота
+                .exact("DocumentSaved", (user, text) -> handleDocumentSaved(user.getChatId()))
+                .exact("IncorrectFileException", (user, text) -> handleIncorrectFileExtension(user.getChatId()))
+                .exact("FileSizeException", (user, text) -> handleFileTooBig(user.getChatId()))
+                .exact("FolderAdded", (user, text) -> handleFolderAdded(user.getChatId()))
+                .exact("SimpleError", (user, text) -> handleSimpleError(user.getChatId()))
+                .exact("AdminError", (user, text) -> handleAdminError(user.getChatId()))
+                .exact("PathCheckError", (user, text) -> handlePathCheckError(user.getChatId()))
+                .exact("InvalidFileName", (user, text) -> handleInvalidFileName(user.getChatId()))
+                .exact("LinkSaved", (user, text) -> handleLinkSaved(user.getChatId()))
+                .exact("GroupSaved", (user, text) -> handleGroupSaved(user.getChatId()))
+                .exact("TooFewArgs", (user, text) -> handleTooFewArgs(user.getChatId()))
+                .exact("InvalidUserChatId", (user, text) -> handleInvalidUserChatId(user.getChatId()))
+                .exact("FullBan", (user, text) -> handleFullBan(user.getChatId()))
+                .exact("SharingBan", (user, text) -> handleSharingBan(user.getChatId()))
+                .exact("AdminAdded", (user, text) -> handleAdminAdded(user.getChatId()))
+                .exact("StartMenu", (user, text) -> handleStartMenu(user.getChatId()))
+                // Пользовательский ввод, недоступный при SHARING_BAN
+                .pattern(text -> LinkUtil.isValidLinkFormat(text.trim()), unlessSharingBanned(this::handleLinkInput))
+                .pattern(text -> TextCommandDispatcher.isIdWithSuffix(text, CallbackType.SEND_FILE.getToken()),
+                        unlessSharingBanned(this::handleFileResponse))
+                .pattern(text -> TextCommandDispatcher.isIdWithSuffix(text, CallbackType.SEND_LINK.getToken()),
+                        unlessSharingBanned(this::handleLinkResponse))
+                .fallback(unlessSharingBanned(this::handleStateInput));
+    }
+
+    private TextCommandHandler unlessSharingBanned(TextCommandHandler handler) {
+        return (user, text) -> {
+            if (!checkBanAndRespond(user.getChatId(), BanType.SHARING_BAN)) {
+                handler.handle(user, text);
+            }
+        };
+    }
 
-        // Проверка бана на отправку контента (SHARING_BAN)
-        if (checkBanAndRespond(chatId, BanType.SHARING_BAN)) {
-            return;
+    private void handleLinkInput(UserContext user, String text) {
+        if (conversationStates.get(user.getChatId()) == ConversationState.AWAITING_LINK) {
+            saveLink(user, text);
+        } else {
+            handleSimpleError(user.getChatId());
         }
+    }
 
-        // Обработка ссылок
-        if (LinkUtil.isValidLinkFormat(data.trim())) {
-            if (userController.getCanAddLink(chatId)) {
-                saveLink(chatId, data);
-            } else {
-                handleSimpleError(chatId);
+    // Произвольный текст имеет смысл, только если пользователь сейчас добавляет группу или папку
+    private void handleStateInput(UserContext user, String text) {
+        switch (conversationStates.get(user.getChatId())) {
+            case AWAITING_GROUP_NAME -> saveGroup(user.getChatId(), text);
+            case AWAITING_FOLDER_NAME -> saveFolder(user.getChatId(), text);
+            default -> {
             }
         }
-        // Обработка добавления группы
-        else if (userController.getCanAddGroup(chatId)) {
-            saveGroup(chatId, data);
-        }
-        // Обработка добавления папки
-        else if (userController.getCanAddFolder(chatId)) {
-            saveFolder(chatId, data);
-        }
-        // Обработка файлов (если text заканчивается на File или _lnk)
-        else if (data.endsWith("File")) {
-            handleFileResponse(chatId, data);
-        } else if (data.endsWith("_lnk")) {
-            handleLinkResponse(chatId, data);
-        }
-
     }
 
     private boolean checkBanAndRespond(long chatId, BanType banType) {
@@ -108,133 +165,13 @@ public class TextResponseHandler {
         return false;
     }
 
-    private boolean handleBasicCommands(long chatId, String data) {
-        switch (data) {
-            case "DocumentSaved" -> {
-                handleDocumentSaved(chatId);
-                return true;
-            }
-            case "IncorrectFileException" -> {
-                handleIncorrectFileExtension(chatId);
-                return true;
-            }
-            case "FileSizeException" -> {
-                handleFileTooBig(chatId);
-                return true;
-            }
-            case "FolderAdded" -> {
-                handleFolderAdded(chatId);
-                return true;
-            }
-            case "SimpleError" -> {
-                handleSimpleError(chatId);
-                return true;
-            }
-            case "AdminError" -> {
-                handleAdminError(chatId);
-                return true;
-            }
-            case "PathCheckError" -> {
-                handlePathCheckError(chatId);
-                return true;
-            }
-            case "InvalidFileName" -> {
-                handleInvalidFileName(chatId);
-                return true;
-            }
-            case "LinkSaved" -> {
-                handleLinkSaved(chatId);
-                return true;
-            }
-            case "GroupSaved" -> {
-                handleGroupSaved(chatId);
-                return true;
-            }
-            case "TooFewArgs" -> {
-                handleTooFewArgs(chatId);
-                return true;
-            }
-            case "InvalidUserChatId" -> {
-                handleInvalidUserChatId(chatId);
-                return true;
-            }
-            case "FullBan" -> {
-                handleFullBan(chatId);
-                return true;
-            }
-            case "SharingBan" -> {
-                handleSharingBan(chatId);
-                return true;
-            }
-            case "AdminAdded" -> {
-                handleAdminAdded(chatId);
-                return true;
-            }
-            case "StartMenu" -> {
-                handleStartMenu(chatId);
-                return true;
-            }
-            case "FileResponse" -> {
-                handleFileResponse(chatId, data);
-                return true;
-            }
-            case "LinkResponse" -> {
-                handleLinkResponse(chatId, data);
-                return true;
-            }
-            default -> {
-                return false;
-            }
-        }
-    }
-
-    private boolean handleSpecCommand(long chatId, String data) {
-        String[] parts = data.split(" ");
-        String cmd = parts[0];
-
-        switch (cmd) {
-            case "/start" -> {
-                handleStartMenu(chatId);
-                return true;
-            }
-            case "/sendToAll" -> {
-                handleSendToAllUsers(chatId, data);
-                return true;
-            }
-            case "/sendNotification" -> {
-                handleSendNotification(chatId, data);
-                return true;
-            }
-            case "/addAdmin" -> {
-                handleAddAdmin(chatId, data);
-                return true;
-            }
-            case "/deleteFolder" -> {
-                handleDeleteFolder(chatId);
-                return true;
-            }
-            case "/deleteGroup" -> {
-                handleDeleteGroup(chatId);
-                return true;
-            }
-            case "/ban_user" -> {
-                handleBanUser(chatId, data);
-                return true;
-            }
-            case "/unban_user" -> {
-                handleUnbanUser(chatId, data);
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private void saveLink(long chatId, String text) {
+    private void saveLink(UserContext user, String text) {
+        long chatId = user.getChatId();
         String[] parts = text.split(":");
         if (parts.length >= 2) {
             String linkName = parts[0].trim();
             String link = parts[1].trim();
-            String group = userController.getGroupForLinks(chatId);
+            String group = user.getGroupForLinks();
             linksAndGroupsController.addLink(linkName, link, group, chatId);
             handleLinkSaved(chatId);
         }
@@ -257,20 +194,40 @@ public class TextResponseHandler {
     }
 
     // Административные команды
-    private void handleSendToAllUsers(long chatId, String text) {
-        if (!userController.checkAdminByChatId(chatId)) {
+    private void handleSendToAllUsers(UserContext user, String text) {
+        long chatId = user.getChatId();
+        if (!user.isAdmin()) {
             handleAdminError(chatId);
             return;
         }
-        List<Long> chatIds = userController.getAllUsersChatId();
-        sendToAllUsers(chatIds, text);
+        // /sendToAll [group=GroupId | admins] текст
+        String args = text.substring("/sendToAll".length()).trim();
+        BroadcastSegment segment = BroadcastSegment.ALL;
+        String groupId = null;
+        if (args.startsWith("group=")) {
+            int end = args.indexOf(' ');
+            groupId = args.substring("group=".length(), end == -1 ? args.length() : end);
+            args = end == -1 ? "" : args.substring(end + 1).trim();
+            segment = BroadcastSegment.GROUP;
+        } else if (args.equals("admins") || args.startsWith("admins ")) {
+            args = args.substring("admins".length()).trim();
+            segment = BroadcastSegment.ADMINS;
+        }
 
-        SendMessage message = createMessageWithMarkup(chatId, "Сообщения отправлены", MarkupKey.MAIN_MENU);
+        SendMessage message;
+        if (args.isEmpty() || (segment == BroadcastSegment.GROUP && groupId.isEmpty())) {
+            message = createMessageWithMarkup(chatId, "Текст рассылки не должен быть пустым", MarkupKey.MAIN_MENU);
+        } else if (broadcastService.start(chatId, segment, groupId, args)) {
+            message = createMessageWithMarkup(chatId, "Рассылка запущена, прогресс будет приходить в этот чат", MarkupKey.MAIN_MENU);
+        } else {
+            message = createMessageWithMarkup(chatId, "Рассылка уже идет, дождитесь ее завершения", MarkupKey.MAIN_MENU);
+        }
         executeSafely(message, "SendToAllUsers", chatId);
     }
 
-    private void handleSendNotification(long chatId, String text) {
-        if (!userController.checkAdminByChatId(chatId)) {
+    private void handleSendNotification(UserContext user, String text) {
+        long chatId = user.getChatId();
+        if (!user.isAdmin()) {
             handleAdminError(chatId);
             return;
         }
@@ -288,11 +245,9 @@ public class TextResponseHandler {
         }
     }
 
-    private void handleAddAdmin(long chatId, String username) {
-        boolean isMainAdmin = userController.checkAdminByChatId(chatId) &&
-                userController.getAdminRole(chatId).equals(AdminRole.Main.toString());
-
-        if (!isMainAdmin) {
+    private void handleAddAdmin(UserContext user, String username) {
+        long chatId = user.getChatId();
+        if (!user.isMainAdmin()) {
             handleAdminError(chatId);
             return;
         }
@@ -309,37 +264,45 @@ public class TextResponseHandler {
         }
     }
 
-    private void sendToAllUsers(List<Long> chatIds, String text) {
-        for (long chatId : chatIds) {
-            SendMessage message = createMessageWithMarkup(chatId, text, MarkupKey.NONE);
-            executeSafely(message, "/sendToAll", chatId);
+    private void handleStats(UserContext user) {
+        long chatId = user.getChatId();
+        if (!user.isAdmin()) {
+            handleAdminError(chatId);
+            return;
         }
+
+        SendMessage message = createMessageWithMarkup(chatId, bot.getDispatcherStats(), MarkupKey.MAIN_MENU);
+        executeSafely(message, "/stats", chatId);
     }
 
-    private void handleDeleteFolder(long chatId) {
-        if (!userController.checkAdminByChatId(chatId)) {
+    private void handleDeleteFolder(UserContext user) {
+        long chatId = user.getChatId();
+        if (!user.isAdmin()) {
             handleAdminError(chatId);
             return;
         }
 
-        SendMessage message = createMessageWithChangeableMarkup(chatId,
+        SendMessage message = createMessageWithInlineMarkup(chatId,
                 "Выберите папку, которую хотите удалить вместе с файлами внутри",
-                "/delete_Folder");
+                markupSetter.getDeleteFolders());
         executeSafely(message, "/delete_Folder", chatId);
     }
 
-    private void handleDeleteGroup(long chatId) {
-        if (! userController.checkAdminByChatId(chatId)) {
+    private void handleDeleteGroup(UserContext user) {
+        long chatId = user.getChatId();
+        if (!user.isAdmin()) {
             handleAdminError(chatId);
             return;
         }
 
-        SendMessage message = createMessageWithChangeableMarkup(chatId, "Выберите группу, которую хотите удалить вместе с содержимым", "/delete_Group");
+        SendMessage message = createMessageWithInlineMarkup(chatId, "Выберите группу, которую хотите удалить вместе с содержимым",
+                markupSetter.getDeleteGroups());
         executeSafely(message, "/delete_Group", chatId);
     }
 
-    private void handleBanUser(long chatId, String data) {
-        if (!userController.checkAdminByChatId(chatId)) {
+    private void handleBanUser(UserContext user, String data) {
+        long chatId = user.getChatId();
+        if (!user.isAdmin()) {
             handleAdminError(chatId);
             return;
         }
@@ -386,8 +349,9 @@ public class TextResponseHandler {
                 .build();
     }
 
-    private void handleUnbanUser(long chatId, String args) {
-        if (!userController.checkAdminByChatId(chatId)) {
+    private void handleUnbanUser(UserContext user, String args) {
+        long chatId = user.getChatId();
+        if (!user.isAdmin()) {
             handleAdminError(chatId);
             return;
         }
@@ -413,6 +377,15 @@ public class TextResponseHandler {
         executeSafely(message, "DocumentSaved", chatId);
     }
 
+    /**
+     * Документ ждет свободного потока загрузки
+     */
+    public void handleDownloadQueued(long chatId, int position) {
+        SendMessage message = createMessageWithMarkup(chatId,
+                String.format("Файл в очереди на сохранение, перед ним файлов: %d", position), MarkupKey.NONE);
+        executeSafely(message, "DownloadQueued", chatId);
+    }
+
     private void handleIncorrectFileExtension(long chatId) {
         SendMessage message = createMessageWithMarkup(chatId,
                 "Неверный формат файла, попробуйте поменять название или тип файла",
@@ -426,7 +399,7 @@ public class TextResponseHandler {
     }
 
     private void handleFolderAdded(long chatId) {
-        userController.updateCanAddFolder(chatId, (byte) 0);
+        conversationStates.reset(chatId, ConversationState.AWAITING_FOLDER_NAME);
         SendMessage message = createMessageWithMarkup(chatId, "Папка сохранена", MarkupKey.MAIN_MENU);
         executeSafely(message, "FolderAdded", chatId);
     }
@@ -461,13 +434,13 @@ public class TextResponseHandler {
     }
 
     private void handleLinkSaved(long chatId) {
-        userController.updateCanAddLink(chatId, (byte) 0);
+        conversationStates.reset(chatId, ConversationState.AWAITING_LINK);
         SendMessage message = createMessageWithMarkup(chatId, "Ссылка сохранена!", MarkupKey.MAIN_MENU);
         executeSafely(message, "LinkSaved", chatId);
     }
 
     private void handleGroupSaved(long chatId) {
-        userController.updateCanAddGroup(chatId, (byte) 0);
+        conversationStates.reset(chatId, ConversationState.AWAITING_GROUP_NAME);
         SendMessage message = createMessageWithMarkup(chatId, "Новая группа сохранена", MarkupKey.MAIN_MENU);
         executeSafely(message, "GroupSaved", chatId);
     }
@@ -501,35 +474,87 @@ public class TextResponseHandler {
         executeSafely(message, "/start", chatId);
     }
 
-    private void handleFileResponse(long chatId, String data) {
-        long fileId = Long.parseLong(data.replaceAll("File$", ""));
-        FileDTO fileDTO = filesAndFoldersController.getFileInfoByFileId(fileId);
-        MessageWithDocBuilder message = new MessageWithDocBuilder(chatId, fileDTO);
-        SendDocument sendDocument = message.getMessage();
+    private void handleFileResponse(UserContext user, String data) {
+        long fileId = parseIdWithSuffix(data, CallbackType.SEND_FILE);
+        if (fileId < 0) {
+            handleSimpleError(user.getChatId());
+            return;
+        }
+        sendFile(user, fileId);
+    }
 
-        if (userController.checkAdminByChatId(chatId)) {
+    /**
+     * Id из текста вида "15File", уже проверенного isIdWithSuffix, или -1, если его не удалось разобрать
+     */
+    private static long parseIdWithSuffix(String data, CallbackType type) {
+        try {
+            return Long.parseLong(data.substring(0, data.length() - type.getToken().length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    public void sendFile(UserContext user, long fileId) {
+        long chatId = user.getChatId();
+        String data = CallbackType.SEND_FILE.encode(fileId);
+        FileDTO fileDTO = filesAndFoldersController.getFileInfoByFileId(fileId);
+        String caption = null;
+        if (user.isAdmin()) {
             long userChatId = filesAndFoldersController.getFilesChatIdById(fileId);
-            sendDocument.setCaption(userController.getUserInfo(userChatId));
+            caption = userController.getUserInfo(userChatId);
         }
+        sendDocument(chatId, fileDTO, caption, data, true);
+    }
 
-        SendMessage nextMessage = createMessageWithMarkup(chatId, "Выберите функцию", MarkupKey.MAIN_MENU);
+    private void sendDocument(long chatId, FileDTO fileDTO, String caption, String data, boolean useCache) {
+        MessageWithDocBuilder message = new MessageWithDocBuilder(chatId, fileDTO, useCache);
+        SendDocument sendDocument = message.getMessage();
+        if (caption != null) {
+            sendDocument.setCaption(caption);
+        }
 
-        try {
-            bot.execute(sendDocument);
+        // Меню отправляется только после успешной отправки файла, обработчик не ждет ни того, ни другого
+        sender.submit(chatId, sendDocument, data).whenComplete((sentDocument, e) -> {
+            if (e != null) {
+                Throwable cause = OutboundScheduler.unwrap(e);
+                if (message.isCached() && cause instanceof TelegramApiRequestException requestException
+                        && Integer.valueOf(400).equals(requestException.getErrorCode())) {
+                    // Telegram не принял сохраненный file_id, загружаем файл с диска заново
+                    System.err.printf("Error (TextResponseHandler - cached file_id rejected, fileId: %d): %s%n",
+                            fileDTO.getId(), cause.getMessage());
+                    filesAndFoldersController.clearTelegramFileId(fileDTO.getId());
+                    sendDocument(chatId, fileDTO, caption, data, false);
+                    return;
+                }
+                System.err.printf("Error sending file: %s%n", cause.getMessage());
+                handleSimpleError(chatId);
+                return;
+            }
+            if (!message.isCached() && sentDocument.getDocument() != null) {
+                filesAndFoldersController.updateTelegramFileId(fileDTO.getId(),
+                        sentDocument.getDocument().getFileId(), message.getFileModified());
+            }
+            SendMessage nextMessage = createMessageWithMarkup(chatId, "Выберите функцию", MarkupKey.MAIN_MENU);
             executeSafely(nextMessage, data, chatId);
-        } catch (TelegramApiException e) {
-            System.err.printf("Error sending file: %s%n", e.getMessage());
-            handleSimpleError(chatId);
+        });
+    }
+
+    private void handleLinkResponse(UserContext user, String data) {
+        long linkId = parseIdWithSuffix(data, CallbackType.SEND_LINK);
+        if (linkId < 0) {
+            handleSimpleError(user.getChatId());
+            return;
         }
+        sendLink(user, linkId);
     }
 
-    private void handleLinkResponse(long chatId, String data) {
-        // Удаление всех не цифровых символов в строке
-        long linkId = Long.parseLong(data.replaceAll("[^0-9]+$", ""));
+    public void sendLink(UserContext user, long linkId) {
+        long chatId = user.getChatId();
+        String data = CallbackType.SEND_LINK.encode(linkId);
         String link = linksAndGroupsController.getLinkById(linkId);
         String messageText;
 
-        if (userController.checkAdminByChatId(chatId)) {
+        if (user.isAdmin()) {
             long userChatId = linksAndGroupsController.getUsersChatIdByLinkId(linkId);
             messageText = "Вот ваша ссылка \n" + link + "\n" + userController.getUserInfo(userChatId);
         } else {
@@ -543,12 +568,13 @@ public class TextResponseHandler {
         executeSafely(nextMessage, data + "_menu", chatId);
     }
 
+    // Ставит сообщение в очередь отправки и сразу возвращается, сообщения одному чату уходят в порядке вызова
     private void executeSafely(SendMessage message, String data, long chatId) {
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            System.err.printf("Error (TextResponseHandler - data: %s, chatId: %d): %s%n",
-                    data, chatId, e.getMessage());
-        }
+        sender.submit(chatId, message, data).whenComplete((result, e) -> {
+            if (e != null) {
+                System.err.printf("Error (TextResponseHandler - data: %s, chatId: %d): %s%n",
+                        data, chatId, OutboundScheduler.unwrap(e).getMessage());
+            }
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,435 @@
+package org.example.bot.sender;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Все исходящие запросы к Telegram проходят через этот планировщик.
+ * Отправка ограничена общим token bucket (лимит бота) и token bucket на каждый чат,
+ * для одного чата одновременно выполняется только один запрос, поэтому порядок сообщений сохраняется.
+ * Ответ 429 возвращает запрос в начало очереди чата на retry_after секунд и на то же время
+ * останавливает общий лимит: 429 означает, что превышен лимит бота, а не только чата.
+ * ошибки сети и 5xx повторяются с экспоненциальной задержкой, остальные ошибки сразу уходят вызывающему
+ */
+public class OutboundScheduler {
+    @FunctionalInterface
+    public interface TelegramCall<T> {
+        T call() throws TelegramApiException;
+    }
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    // Сообщения, ждавшие в очереди дольше этого, считаются задержанными
+    private static final long DELAYED_THRESHOLD_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long LANE_IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long EVICTION_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AbsSender sender;
+    private final double chatPerSecond;
+    private final int chatBurst;
+    private final int maxAttempts;
+    private final long backoffBaseMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final TokenBucket globalBucket;
+    private final Map<Long, Lane> lanes = new HashMap<>();
+    // Чаты с готовыми к отправке сообщениями, упорядочены по времени, когда можно отправить следующее
+    private final PriorityQueue<Lane> ready = new PriorityQueue<>(
+            Comparator.comparingLong((Lane lane) -> lane.readyAt).thenComparingLong(lane -> lane.sequence));
+    private long sequence;
+    private long lastEviction = System.nanoTime();
+    private boolean running = true;
+
+    private final ExecutorService requestExecutor;
+    private final Thread schedulerThread;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retriedAfter429 = new LongAdder();
+    private final LongAdder retriedWithBackoff = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder totalQueueNanos = new LongAdder();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+
+    public OutboundScheduler(AbsSender sender, double globalPerSecond, double chatPerSecond, int chatBurst,
+                             int maxAttempts, long backoffBaseMillis) {
+        this.sender = sender;
+        this.chatPerSecond = chatPerSecond;
+        this.chatBurst = chatBurst;
+        this.maxAttempts = maxAttempts;
+        this.backoffBaseMillis = backoffBaseMillis;
+        globalBucket = new TokenBucket(globalPerSecond, Math.max(1, (int) globalPerSecond), System.nanoTime());
+        requestExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("telegram-send-", 0).factory());
+        schedulerThread = new Thread(this::runLoop, "outbound-scheduler");
+        schedulerThread.setDaemon(true);
+        schedulerThread.start();
+    }
+
+    public <T extends Serializable, M extends BotApiMethod<T>> CompletableFuture<T> submit(long chatId, M method,
+                                                                                          String context) {
+        return enqueue(chatId, context, () -> sender.execute(method));
+    }
+
+    public CompletableFuture<Message> submit(long chatId, SendDocument document, String context) {
+        return enqueue(chatId, context, () -> sender.execute(document));
+    }
+
+    /**
+     * Отправляет через очередь и ждет результата, для обработчиков с синхронной логикой
+     */
+    public <T extends Serializable, M extends BotApiMethod<T>> T execute(long chatId, M method, String context)
+            throws TelegramApiException {
+        return await(submit(chatId, method, context));
+    }
+
+    public Message execute(long chatId, SendDocument document, String context) throws TelegramApiException {
+        return await(submit(chatId, document, context));
+    }
+
+    /**
+     * Исходная ошибка из CompletableFuture, зависимые стадии оборачивают ее в CompletionException
+     */
+    public static Throwable unwrap(Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return throwable.getCause();
+        }
+        return throwable;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws TelegramApiException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TelegramApiException("Interrupted while waiting for outbound request", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TelegramApiException telegramException) {
+                throw telegramException;
+            }
+            throw new TelegramApiException(e.getCause());
+        }
+    }
+
+    private <T> CompletableFuture<T> enqueue(long chatId, String context, TelegramCall<T> call) {
+        Task<T> task = new Task<>(call, context, System.nanoTime());
+        lock.lock();
+        try {
+            if (!running) {
+                return CompletableFuture.failedFuture(new SchedulerStoppedException());
+            }
+            Lane lane = lanes.computeIfAbsent(chatId, id -> new Lane(id, new TokenBucket(chatPerSecond, chatBurst, task.enqueuedAt)));
+            lane.tasks.addLast(task);
+            queued.incrementAndGet();
+            if (!lane.inFlight && !lane.scheduled) {
+                schedule(lane, task.enqueuedAt);
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        return task.future;
+    }
+
+    // Вызывается под блокировкой
+    private void schedule(Lane lane, long now) {
+        lane.readyAt = Math.max(lane.notBefore, lane.bucket.availableAt(now));
+        lane.sequence = sequence++;
+        lane.scheduled = true;
+        ready.add(lane);
+    }
+
+    private void runLoop() {
+        lock.lock();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                if (now - lastEviction >= EVICTION_PERIOD_NANOS) {
+                    evictIdleLanes(now);
+                    lastEviction = now;
+                }
+                Lane lane = ready.peek();
+                if (lane == null) {
+                    changed.awaitNanos(EVICTION_PERIOD_NANOS);
+                    continue;
+                }
+                long wait = Math.max(lane.readyAt, globalBucket.availableAt(now)) - now;
+                if (wait > 0) {
+                    changed.awaitNanos(wait);
+                    continue;
+                }
+                ready.poll();
+                lane.scheduled = false;
+                lane.inFlight = true;
+                lane.bucket.take(now);
+                globalBucket.take(now);
+                Task<?> task = lane.tasks.pollFirst();
+                queued.decrementAndGet();
+                recordQueueDelay(now - task.enqueuedAt);
+                requestExecutor.execute(() -> perform(lane, task));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordQueueDelay(long nanos) {
+        dispatched.increment();
+        totalQueueNanos.add(nanos);
+        maxQueueNanos.accumulateAndGet(nanos, Math::max);
+        if (nanos > DELAYED_THRESHOLD_NANOS) {
+            delayed.increment();
+        }
+    }
+
+    private <T> void perform(Lane lane, Task<T> task) {
+        try {
+            T result = task.call.call();
+            sent.increment();
+            finish(lane, null, 0);
+            task.future.complete(result);
+        } catch (TelegramApiException e) {
+            long retryDelay = retryDelayNanos(lane.chatId, task, e);
+            if (retryDelay >= 0) {
+                finish(lane, task, retryDelay);
+                return;
+            }
+            failed.increment();
+            finish(lane, null, 0);
+            task.future.completeExceptionally(e);
+        } catch (RuntimeException e) {
+            failed.increment();
+            finish(lane, null, 0);
+            task.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Задержка перед повтором или -1, если запрос повторять не нужно
+     */
+    private long retryDelayNanos(long chatId, Task<?> task, TelegramApiException e) {
+        task.attempts++;
+        if (task.attempts >= maxAttempts || !(e instanceof TelegramApiRequestException requestException)) {
+            return -1;
+        }
+        Integer errorCode = requestException.getErrorCode();
+        if (errorCode != null && errorCode == 429 && requestException.getParameters() != null
+                && requestException.getParameters().getRetryAfter() != null) {
+            int retryAfter = requestException.getParameters().getRetryAfter();
+            retriedAfter429.increment();
+            System.err.printf("Error (OutboundScheduler - context: %s, chatId: %d): 429, retry after %d s%n",
+                    task.context, chatId, retryAfter);
+            long delay = TimeUnit.SECONDS.toNanos(retryAfter);
+            pauseGlobal(delay);
+            return delay;
+        }
+        // Без кода ответа - ошибка сети
+        if (errorCode == null || errorCode >= 500) {
+            retriedWithBackoff.increment();
+            long backoff = Math.min(MAX_BACKOFF_MILLIS, backoffBaseMillis << Math.min(task.attempts - 1, 20));
+            return TimeUnit.MILLISECONDS.toNanos(backoff);
+        }
+        return -1;
+    }
+
+    // Ни один чат не отправляет запросы раньше retry_after
+    private void pauseGlobal(long delayNanos) {
+        lock.lock();
+        try {
+            globalBucket.pauseUntil(System.nanoTime() + delayNanos);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finish(Lane lane, Task<?> retry, long retryDelayNanos) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            lane.inFlight = false;
+            lane.lastActive = now;
+            if (retry != null && running) {
+                lane.tasks.addFirst(retry);
+                queued.incrementAndGet();
+                lane.notBefore = now + retryDelayNanos;
+            } else if (retry != null) {
+                retry.future.completeExceptionally(new SchedulerStoppedException());
+            }
+            if (!lane.tasks.isEmpty() && running) {
+                schedule(lane, now);
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Пустые чаты хранятся еще минуту, чтобы не сбрасывать их лимит
+    private void evictIdleLanes(long now) {
+        Iterator<Lane> iterator = lanes.values().iterator();
+        while (iterator.hasNext()) {
+            Lane lane = iterator.next();
+            if (lane.tasks.isEmpty() && !lane.inFlight && now - lane.lastActive > LANE_IDLE_NANOS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    public String getStats() {
+        int chats;
+        lock.lock();
+        try {
+            chats = lanes.size();
+        } finally {
+            lock.unlock();
+        }
+        long count = dispatched.sum();
+        long averageMillis = count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalQueueNanos.sum() / count);
+        return String.format("""
+                Исходящие запросы: в очереди %d, чатов %d
+                Отправлено: %d, ошибок: %d, повторов после 429: %d, повторов с задержкой: %d
+                Ожидание в очереди: среднее %d мс, макс. %d мс, дольше 1 с: %d""",
+                queued.get(), chats, sent.sum(), failed.sum(), retriedAfter429.sum(), retriedWithBackoff.sum(),
+                averageMillis, TimeUnit.NANOSECONDS.toMillis(maxQueueNanos.get()), delayed.sum());
+    }
+
+    /**
+     * Останавливает отправку, неотправленные запросы завершаются ошибкой
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            running = false;
+            changed.signal();
+            for (Lane lane : lanes.values()) {
+                for (Task<?> task : lane.tasks) {
+                    task.future.completeExceptionally(new SchedulerStoppedException());
+                }
+                lane.tasks.clear();
+            }
+            queued.set(0);
+        } finally {
+            lock.unlock();
+        }
+        requestExecutor.shutdown();
+    }
+
+    private static final class Task<T> {
+        private final TelegramCall<T> call;
+        private final String context;
+        private final long enqueuedAt;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private int attempts;
+
+        private Task(TelegramCall<T> call, String context, long enqueuedAt) {
+            this.call = call;
+            this.context = context;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * Запрос не отправлен, потому что планировщик остановлен
+     */
+    public static class SchedulerStoppedException extends TelegramApiException {
+        public SchedulerStoppedException() {
+            super("Outbound scheduler is stopped");
+        }
+    }
+
+    private static final class Lane {
+        private final long chatId;
+        private final TokenBucket bucket;
+        private final ArrayDeque<Task<?>> tasks = new ArrayDeque<>();
+        // Не отправлять раньше этого времени (retry_after или задержка повтора)
+        private long notBefore = Long.MIN_VALUE;
+        private long readyAt;
+        private long sequence;
+        private long lastActive = System.nanoTime();
+        private boolean inFlight;
+        private boolean scheduled;
+
+        private Lane(long chatId, TokenBucket bucket) {
+            this.chatId = chatId;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Не потокобезопасен, используется под блокировкой планировщика
+     */
+    private static final class TokenBucket {
+        private final double tokensPerNano;
+        private final int burst;
+        private double tokens;
+        private long lastRefill;
+
+        private TokenBucket(double perSecond, int burst, long now) {
+            this.tokensPerNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+            this.burst = burst;
+            this.tokens = burst;
+            this.lastRefill = now;
+        }
+
+        private void refill(long now) {
+            // До конца паузы токены не восстанавливаются
+            if (now <= lastRefill) {
+                return;
+            }
+            tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+        }
+
+        // После паузы запас копится с нуля, чтобы не отправить сразу всю пачку
+        private void pauseUntil(long until) {
+            tokens = Math.min(tokens, 0);
+            lastRefill = Math.max(lastRefill, until);
+        }
+
+        // Момент, когда будет доступен хотя бы один токен
+        private long availableAt(long now) {
+            refill(now);
+            long from = Math.max(now, lastRefill);
+            if (tokens >= 1) {
+                return from;
+            }
+            return from + (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+
+        private void take(long now) {
+            refill(now);
+            tokens -= 1;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package org.example.bot.state;
+
+/**
+ * Что бот ждет от пользователя следующим текстовым сообщением
+ */
+public enum ConversationState {
+    IDLE,
+    AWAITING_FOLDER_NAME,
+    AWAITING_GROUP_NAME,
+    AWAITING_LINK
+}
@@ -0,0 +1,154 @@
+package org.example.bot.state;
+
+import org.example.controller.UserController;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Состояния диалога по чатам в памяти вместо колонок CanAddFolder/CanAddGroup/CanAddLink.
+ * Состояние живет ttl с момента установки, после чего чат снова считается IDLE.
+ * Если включено сохранение, изменения копятся и периодически записываются в базу одной пачкой,
+ * а при запуске сохраненные состояния загружаются обратно. Обычные нажатия на кнопки базу не трогают
+ */
+public class ConversationStateStore {
+    private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, ConversationState> pendingWrites = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final UserController userController;
+    private final ScheduledExecutorService scheduler;
+
+    private static class Session {
+        private final ConversationState state;
+        private final long expiresAt;
+
+        private Session(ConversationState state, long expiresAt) {
+            this.state = state;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    /**
+     * @param userController контроллер для сохранения состояний, null - хранить только в памяти
+     */
+    public ConversationStateStore(Duration ttl, Duration flushInterval, UserController userController) {
+        this.ttlMillis = ttl.toMillis();
+        this.userController = userController;
+        if (userController != null) {
+            restore();
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conversation-state");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = flushInterval.toMillis();
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                removeExpired();
+                flush();
+            } catch (RuntimeException e) {
+                System.err.printf("Error (ConversationStateStore - scheduled flush): %s%n", e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public ConversationState get(long chatId) {
+        Session session = sessions.get(chatId);
+        if (session == null) {
+            return ConversationState.IDLE;
+        }
+        if (session.isExpired(System.currentTimeMillis())) {
+            if (sessions.remove(chatId, session)) {
+                markDirty(chatId, ConversationState.IDLE);
+            }
+            return ConversationState.IDLE;
+        }
+        return session.state;
+    }
+
+    public void set(long chatId, ConversationState state) {
+        if (state == ConversationState.IDLE) {
+            reset(chatId);
+            return;
+        }
+        sessions.put(chatId, new Session(state, System.currentTimeMillis() + ttlMillis));
+        markDirty(chatId, state);
+    }
+
+    public void reset(long chatId) {
+        if (sessions.remove(chatId) != null) {
+            markDirty(chatId, ConversationState.IDLE);
+        }
+    }
+
+    /**
+     * Сбросить состояние, только если чат сейчас находится именно в нем
+     */
+    public void reset(long chatId, ConversationState expected) {
+        Session session = sessions.get(chatId);
+        if (session != null && session.state == expected && sessions.remove(chatId, session)) {
+            markDirty(chatId, ConversationState.IDLE);
+        }
+    }
+
+    public int getActiveCount() {
+        return sessions.size();
+    }
+
+    private void markDirty(long chatId, ConversationState state) {
+        if (userController != null) {
+            pendingWrites.put(chatId, state);
+        }
+    }
+
+    private void removeExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Session> entry : sessions.entrySet()) {
+            if (entry.getValue().isExpired(now) && sessions.remove(entry.getKey(), entry.getValue())) {
+                markDirty(entry.getKey(), ConversationState.IDLE);
+            }
+        }
+    }
+
+    private void restore() {
+        Map<Long, ConversationState> saved = userController.getSavedConversationStates();
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        saved.forEach((chatId, state) -> sessions.put(chatId, new Session(state, expiresAt)));
+        System.out.printf("Restored conversation states: %d%n", saved.size());
+    }
+
+    /**
+     * Записать накопленные изменения в базу, если сохранение включено
+     */
+    public void flush() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        Map<Long, ConversationState> batch = new HashMap<>();
+        for (Map.Entry<Long, ConversationState> entry : pendingWrites.entrySet()) {
+            // Удаляем только то значение, которое забрали, более новое останется до следующей записи
+            if (pendingWrites.remove(entry.getKey(), entry.getValue())) {
+                batch.put(entry.getKey(), entry.getValue());
+            }
+        }
+        userController.saveConversationStates(batch);
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        if (userController != null) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.controller;
+
+import org.example.database.repository.AdminRepository;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Роли админов в памяти: username -> роль и chatId -> username.
+ * Загружается из таблицы admins при старте, обновляется сразу при добавлении админа через бота
+ * и периодически сверяется с базой, чтобы подхватить изменения, сделанные напрямую в таблице.
+ * Чтение не обращается к базе
+ */
+public class AdminRegistry {
+    private final AdminRepository adminRepository;
+    // Заменяется целиком при сверке, поэтому volatile
+    private volatile Map<String, String> roleByUsername = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, String> usernameByChatId = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public AdminRegistry(AdminRepository adminRepository, Duration refreshInterval) {
+        this.adminRepository = adminRepository;
+        reload();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "admin-registry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = refreshInterval.toMillis();
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                System.err.printf("Error (AdminRegistry - scheduled reload): %s%n", e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Сравнение username в MySQL не учитывает регистр, здесь так же
+    private static String key(String username) {
+        return username == null ? "" : username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Перечитывает таблицу admins. При ошибке базы остается прежнее состояние
+     */
+    public synchronized void reload() {
+        Map<String, String> roles = adminRepository.getAdminRoles();
+        Map<Long, String> chatIds = adminRepository.getAdminChatIds();
+        if (roles == null || chatIds == null) {
+            return;
+        }
+        ConcurrentHashMap<String, String> fresh = new ConcurrentHashMap<>();
+        roles.forEach((username, role) -> fresh.put(key(username), role == null ? "" : role));
+        roleByUsername = fresh;
+        // username из апдейтов новее, чем в базе (профили пишутся отложенно)
+        chatIds.forEach(usernameByChatId::putIfAbsent);
+    }
+
+    /**
+     * Вызывается после успешной записи админа в базу
+     */
+    public synchronized void put(String username, String role) {
+        roleByUsername.put(key(username), role);
+    }
+
+    /**
+     * Запоминает актуальный username пользователя для проверок по chatId
+     */
+    public void rememberUser(long chatId, String username) {
+        if (username == null || username.isEmpty()) {
+            usernameByChatId.remove(chatId);
+        } else if (!username.equals(usernameByChatId.get(chatId))) {
+            usernameByChatId.put(chatId, username);
+        }
+    }
+
+    public boolean isAdmin(String username) {
+        return roleByUsername.containsKey(key(username));
+    }
+
+    public boolean isAdmin(long chatId) {
+        String username = usernameByChatId.get(chatId);
+        return username != null && isAdmin(username);
+    }
+
+    public String getRole(String username) {
+        return roleByUsername.getOrDefault(key(username), "");
+    }
+
+    public String getRole(long chatId) {
+        String username = usernameByChatId.get(chatId);
+        return username == null ? "" : getRole(username);
+    }
+
+    public int size() {
+        return roleByUsername.size();
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.controller;
+
+import org.example.database.repository.BroadcastRepository;
+import org.example.dto.BroadcastDTO;
+
+import java.util.List;
+
+public class BroadcastController {
+    private final BroadcastRepository broadcastRepository;
+
+    public BroadcastController() {
+        broadcastRepository = new BroadcastRepository();
+    }
+
+    public long addBroadcast(BroadcastDTO broadcast) {
+        return broadcastRepository.addBroadcast(broadcast);
+    }
+
+    public void updateProgress(long id, long lastUserId, int sent, int failed) {
+        broadcastRepository.updateProgress(id, lastUserId, sent, failed);
+    }
+
+    public void finishBroadcast(long id) {
+        broadcastRepository.updateStatus(id, BroadcastRepository.STATUS_DONE);
+    }
+
+    public List<BroadcastDTO> getUnfinishedBroadcasts() {
+        return broadcastRepository.getUnfinished();
+    }
+}
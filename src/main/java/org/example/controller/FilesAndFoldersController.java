@@ -1,5 +1,6 @@
 package org.example.controller;
 
+import org.example.database.repository.FileBlobRepository;
 import org.example.database.repository.FileHistoryRepository;
 import org.example.database.repository.FileTrackerRepository;
 import org.example.database.repository.FolderRepository;
@@ -12,18 +13,52 @@ public class FilesAndFoldersController {
     private final FileTrackerRepository fileTrackerRepository;
     private final FileHistoryRepository fileHistoryRepository;
     private final FolderRepository folderRepository;
+    private final FileBlobRepository fileBlobRepository;
 
     public FilesAndFoldersController() {
         fileTrackerRepository = new FileTrackerRepository();
         fileHistoryRepository = new FileHistoryRepository();
         folderRepository = new FolderRepository();
+        fileBlobRepository = new FileBlobRepository();
     }
 
     public void putFileInfo(long chatId, String folder, String fileName) {
-        fileTrackerRepository.putFileInfo(chatId, folder, fileName);
+        putFileInfo(chatId, folder, fileName, null, 0, null);
+    }
+
+    public void putFileInfo(long chatId, String folder, String fileName, String telegramFileId, long telegramFileModified,
+                            String contentHash) {
+        fileTrackerRepository.putFileInfo(chatId, folder, fileName, telegramFileId, telegramFileModified, contentHash);
         fileHistoryRepository.putFileInfoToFilesHistory(chatId, folder, fileName);
     }
 
+    public List<FileDTO> getAllFiles() {
+        return fileTrackerRepository.getAllFiles();
+    }
+
+    /**
+     * @return сколько файлов добавлено (уже существующие пропускаются)
+     */
+    public int putFilesInfo(long chatId, List<FileDTO> files) {
+        List<FileDTO> inserted = fileTrackerRepository.putFilesInfo(chatId, files);
+        if (!inserted.isEmpty()) {
+            fileHistoryRepository.putFilesInfoToFilesHistory(chatId, inserted);
+        }
+        return inserted.size();
+    }
+
+    public List<Long> deleteFilesByIds(List<Long> ids) {
+        return fileTrackerRepository.deleteFilesByIds(ids);
+    }
+
+    public void updateTelegramFileId(long fileId, String telegramFileId, long telegramFileModified) {
+        fileTrackerRepository.updateTelegramFileId(fileId, telegramFileId, telegramFileModified);
+    }
+
+    public void clearTelegramFileId(long fileId) {
+        fileTrackerRepository.updateTelegramFileId(fileId, null, 0);
+    }
+
     public long getFilesChatIdById(long fileId) {
         return fileTrackerRepository.getFilesChatIdById(fileId);
     }
@@ -36,6 +71,26 @@ public class FilesAndFoldersController {
         return fileTrackerRepository.getFileInfoByFileId(fileId);
     }
 
+    public String getBlobHashByUniqueId(String fileUniqueId) {
+        return fileBlobRepository.getHashByUniqueId(fileUniqueId);
+    }
+
+    public boolean addBlobReference(String sha256, String fileUniqueId, long size) {
+        return fileBlobRepository.addReference(sha256, fileUniqueId, size);
+    }
+
+    public int releaseBlobReference(String sha256) {
+        return fileBlobRepository.releaseReference(sha256);
+    }
+
+    public long getBlobSize(String sha256) {
+        return fileBlobRepository.getSize(sha256);
+    }
+
+    public int getBlobRefCount(String sha256) {
+        return fileBlobRepository.getRefCount(sha256);
+    }
+
     public boolean deleteUserFileFromRepository(long fileId) {
         return fileTrackerRepository.deleteUserFileFromRepository(fileId);
     }
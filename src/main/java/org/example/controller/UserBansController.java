@@ -1,22 +1,36 @@
 package org.example.controller;
 
+import org.example.bot.ban.types.BanType;
 import org.example.bot.ban.types.ban.BanList;
 import org.example.bot.ban.types.ban.info.BanInfo;
 import org.example.database.repository.UserBansHistoryRepository;
 import org.example.database.repository.UserBansRepository;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class UserBansController {
     private final UserBansRepository userBansRepository;
     private final UserBansHistoryRepository userBansHistoryRepository;
     private final BanList banList;
+    // Временные баны за флуд отдельно от выданных админом: истекший бан не снимает бессрочный SHARING_BAN
+    private final BanList tempBans = new BanList(Map.of());
+    // История временных банов пишется в фоне: бан выдается в потоке опроса, который не должен ждать базу
+    private final ExecutorService historyWriter;
 
     public UserBansController() {
         userBansRepository = new UserBansRepository();
         userBansHistoryRepository = new UserBansHistoryRepository();
         Map<Long, BanInfo> map = getAllBannedUsers();
         banList = new BanList(map);
+        historyWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ban-history");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public void banUser(long userChatId, BanInfo banInfo) {
@@ -29,18 +43,69 @@ public class UserBansController {
         banList.addToList(userChatId, banInfo);
     }
 
+    /**
+     * Временный полный бан без записи в user_bans: хранится только в памяти и снимается сам по истечении срока.
+     * Выдается поверх любого другого бана, кроме бессрочного полного; после истечения прежний бан снова действует
+     *
+     * @return true, если бан выдан
+     */
+    public boolean tempBanUser(long userChatId, String reason, Duration duration) {
+        BanInfo current = banList.getBanInfo(userChatId);
+        if (current != null && !current.isTemporary() && BanType.FULL_BAN.toString().equals(current.getBanType())) {
+            return false;
+        }
+        String banType = BanType.FULL_BAN.toString();
+        BanInfo banInfo = BanInfo.builder()
+                .reason(reason)
+                .banType(banType)
+                .adminChatId(0)
+                .expiresAt(System.currentTimeMillis() + duration.toMillis())
+                .build();
+        // Истекшие временные баны чистятся здесь же, отдельный поток для этого не нужен
+        tempBans.removeExpired();
+        tempBans.addToList(userChatId, banInfo);
+        // В истории остается след, чтобы админы видели автоматические баны
+        historyWriter.execute(() -> {
+            try {
+                userBansHistoryRepository.banUser(userChatId, reason, banType, 0);
+            } catch (RuntimeException e) {
+                System.err.printf("Error (UserBansController - temp ban history, chatId: %d): %s%n", userChatId, e);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Дописывает историю уже выданных временных банов
+     */
+    public void shutdown() {
+        historyWriter.shutdown();
+        try {
+            historyWriter.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public void unbanUser(long userChatId, long adminChatId) {
         userBansRepository.unbanUser(userChatId);
         userBansHistoryRepository.unbanUser(userChatId, adminChatId);
         banList.removeFromList(userChatId);
+        tempBans.removeFromList(userChatId);
     }
 
     public boolean isUserBanned(long userChatId) {
-        return banList.isUserBanned(userChatId);
+        return tempBans.isUserBanned(userChatId) || banList.isUserBanned(userChatId);
+    }
+
+    public boolean isUserFullBanned(long userChatId) {
+        return tempBans.isUserFullBanned(userChatId) || banList.isUserFullBanned(userChatId);
     }
 
     public BanInfo getUserBanInfo(long userChatId) {
-        return banList.getBanInfo(userChatId);
+        // Временный бан полный, поэтому важнее выданного админом
+        BanInfo tempBan = tempBans.getBanInfo(userChatId);
+        return tempBan != null ? tempBan : banList.getBanInfo(userChatId);
     }
 
     private Map<Long, BanInfo> getAllBannedUsers() {
@@ -1,34 +1,45 @@
 package org.example.controller;
 
+import org.example.bot.broadcast.BroadcastSegment;
+import org.example.bot.state.ConversationState;
 import org.example.database.repository.AdminRepository;
 import org.example.database.repository.UserRepository;
+import org.example.dto.ChatIdPage;
+import org.example.dto.UserContext;
 import org.example.role.AdminRole;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 
 public class UserController {
     private final UserRepository userRepository;
     private final AdminRepository adminRepository;
 
-    public UserController() {
+    private final UserProfileCache profileCache;
+    private final AdminRegistry adminRegistry;
+
+    public UserController(Duration profileFlushInterval, Duration adminRefreshInterval) {
         userRepository = new UserRepository();
         adminRepository = new AdminRepository();
+        profileCache = new UserProfileCache(userRepository, profileFlushInterval);
+        adminRegistry = new AdminRegistry(adminRepository, adminRefreshInterval);
     }
 
     public boolean checkAdmin(String username) {
-        return adminRepository.getAdmin(username);
+        return adminRegistry.isAdmin(username);
     }
 
     public boolean checkAdminByChatId(long chatId) {
-        return adminRepository.getAdmin(userRepository.getUserName(chatId));
+        return adminRegistry.isAdmin(chatId);
     }
 
     // Для суперадминов
     public void addAdminsFromProperty(List<String> adminsUserName) {
         for (String adminUsername : adminsUserName) {
             if (!checkAdmin(adminUsername)) {
-                adminRepository.addAdmin(adminUsername, AdminRole.Main.toString());
+                addAdmin(adminUsername, AdminRole.Main);
             }
         }
     }
@@ -36,11 +47,26 @@ public class UserController {
     // Для обычных админов
     public boolean addBaseAdmin(String username) {
         if (!checkAdmin(username)) {
-            return adminRepository.addAdmin(username, AdminRole.Base.toString());
+            return addAdmin(username, AdminRole.Base);
         }
         return false;
     }
 
+    private boolean addAdmin(String username, AdminRole role) {
+        if (adminRepository.addAdmin(username, role.toString())) {
+            adminRegistry.put(username, role.toString());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Перечитывает таблицу admins, не дожидаясь периодической сверки
+     */
+    public void reloadAdmins() {
+        adminRegistry.reload();
+    }
+
     // Возвращает chatId, независимо от того, какое это сообщение
     public long getChatId(Update update) {
         if (update.hasCallbackQuery()) {
@@ -75,41 +101,57 @@ public class UserController {
         return update.getMessage().getChat().getLastName();
     }
 
-    // Ищет пользователя по Id
-    public void checkAndAddUser(Update update) {
+    /**
+     * Загружает пользователя одним запросом, роль админа берется из AdminRegistry, новый пользователь добавляется в базу.
+     * Изменения username/имени/фамилии известных пользователей записываются отложенно через UserProfileCache.
+     * Возвращенный контекст передается дальше в обработчики апдейта
+     */
+    public UserContext checkAndAddUser(Update update) {
         long chatId = getChatId(update);
-        if (!getUser(chatId)) {
-            addUser(chatId);
-            String username;
-            String firstName;
-            String lastName;
-            if (update.hasCallbackQuery()) {
-                username = getUserNameFromUpdateWithCallbackQ(update);
-                firstName = getFirstNameFromUpdateWithCallbackQ(update);
-                lastName = getLastNameFromUpdateWithCallbackQ(update);
-            } else {
-                username = getUserNameFromUpdateWithoutCallbackQ(update);
-                firstName = getFirstNameFromUpdateWithoutCallbackQ(update);
-                lastName = getLastNameFromUpdateWithoutCallbackQ(update);
-            }
-            if (username != null && !username.isEmpty()) {
-                updateUserName(chatId, username);
-            }
-            if (firstName != null && !firstName.isEmpty()) {
-                updateFirstName(chatId, firstName);
-            }
-            if (lastName != null && !lastName.isEmpty()) {
-                updateLastName(chatId, lastName);
-            }
+        UserContext profile = getProfileFromUpdate(update, chatId);
+        // Роль проверяется по username из апдейта, он не старше сохраненного в базе
+        String username = profile.getUserName();
+        adminRegistry.rememberUser(chatId, username);
+        boolean isAdmin = !username.isEmpty() && checkAdmin(username);
+        String adminRole = isAdmin ? adminRegistry.getRole(username) : "";
+
+        UserContext userContext = userRepository.getUserContext(chatId);
+        if (userContext != null) {
+            profileCache.track(userContext, profile);
+            return userContext.toBuilder()
+                    .admin(isAdmin)
+                    .adminRole(adminRole)
+                    .build();
         }
+
+        profileCache.addNow(profile);
+        System.out.println("Add user with chatId: " + chatId);
+        return profile.toBuilder()
+                .admin(isAdmin)
+                .adminRole(adminRole)
+                .build();
     }
 
-    private void addUser(long chatId) {
-        userRepository.addUser(chatId);
+    private UserContext getProfileFromUpdate(Update update, long chatId) {
+        if (update.hasCallbackQuery()) {
+            return UserContext.builder()
+                    .chatId(chatId)
+                    .userName(getUserNameFromUpdateWithCallbackQ(update))
+                    .firstName(getFirstNameFromUpdateWithCallbackQ(update))
+                    .lastName(getLastNameFromUpdateWithCallbackQ(update))
+                    .build();
+        }
+        return UserContext.builder()
+                .chatId(chatId)
+                .userName(getUserNameFromUpdateWithoutCallbackQ(update))
+                .firstName(getFirstNameFromUpdateWithoutCallbackQ(update))
+                .lastName(getLastNameFromUpdateWithoutCallbackQ(update))
+                .build();
     }
 
-    private boolean getUser(long chatId) {
-        return userRepository.getUser(chatId);
+    public void shutdown() {
+        adminRegistry.shutdown();
+        profileCache.shutdown();
     }
 
     public String getUserName(long chatId) {
@@ -136,20 +178,20 @@ public class UserController {
         return userRepository.getGroupForLinks(chatId);
     }
 
-    public boolean getCanAddFolder(long chatId) {
-        return userRepository.getCanAddFolder(chatId);
+    public Map<Long, ConversationState> getSavedConversationStates() {
+        return userRepository.getSavedConversationStates();
     }
 
-    public boolean getCanAddGroup(long chatId) {
-        return userRepository.getCanAddGroup(chatId);
+    public void saveConversationStates(Map<Long, ConversationState> states) {
+        userRepository.saveConversationStates(states);
     }
 
-    public boolean getCanAddLink(long chatId) {
-        return userRepository.getCanAddLink(chatId);
+    public ChatIdPage getChatIdPage(BroadcastSegment segment, String groupId, long afterId, int limit) {
+        return userRepository.getChatIdPage(segment, groupId, afterId, limit);
     }
 
-    public List<Long> getAllUsersChatId() {
-        return userRepository.getAllUsersChatId();
+    public int countUsers(BroadcastSegment segment, String groupId) {
+        return userRepository.countUsers(segment, groupId);
     }
 
     public void updateGroupId(long chatId, String groupId) {
@@ -160,37 +202,12 @@ public class UserController {
         userRepository.updateFilePath(chatId, filePath);
     }
 
-    public void updateCanAddFolder(long chatId, byte bool) {
-        userRepository.updateCanAddFolder(chatId, bool);
-    }
-
-    public void updateCanAddGroup(long chatId, byte bool) {
-        userRepository.updateCanAddGroup(chatId, bool);
-    }
-
-    public void updateCanAddLink(long chatId, byte bool) {
-        userRepository.updateCanAddLink(chatId, bool);
-    }
-
-    public void updateUserName(long chatId, String userName) {
-        userRepository.updateUserName(chatId, userName);
-    }
-
     public void updateGroupForLinks(long chatId, String groupForLinks) {
         userRepository.updateGroupForLinks(chatId, groupForLinks);
     }
 
-    public void updateFirstName(long chatId, String firstName) {
-        userRepository.updateFirstName(chatId, firstName);
-    }
-
-    public void updateLastName(long chatId, String lastName) {
-        userRepository.updateLastName(chatId, lastName);
-    }
-
     public String getAdminRole(long chatId) {
-        String userName = getUserName(chatId);
-        return adminRepository.getAdminRole(userName);
+        return adminRegistry.getRole(chatId);
     }
 
     public List<String> getAdminsUsername() {
@@ -0,0 +1,112 @@
+package org.example.controller;
+
+import org.example.database.repository.UserRepository;
+import org.example.dto.UserContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Последние известные username/имя/фамилия по chatId.
+ * Изменения профиля не пишутся в базу сразу: они копятся (для одного чата остается только последнее)
+ * и периодически сохраняются одной пачкой INSERT ... ON DUPLICATE KEY UPDATE.
+ * Если профиль не менялся, в базу ничего не пишется. Не записанная из-за ошибки пачка
+ * возвращается в очередь и повторяется при следующем сохранении
+ */
+public class UserProfileCache {
+    private final UserRepository userRepository;
+    private final ConcurrentHashMap<Long, UserContext> knownProfiles = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, UserContext> pendingWrites = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public UserProfileCache(UserRepository userRepository, Duration flushInterval) {
+        this.userRepository = userRepository;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-profile-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = flushInterval.toMillis();
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                System.err.printf("Error (UserProfileCache - scheduled flush): %s%n", e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Новый пользователь записывается сразу, чтобы следующие UPDATE по его chatId нашли строку.
+     * Если запись не удалась, профиль остается в очереди
+     */
+    public void addNow(UserContext profile) {
+        knownProfiles.put(profile.getChatId(), profile);
+        pendingWrites.remove(profile.getChatId());
+        if (!userRepository.upsertProfiles(List.of(profile))) {
+            pendingWrites.putIfAbsent(profile.getChatId(), profile);
+        }
+    }
+
+    /**
+     * Сравнивает профиль из апдейта с последним известным и ставит в очередь на запись, если он изменился
+     *
+     * @param stored профиль, прочитанный из базы в этом апдейте
+     * @param actual профиль из апдейта
+     */
+    public void track(UserContext stored, UserContext actual) {
+        long chatId = actual.getChatId();
+        UserContext known = knownProfiles.get(chatId);
+        if (known == null) {
+            known = stored;
+        }
+        if (sameProfile(known, actual)) {
+            knownProfiles.putIfAbsent(chatId, actual);
+            return;
+        }
+        knownProfiles.put(chatId, actual);
+        pendingWrites.put(chatId, actual);
+    }
+
+    private static boolean sameProfile(UserContext first, UserContext second) {
+        return Objects.equals(first.getUserName(), second.getUserName())
+                && Objects.equals(first.getFirstName(), second.getFirstName())
+                && Objects.equals(first.getLastName(), second.getLastName());
+    }
+
+    public int getPendingCount() {
+        return pendingWrites.size();
+    }
+
+    public void flush() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        List<UserContext> batch = new ArrayList<>();
+        for (Map.Entry<Long, UserContext> entry : pendingWrites.entrySet()) {
+            // Более новое изменение, пришедшее во время записи, останется до следующего раза
+            if (pendingWrites.remove(entry.getKey(), entry.getValue())) {
+                batch.add(entry.getValue());
+            }
+        }
+        if (batch.isEmpty() || userRepository.upsertProfiles(batch)) {
+            return;
+        }
+        // Запись не удалась: возвращаем пачку, кроме чатов, для которых уже пришло более новое изменение
+        for (UserContext profile : batch) {
+            pendingWrites.putIfAbsent(profile.getChatId(), profile);
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+}
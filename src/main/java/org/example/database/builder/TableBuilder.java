@@ -4,6 +4,7 @@ import org.example.database.Database;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 public class TableBuilder {
@@ -19,6 +20,31 @@ public class TableBuilder {
     private final String CREATE_DELETION_LOG_TABLE;
     private final String CREATE_USER_BANS_TABLE;
     private final String CREATE_USER_BANS_HISTORY_TABLE;
+    private final String CREATE_BROADCASTS_TABLE;
+    private final String CREATE_FILE_BLOBS_TABLE;
+    // Для таблиц, созданных до появления уникального индекса по ChatId
+    private static final String CHECK_USERS_CHAT_ID_INDEX = "SELECT 1 FROM information_schema.STATISTICS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'users' AND INDEX_NAME = 'UK_users_ChatId'";
+    private static final String FIND_DUPLICATE_USERS = "SELECT ChatId, MIN(Id) AS KeptId, MAX(Id) AS LatestId " +
+            "FROM users GROUP BY ChatId HAVING COUNT(*) > 1";
+    // Непустые значения из самой новой записи переносятся в самую раннюю
+    private static final String MERGE_DUPLICATE_USER = "UPDATE users kept JOIN users latest ON latest.Id = ? " +
+            "SET kept.UserName = COALESCE(latest.UserName, kept.UserName), " +
+            "kept.FirstName = COALESCE(latest.FirstName, kept.FirstName), " +
+            "kept.LastName = COALESCE(latest.LastName, kept.LastName), " +
+            "kept.Folder = COALESCE(latest.Folder, kept.Folder), " +
+            "kept.GroupId = COALESCE(latest.GroupId, kept.GroupId), " +
+            "kept.GroupForLinks = COALESCE(latest.GroupForLinks, kept.GroupForLinks) " +
+            "WHERE kept.Id = ?";
+    private static final String DELETE_DUPLICATE_USER = "DELETE FROM users WHERE ChatId = ? AND Id <> ?";
+    private static final String ADD_USERS_CHAT_ID_INDEX = "ALTER TABLE users ADD UNIQUE KEY UK_users_ChatId (ChatId)";
+    // Для таблиц, созданных до появления новых колонок
+    private static final String CHECK_COLUMN = "SELECT 1 FROM information_schema.COLUMNS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+    private static final String ADD_FILE_TRACKER_TELEGRAM_COLUMNS = "ALTER TABLE file_tracker " +
+            "ADD COLUMN TelegramFileId VARCHAR(255) NULL, ADD COLUMN TelegramFileModified BIGINT NULL";
+    private static final String ADD_FILE_TRACKER_CONTENT_HASH_COLUMN = "ALTER TABLE file_tracker " +
+            "ADD COLUMN ContentHash CHAR(64) NULL";
 
     public TableBuilder() {
         dataBaseConnection = Database.getInstance();
@@ -35,7 +61,8 @@ public class TableBuilder {
                 CanAddLink TINYINT DEFAULT 0,
                 GroupId NVARCHAR(4) NULL,
                 GroupForLinks NVARCHAR(20) NULL,
-                PRIMARY KEY (Id))
+                PRIMARY KEY (Id),
+                UNIQUE KEY UK_users_ChatId (ChatId))
                 """;
         CREATE_FOLDER_TRACKING_TABLE_SQL = """
                 CREATE TABLE IF NOT EXISTS folder_tracker(
@@ -50,6 +77,9 @@ public class TableBuilder {
                 ChatId BIGINT NOT NULL,
                 Folder NVARCHAR(20) NOT NULL,
                 FileName NVARCHAR(100) NOT NULL,
+                TelegramFileId VARCHAR(255) NULL,
+                TelegramFileModified BIGINT NULL,
+                ContentHash CHAR(64) NULL,
                 PRIMARY KEY (Id))
                 """;
         CREATE_FILES_HISTORY_TABLE_SQL = """
@@ -116,6 +146,29 @@ public class TableBuilder {
                 Action NVARCHAR(10) NOT NULL,
                 PRIMARY KEY(Id))
                 """;
+        CREATE_BROADCASTS_TABLE = """
+                CREATE TABLE IF NOT EXISTS broadcasts (
+                Id BIGINT NOT NULL AUTO_INCREMENT,
+                AdminChatId BIGINT NOT NULL,
+                Text TEXT NOT NULL,
+                Segment NVARCHAR(10) NOT NULL,
+                SegmentValue NVARCHAR(50) NULL,
+                LastUserId BIGINT NOT NULL DEFAULT 0,
+                Sent INT NOT NULL DEFAULT 0,
+                Failed INT NOT NULL DEFAULT 0,
+                Total INT NOT NULL DEFAULT 0,
+                Status NVARCHAR(10) NOT NULL,
+                PRIMARY KEY(Id))
+                """;
+        CREATE_FILE_BLOBS_TABLE = """
+                CREATE TABLE IF NOT EXISTS file_blobs (
+                Sha256 CHAR(64) NOT NULL,
+                FileUniqueId VARCHAR(64) NULL,
+                Size BIGINT NOT NULL,
+                RefCount INT NOT NULL DEFAULT 0,
+                PRIMARY KEY(Sha256),
+                KEY IX_file_blobs_FileUniqueId (FileUniqueId))
+                """;
     }
 
     private void checkSQLUpdate(int rowsAffected, String tableName) {
@@ -137,10 +190,89 @@ public class TableBuilder {
         }
     }
 
+    /**
+     * Уникальный индекс по ChatId нужен для INSERT ... ON DUPLICATE KEY UPDATE профилей.
+     * Перед созданием дубли пользователей объединяются в самую раннюю запись: непустые username, имя,
+     * папка и группы берутся из самой новой. Каждое объединение пишется в лог, все выполняется в одной транзакции
+     */
+    private void ensureUsersChatIdIndex() {
+        try (Connection connection = dataBaseConnection.getConnection()) {
+            try (PreparedStatement check = connection.prepareStatement(CHECK_USERS_CHAT_ID_INDEX);
+                 ResultSet resultSet = check.executeQuery()) {
+                if (resultSet.next()) {
+                    return;
+                }
+            }
+            int merged = mergeDuplicateUsers(connection);
+            try (PreparedStatement addIndex = connection.prepareStatement(ADD_USERS_CHAT_ID_INDEX)) {
+                addIndex.executeUpdate();
+                System.out.printf("USERS unique ChatId index created, duplicate rows merged: %d%n", merged);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error (TableBuilderClass (method - ensureUsersChatIdIndex()))" + e);
+            System.exit(103);
+        }
+    }
+
+    private int mergeDuplicateUsers(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        int merged = 0;
+        try (PreparedStatement find = connection.prepareStatement(FIND_DUPLICATE_USERS);
+             PreparedStatement merge = connection.prepareStatement(MERGE_DUPLICATE_USER);
+             PreparedStatement delete = connection.prepareStatement(DELETE_DUPLICATE_USER);
+             ResultSet duplicates = find.executeQuery()) {
+            while (duplicates.next()) {
+                long chatId = duplicates.getLong("ChatId");
+                long keptId = duplicates.getLong("KeptId");
+                long latestId = duplicates.getLong("LatestId");
+                merge.setLong(1, latestId);
+                merge.setLong(2, keptId);
+                merge.executeUpdate();
+                delete.setLong(1, chatId);
+                delete.setLong(2, keptId);
+                int removed = delete.executeUpdate();
+                merged += removed;
+                System.out.printf("USERS duplicate chatId %d: %d rows merged into Id %d%n", chatId, removed, keptId);
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        return merged;
+    }
+
+    // Добавляет колонки в существующую таблицу, если колонки column еще нет
+    private void ensureColumn(String table, String column, String addColumnSql) {
+        try (Connection connection = dataBaseConnection.getConnection()) {
+            try (PreparedStatement check = connection.prepareStatement(CHECK_COLUMN)) {
+                check.setString(1, table);
+                check.setString(2, column);
+                try (ResultSet resultSet = check.executeQuery()) {
+                    if (resultSet.next()) {
+                        return;
+                    }
+                }
+            }
+            try (PreparedStatement addColumns = connection.prepareStatement(addColumnSql)) {
+                addColumns.executeUpdate();
+                System.out.printf("%s column %s added%n", table, column);
+            }
+        } catch (SQLException e) {
+            System.err.printf("Error (TableBuilderClass (method - ensureColumn(%s, %s)))%s%n", table, column, e);
+            System.exit(103);
+        }
+    }
+
     public void createTables() {
         executeSQL(CREATE_USERS_TABLE_SQL, "USERS");
+        ensureUsersChatIdIndex();
         executeSQL(CREATE_FOLDER_TRACKING_TABLE_SQL, "FOLDER TRACKING");
         executeSQL(CREATE_FILE_TRACKING_TABLE_SQL, "FILE TRACKING");
+        ensureColumn("file_tracker", "TelegramFileId", ADD_FILE_TRACKER_TELEGRAM_COLUMNS);
+        ensureColumn("file_tracker", "ContentHash", ADD_FILE_TRACKER_CONTENT_HASH_COLUMN);
         executeSQL(CREATE_FILES_HISTORY_TABLE_SQL, "FILES HISTORY");
         executeSQL(CREATE_ADMINS_TABLE_SQL, "ADMINS");
         executeSQL(CREATE_LINKS_TABLE_SQL, "LINKS TABLE");
@@ -149,5 +281,7 @@ public class TableBuilder {
         executeSQL(CREATE_DELETION_LOG_TABLE, "DELETION LOG TABLE");
         executeSQL(CREATE_USER_BANS_TABLE, "USER BANS TABLE");
         executeSQL(CREATE_USER_BANS_HISTORY_TABLE, "USER BANS HISTORY TABLE");
+        executeSQL(CREATE_BROADCASTS_TABLE, "BROADCASTS TABLE");
+        executeSQL(CREATE_FILE_BLOBS_TABLE, "FILE BLOBS TABLE");
     }
 }
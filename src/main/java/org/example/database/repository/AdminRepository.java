@@ -7,7 +7,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class AdminRepository {
     private final Database databaseConnection = Database.getInstance();
@@ -17,6 +19,9 @@ public class AdminRepository {
     private static final String ADD_ADMIN = "INSERT INTO " + tableName + " (Username, Role) values (?, ?)";
     private static final String GET_ADMIN = "SELECT Username FROM " + tableName + " WHERE Username = ?";
     private static final String GET_ADMIN_ROLE = "SELECT Role FROM " + tableName + " WHERE Username = ?";
+    private static final String GET_ADMIN_ROLES = "SELECT Username, Role FROM " + tableName;
+    private static final String GET_ADMIN_CHAT_IDS = "SELECT u.ChatId, u.UserName FROM " + tableName +
+            " a JOIN users u ON u.UserName = a.Username";
 
 
     public List<String> getAdminsUsername() {
@@ -79,4 +84,40 @@ public class AdminRepository {
         }
         return "";
     }
+
+    /**
+     * Все админы с ролями, null при ошибке
+     */
+    public Map<String, String> getAdminRoles() {
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(GET_ADMIN_ROLES);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            Map<String, String> roles = new HashMap<>();
+            while (resultSet.next()) {
+                roles.put(resultSet.getNString(1), resultSet.getNString(2));
+            }
+            return roles;
+        } catch (SQLException e) {
+            System.err.println("Error (AdminRepositoryClass (method getAdminRoles())) " + e);
+        }
+        return null;
+    }
+
+    /**
+     * chatId -> username для админов, которые уже писали боту, null при ошибке
+     */
+    public Map<Long, String> getAdminChatIds() {
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(GET_ADMIN_CHAT_IDS);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            Map<Long, String> chatIds = new HashMap<>();
+            while (resultSet.next()) {
+                chatIds.put(resultSet.getLong(1), resultSet.getNString(2));
+            }
+            return chatIds;
+        } catch (SQLException e) {
+            System.err.println("Error (AdminRepositoryClass (method getAdminChatIds())) " + e);
+        }
+        return null;
+    }
 }
@@ -0,0 +1,100 @@
+package org.example.database.repository;
+
+import org.example.bot.broadcast.BroadcastSegment;
+import org.example.database.Database;
+import org.example.dto.BroadcastDTO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BroadcastRepository {
+    private final Database database = Database.getInstance();
+    private static final String tableName = "broadcasts";
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_DONE = "DONE";
+
+    private static final String ADD_BROADCAST = "INSERT INTO " + tableName +
+            " (AdminChatId, Text, Segment, SegmentValue, Total, Status) VALUES (?, ?, ?, ?, ?, '" + STATUS_RUNNING + "')";
+    private static final String UPDATE_PROGRESS = "UPDATE " + tableName +
+            " SET LastUserId = ?, Sent = ?, Failed = ? WHERE Id = ?";
+    private static final String UPDATE_STATUS = "UPDATE " + tableName + " SET Status = ? WHERE Id = ?";
+    private static final String GET_UNFINISHED = "SELECT Id, AdminChatId, Text, Segment, SegmentValue, LastUserId, " +
+            "Sent, Failed, Total FROM " + tableName + " WHERE Status = '" + STATUS_RUNNING + "' ORDER BY Id";
+
+    /**
+     * @return Id новой рассылки или -1 при ошибке
+     */
+    public long addBroadcast(BroadcastDTO broadcast) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(ADD_BROADCAST, Statement.RETURN_GENERATED_KEYS)) {
+            preparedStatement.setLong(1, broadcast.getAdminChatId());
+            preparedStatement.setNString(2, broadcast.getText());
+            preparedStatement.setNString(3, broadcast.getSegment().toString());
+            preparedStatement.setNString(4, broadcast.getSegmentValue());
+            preparedStatement.setInt(5, broadcast.getTotal());
+            preparedStatement.executeUpdate();
+            try (ResultSet keys = preparedStatement.getGeneratedKeys()) {
+                if (keys.next()) {
+                    return keys.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.printf("Error (BroadcastRepository (method addBroadcast(adminChatId : %d)))%n%s%n", broadcast.getAdminChatId(), e);
+        }
+        return -1;
+    }
+
+    public void updateProgress(long id, long lastUserId, int sent, int failed) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_PROGRESS)) {
+            preparedStatement.setLong(1, lastUserId);
+            preparedStatement.setInt(2, sent);
+            preparedStatement.setInt(3, failed);
+            preparedStatement.setLong(4, id);
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            System.err.printf("Error (BroadcastRepository (method updateProgress(id : %d, lastUserId : %d)))%n%s%n", id, lastUserId, e);
+        }
+    }
+
+    public void updateStatus(long id, String status) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_STATUS)) {
+            preparedStatement.setNString(1, status);
+            preparedStatement.setLong(2, id);
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            System.err.printf("Error (BroadcastRepository (method updateStatus(id : %d, status : %s)))%n%s%n", id, status, e);
+        }
+    }
+
+    public List<BroadcastDTO> getUnfinished() {
+        List<BroadcastDTO> broadcasts = new ArrayList<>();
+        try (Connection connection = database.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(GET_UNFINISHED);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                broadcasts.add(BroadcastDTO.builder()
+                        .id(resultSet.getLong("Id"))
+                        .adminChatId(resultSet.getLong("AdminChatId"))
+                        .text(resultSet.getNString("Text"))
+                        .segment(BroadcastSegment.valueOf(resultSet.getNString("Segment")))
+                        .segmentValue(resultSet.getNString("SegmentValue"))
+                        .lastUserId(resultSet.getLong("LastUserId"))
+                        .sent(resultSet.getInt("Sent"))
+                        .failed(resultSet.getInt("Failed"))
+                        .total(resultSet.getInt("Total"))
+                        .build());
+            }
+        } catch (SQLException e) {
+            System.err.printf("Error (BroadcastRepository (method getUnfinished()))%n%s%n", e);
+        }
+        return broadcasts;
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.database.repository;
+
+import org.example.database.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Индекс хранилища содержимого файлов: SHA-256 -> file_unique_id Telegram, размер и число ссылок из file_tracker
+ */
+public class FileBlobRepository {
+    private final Database database = Database.getInstance();
+    private static final String tableName = "file_blobs";
+
+    private static final String GET_HASH_BY_UNIQUE_ID = "SELECT Sha256 FROM " + tableName + " WHERE FileUniqueId = ? LIMIT 1";
+    // Для уже известного содержимого увеличивает счетчик, file_unique_id остается первым известным
+    private static final String ADD_REFERENCE = "INSERT INTO " + tableName + " (Sha256, FileUniqueId, Size, RefCount) " +
+            "VALUES (?, ?, ?, 1) ON DUPLICATE KEY UPDATE RefCount = RefCount + 1, " +
+            "FileUniqueId = COALESCE(FileUniqueId, VALUES(FileUniqueId))";
+    private static final String RELEASE_REFERENCE = "UPDATE " + tableName + " SET RefCount = RefCount - 1 " +
+            "WHERE Sha256 = ? AND RefCount > 0";
+    private static final String GET_SIZE = "SELECT Size FROM " + tableName + " WHERE Sha256 = ?";
+    private static final String GET_REF_COUNT = "SELECT RefCount FROM " + tableName + " WHERE Sha256 = ?";
+    private static final String DELETE_UNREFERENCED = "DELETE FROM " + tableName + " WHERE Sha256 = ? AND RefCount = 0";
+
+    /**
+     * @return SHA-256 содержимого или null, если файл с таким file_unique_id еще не загружался
+     */
+    public String getHashByUniqueId(String fileUniqueId) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(GET_HASH_BY_UNIQUE_ID)) {
+            preparedStatement.setString(1, fileUniqueId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return resultSet.getString(1);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.printf("Error (FileBlobRepository (method getHashByUniqueId(fileUniqueId : %s)))%n%s%n", fileUniqueId, e);
+        }
+        return null;
+    }
+
+    public boolean addReference(String sha256, String fileUniqueId, long size) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(ADD_REFERENCE)) {
+            preparedStatement.setString(1, sha256);
+            preparedStatement.setString(2, fileUniqueId);
+            preparedStatement.setLong(3, size);
+            return preparedStatement.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.err.printf("Error (FileBlobRepository (method addReference(sha256 : %s)))%n%s%n", sha256, e);
+        }
+        return false;
+    }
+
+    /**
+     * Уменьшает счетчик ссылок, запись без ссылок удаляется
+     *
+     * @return сколько ссылок осталось, -1 при ошибке базы
+     */
+    public int releaseReference(String sha256) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement release = connection.prepareStatement(RELEASE_REFERENCE);
+             PreparedStatement count = connection.prepareStatement(GET_REF_COUNT);
+             PreparedStatement delete = connection.prepareStatement(DELETE_UNREFERENCED)) {
+            release.setString(1, sha256);
+            release.executeUpdate();
+            count.setString(1, sha256);
+            int refCount = 0;
+            try (ResultSet resultSet = count.executeQuery()) {
+                if (resultSet.next()) {
+                    refCount = resultSet.getInt(1);
+                }
+            }
+            if (refCount == 0) {
+                delete.setString(1, sha256);
+                delete.executeUpdate();
+            }
+            return refCount;
+        } catch (SQLException e) {
+            System.err.printf("Error (FileBlobRepository (method releaseReference(sha256 : %s)))%n%s%n", sha256, e);
+        }
+        return -1;
+    }
+
+    /**
+     * @return размер содержимого при первой загрузке или -1, если записи нет
+     */
+    public long getSize(String sha256) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(GET_SIZE)) {
+            preparedStatement.setString(1, sha256);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : -1;
+            }
+        } catch (SQLException e) {
+            System.err.printf("Error (FileBlobRepository (method getSize(sha256 : %s)))%n%s%n", sha256, e);
+        }
+        return -1;
+    }
+
+    public int getRefCount(String sha256) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(GET_REF_COUNT)) {
+            preparedStatement.setString(1, sha256);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            System.err.printf("Error (FileBlobRepository (method getRefCount(sha256 : %s)))%n%s%n", sha256, e);
+        }
+        return -1;
+    }
+}
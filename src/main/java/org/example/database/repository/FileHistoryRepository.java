@@ -1,10 +1,12 @@
 package org.example.database.repository;
 
 import org.example.database.Database;
+import org.example.dto.FileDTO;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
 
 public class FileHistoryRepository {
     private final Database databaseConnection = Database.getInstance();
@@ -12,6 +14,21 @@ public class FileHistoryRepository {
 
     private static final String PUT_FILE_INFO_TO_FILES_HISTORY = "INSERT INTO " + filesHistoryTable + " (ChatId, FilePath) values (? ,?)";
 
+    public void putFilesInfoToFilesHistory(long chatId, List<FileDTO> files) {
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(PUT_FILE_INFO_TO_FILES_HISTORY)) {
+            for (FileDTO file : files) {
+                preparedStatement.setLong(1, chatId);
+                preparedStatement.setString(2, file.getFolder() + "/" + file.getFileName());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        } catch (SQLException e) {
+            System.err.printf("Error (FileTrackerRepositoryClass (method putFilesInfoToFilesHistory(chatId : %d, size : %d)))%n%s%n",
+                    chatId, files.size(), e);
+        }
+    }
+
     public void putFileInfoToFilesHistory(long chatId, String folder, String fileName) {
         try (Connection connection = databaseConnection.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(PUT_FILE_INFO_TO_FILES_HISTORY)) {
@@ -8,29 +8,75 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class FileTrackerRepository {
     private final Database databaseConnection = Database.getInstance();
     private static final String tableName = "file_tracker";
 
-    private static final String PUT_FILE_INFO = "INSERT INTO " + tableName + " (ChatId, Folder, FileName) values (?, ?, ?)";
+    // Строку для файла могла раньше добавить сверка с диском (ChatId 0, без хэша), тогда загрузка забирает ее себе
+    private static final String CLAIM_FILE_INFO = "UPDATE " + tableName + " SET ChatId = ?, TelegramFileId = ?, " +
+            "TelegramFileModified = ?, ContentHash = ? WHERE Folder = ? AND FileName = ? AND ChatId = 0 AND ContentHash IS NULL";
+    private static final String PUT_FILE_INFO = "INSERT INTO " + tableName + " (ChatId, Folder, FileName, TelegramFileId, TelegramFileModified, ContentHash) values (?, ?, ?, ?, ?, ?)";
     private static final String GET_ALL_USER_FILES = "SELECT Id, Folder, FileName FROM " + tableName + " WHERE ChatId = ?";
-    private static final String GET_ALL_FILES_BY_FOLDER_NAME = "SELECT Id, FileName FROM " + tableName + " WHERE Folder = ?";
+    private static final String GET_ALL_FILES_BY_FOLDER_NAME = "SELECT Id, FileName, ContentHash, TelegramFileId, TelegramFileModified FROM " + tableName + " WHERE Folder = ?";
 
 
     private static final String GET_FILE_CHAT_ID_BY_ID = "SELECT ChatId FROM " + tableName + " WHERE Id = ?";
     private static final String DELETE_USER_FILE_BY_ID = "DELETE FROM " + tableName + " WHERE Id = ?";
-    private static final String GET_FILE_INFO_BY_FILE_ID = "SELECT Folder, FileName FROM " + tableName + " WHERE Id = ?";
+    private static final String GET_FILE_INFO_BY_FILE_ID = "SELECT Folder, FileName, TelegramFileId, TelegramFileModified, ContentHash FROM " + tableName + " WHERE Id = ?";
+    private static final String GET_ALL_FILES = "SELECT Id, Folder, FileName, ContentHash FROM " + tableName;
+    // Файл мог быть добавлен загрузкой, пока шла сверка, поэтому строка вставляется только если ее еще нет
+    private static final String PUT_FILE_INFO_IF_ABSENT = "INSERT INTO " + tableName + " (ChatId, Folder, FileName) " +
+            "SELECT ?, ?, ? FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM " + tableName + " WHERE Folder = ? AND FileName = ?)";
+    private static final int BATCH_SIZE = 500;
+    private static final String UPDATE_TELEGRAM_FILE_ID = "UPDATE " + tableName + " SET TelegramFileId = ?, TelegramFileModified = ? WHERE Id = ?";
 
-    public void putFileInfo(long chatId, String folder, String fileName) {
+    /**
+     * @param telegramFileId file_id загруженного в Telegram документа или null, если файл появился только на диске
+     * @param telegramFileModified время изменения файла на диске, для которого получен telegramFileId
+     * @param contentHash SHA-256 содержимого в хранилище .blobs или null
+     */
+    public void putFileInfo(long chatId, String folder, String fileName, String telegramFileId, long telegramFileModified,
+                            String contentHash) {
         try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement claim = connection.prepareStatement(CLAIM_FILE_INFO);
              PreparedStatement preparedStatement1 = connection.prepareStatement(PUT_FILE_INFO)) {
+            if (chatId != 0) {
+                claim.setLong(1, chatId);
+                if (telegramFileId != null) {
+                    claim.setString(2, telegramFileId);
+                    claim.setLong(3, telegramFileModified);
+                } else {
+                    claim.setNull(2, Types.VARCHAR);
+                    claim.setNull(3, Types.BIGINT);
+                }
+                claim.setString(4, contentHash);
+                claim.setNString(5, folder);
+                claim.setNString(6, fileName);
+                if (claim.executeUpdate() > 0) {
+                    System.out.println("Claim file info for file " + folder + " / " + fileName);
+                    return;
+                }
+            }
             // Для основной таблицы
             preparedStatement1.setLong(1, chatId);
             preparedStatement1.setNString(2, folder);
             preparedStatement1.setNString(3, fileName);
+            if (telegramFileId != null) {
+                preparedStatement1.setString(4, telegramFileId);
+                preparedStatement1.setLong(5, telegramFileModified);
+            } else {
+                preparedStatement1.setNull(4, Types.VARCHAR);
+                preparedStatement1.setNull(5, Types.BIGINT);
+            }
+            preparedStatement1.setString(6, contentHash);
             int rowsAffected = preparedStatement1.executeUpdate();
             if (rowsAffected > 0) {
                 System.out.println("Add file info for file " + folder + " / " + fileName);
@@ -93,9 +139,16 @@ public class FileTrackerRepository {
             if (resultSet.next()) {
                 String folder = resultSet.getNString(1);
                 String fileName = resultSet.getNString(2);
+                String telegramFileId = resultSet.getString(3);
+                long telegramFileModified = resultSet.getLong(4);
+                String contentHash = resultSet.getString(5);
                 FileDTO fileDTO = FileDTO.builder()
+                        .id(fileId)
                         .folder(folder)
                         .fileName(fileName)
+                        .telegramFileId(telegramFileId)
+                        .telegramFileModified(telegramFileModified)
+                        .contentHash(contentHash)
                         .build();
                 return fileDTO;
             }
@@ -105,6 +158,26 @@ public class FileTrackerRepository {
         return null;
     }
 
+    /**
+     * Сохраняет file_id, под которым Telegram хранит файл. null сбрасывает кэш, и файл снова загружается с диска
+     */
+    public void updateTelegramFileId(long fileId, String telegramFileId, long telegramFileModified) {
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_TELEGRAM_FILE_ID)) {
+            if (telegramFileId != null) {
+                preparedStatement.setString(1, telegramFileId);
+                preparedStatement.setLong(2, telegramFileModified);
+            } else {
+                preparedStatement.setNull(1, Types.VARCHAR);
+                preparedStatement.setNull(2, Types.BIGINT);
+            }
+            preparedStatement.setLong(3, fileId);
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            System.err.printf("Error (FileTrackerRepositoryClass (method updateTelegramFileId(fileId : %d)))%n%s%n", fileId, e);
+        }
+    }
+
     public boolean deleteUserFileFromRepository(long fileId) {
         try (Connection connection = databaseConnection.getConnection();
             PreparedStatement preparedStatement = connection.prepareStatement(DELETE_USER_FILE_BY_ID)) {
@@ -119,6 +192,120 @@ public class FileTrackerRepository {
         return false;
     }
 
+    /**
+     * Все записи file_tracker одним запросом (для сверки с диском)
+     *
+     * @return null при ошибке базы
+     */
+    public List<FileDTO> getAllFiles() {
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(GET_ALL_FILES);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            List<FileDTO> files = new ArrayList<>();
+            while (resultSet.next()) {
+                files.add(FileDTO.builder()
+                        .id(resultSet.getLong(1))
+                        .folder(resultSet.getNString(2))
+                        .fileName(resultSet.getNString(3))
+                        .contentHash(resultSet.getString(4))
+                        .build());
+            }
+            return files;
+        } catch (SQLException e) {
+            System.err.printf("Error (FileTrackerRepositoryClass (method getAllFiles()))%n%s%n", e);
+        }
+        return null;
+    }
+
+    /**
+     * Пакетная вставка файлов, которых еще нет в таблице
+     *
+     * @return файлы, для которых строка действительно добавлена
+     */
+    public List<FileDTO> putFilesInfo(long chatId, List<FileDTO> files) {
+        List<FileDTO> inserted = new ArrayList<>();
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(PUT_FILE_INFO_IF_ABSENT)) {
+            for (int from = 0; from < files.size(); from += BATCH_SIZE) {
+                List<FileDTO> batch = files.subList(from, Math.min(files.size(), from + BATCH_SIZE));
+                for (FileDTO file : batch) {
+                    preparedStatement.setLong(1, chatId);
+                    preparedStatement.setNString(2, file.getFolder());
+                    preparedStatement.setNString(3, file.getFileName());
+                    preparedStatement.setNString(4, file.getFolder());
+                    preparedStatement.setNString(5, file.getFileName());
+                    preparedStatement.addBatch();
+                }
+                int[] results = preparedStatement.executeBatch();
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i] > 0 || results[i] == Statement.SUCCESS_NO_INFO) {
+                        inserted.add(batch.get(i));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.printf("Error (FileTrackerRepositoryClass (method putFilesInfo(size : %d)))%n%s%n", files.size(), e);
+        }
+        return inserted;
+    }
+
+    /**
+     * Пакетное удаление записей по Id.
+     * Строки пачки сначала блокируются SELECT ... FOR UPDATE: если драйвер вернул SUCCESS_NO_INFO
+     * (rewriteBatchedStatements), удаленными считаются найденные строки, иначе ссылки на blob не освободились бы
+     *
+     * @return Id действительно удаленных строк (другие могли удалить раньше)
+     */
+    public List<Long> deleteFilesByIds(List<Long> ids) {
+        List<Long> deleted = new ArrayList<>();
+        try (Connection connection = databaseConnection.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(DELETE_USER_FILE_BY_ID)) {
+            connection.setAutoCommit(false);
+            try {
+                for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                    List<Long> batch = ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE));
+                    Set<Long> existing = lockExistingIds(connection, batch);
+                    for (Long id : batch) {
+                        preparedStatement.setLong(1, id);
+                        preparedStatement.addBatch();
+                    }
+                    int[] results = preparedStatement.executeBatch();
+                    connection.commit();
+                    for (int i = 0; i < results.length; i++) {
+                        if (results[i] > 0 || (results[i] == Statement.SUCCESS_NO_INFO && existing.contains(batch.get(i)))) {
+                            deleted.add(batch.get(i));
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.printf("Error (FileTrackerRepositoryClass (method deleteFilesByIds(size : %d)))%n%s%n", ids.size(), e);
+        }
+        return deleted;
+    }
+
+    private Set<Long> lockExistingIds(Connection connection, List<Long> ids) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Set<Long> existing = new HashSet<>();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT Id FROM " + tableName + " WHERE Id IN (" + placeholders + ") FOR UPDATE")) {
+            for (int i = 0; i < ids.size(); i++) {
+                select.setLong(i + 1, ids.get(i));
+            }
+            try (ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    existing.add(resultSet.getLong(1));
+                }
+            }
+        }
+        return existing;
+    }
+
     public List<FileDTO> getFilesByFolderName(String folder) {
         try (Connection connection = databaseConnection.getConnection();
             PreparedStatement preparedStatement = connection.prepareStatement(GET_ALL_FILES_BY_FOLDER_NAME)) {
@@ -128,10 +315,14 @@ public class FileTrackerRepository {
             while (resultSet.next()) {
                 long id = resultSet.getLong(1);
                 String fileName = resultSet.getNString(2);
+                String contentHash = resultSet.getString(3);
                 FileDTO fileDTO = FileDTO.builder()
                         .id(id)
                         .folder(folder)
                         .fileName(fileName)
+                        .contentHash(contentHash)
+                        .telegramFileId(resultSet.getString(4))
+                        .telegramFileModified(resultSet.getLong(5))
                         .build();
                 filesDTO.add(fileDTO);
             }
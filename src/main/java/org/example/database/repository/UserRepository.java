@@ -1,39 +1,54 @@
 package org.example.database.repository;
 
+import org.example.bot.broadcast.BroadcastSegment;
+import org.example.bot.state.ConversationState;
 import org.example.database.Database;
+import org.example.dto.ChatIdPage;
+import org.example.dto.UserContext;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.sql.Types;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class UserRepository {
     private final Database dataBaseConnection = Database.getInstance();
     private static final String tableName = "users";
 
-    private final String GET_USER = "SELECT UserName FROM " +  tableName + " WHERE ChatId=?";
+    private final String GET_USER_NAME = "SELECT UserName FROM " +  tableName + " WHERE ChatId = ?";
     private final String GET_USER_FIRST_NAME = "SELECT FirstName FROM " +  tableName + " WHERE ChatId = ?";
     private final String GET_USER_LAST_NAME = "SELECT LastName FROM " +  tableName + " WHERE ChatId = ?";
     private final String GET_FILE_PATH = "SELECT Folder FROM " + tableName + " WHERE ChatId = ?";
     private final String GET_GROUP_ID = "SELECT GroupId FROM " + tableName + " WHERE ChatId = ?";
-    private final String GET_CAN_ADD_FOLDER = "SELECT CanAddFolder FROM " + tableName + " WHERE ChatId = ?";
-    private final String GET_CAN_ADD_GROUP = "SELECT CanAddGroup FROM " + tableName + " WHERE ChatId = ?";
-    private final String GET_CAN_ADD_LINK = "SELECT CanAddLink FROM " + tableName + " WHERE ChatId = ?";
     private final String GET_GROUP_FOR_LINKS = "SELECT GroupForLinks FROM " + tableName + " WHERE ChatId = ?";
-    private final String ADD_USER = "INSERT INTO " + tableName + " (ChatId) values (?)";
     private final String UPDATE_GROUP_ID = "UPDATE " + tableName + " SET GroupId = ? WHERE ChatId = ?";
     private final String UPDATE_FILE_PATH = "UPDATE " + tableName + " SET Folder = ? WHERE ChatId = ?";
-    private final String UPDATE_CAN_ADD_FOLDER = "UPDATE " + tableName + " SET CanAddFolder = ? WHERE ChatId = ?";
-    private final String UPDATE_CAN_ADD_GROUP = "UPDATE " + tableName + " SET CanAddGroup = ? WHERE ChatId = ?";
-    private final String UPDATE_CAN_ADD_LINK = "UPDATE " + tableName + " SET CanAddLink = ? WHERE ChatId = ?";
-    private final String UPDATE_USER_NAME = "UPDATE " + tableName + " SET UserName = ? WHERE ChatId = ?";
     private final String UPDATE_GROUP_FOR_LINKS = "UPDATE " + tableName + " SET GroupForLinks = ? WHERE ChatId = ?";
-    private final String GET_ALL_CHAT_ID = "SELECT ChatId FROM " + tableName;
-    private final String UPDATE_FIRST_NAME = "UPDATE " + tableName + " SET FirstName = ? WHERE ChatId = ?";
-    private final String UPDATE_LAST_NAME = "UPDATE " + tableName + " SET LastName = ? WHERE ChatId = ?";
+    // Постраничная выборка по ключу Id, без OFFSET
+    private final String GET_CHAT_ID_PAGE = "SELECT Id, ChatId FROM " + tableName + " WHERE Id > ? ORDER BY Id LIMIT ?";
+    private final String GET_CHAT_ID_PAGE_BY_GROUP = "SELECT Id, ChatId FROM " + tableName +
+            " WHERE Id > ? AND GroupId = ? ORDER BY Id LIMIT ?";
+    private final String GET_ADMIN_CHAT_ID_PAGE = "SELECT u.Id, u.ChatId FROM " + tableName + " u " +
+            "JOIN admins a ON a.Username = u.UserName WHERE u.Id > ? ORDER BY u.Id LIMIT ?";
+    private final String COUNT_USERS = "SELECT COUNT(*) FROM " + tableName;
+    private final String COUNT_USERS_BY_GROUP = "SELECT COUNT(*) FROM " + tableName + " WHERE GroupId = ?";
+    private final String COUNT_ADMIN_USERS = "SELECT COUNT(*) FROM " + tableName + " u " +
+            "JOIN admins a ON a.Username = u.UserName";
+    private final String GET_USER_CONTEXT = "SELECT UserName, FirstName, LastName, Folder, GroupId, GroupForLinks " +
+            "FROM " + tableName + " WHERE ChatId = ?";
+    // Требует уникального индекса по ChatId (создается в TableBuilder)
+    private final String UPSERT_PROFILE = "INSERT INTO " + tableName +
+            " (ChatId, UserName, FirstName, LastName) values (?, ?, ?, ?)" +
+            " ON DUPLICATE KEY UPDATE UserName = VALUES(UserName), FirstName = VALUES(FirstName), LastName = VALUES(LastName)";
+    private final String UPDATE_ADD_STATUSES = "UPDATE " + tableName +
+            " SET CanAddFolder = ?, CanAddGroup = ?, CanAddLink = ? WHERE ChatId = ?";
+    private final String GET_ADD_STATUSES = "SELECT ChatId, CanAddFolder, CanAddGroup, CanAddLink FROM " + tableName +
+            " WHERE CanAddFolder = 1 OR CanAddGroup = 1 OR CanAddLink = 1";
 
 
     // Метод для выполнения запросов с 1 переменной в запросе
@@ -57,24 +72,34 @@ public class UserRepository {
         return "";
     }
 
-    public boolean getUser(long chatId) {
+    /**
+     * Вся строка пользователя одним запросом, null если пользователя нет. Роль админа берется из AdminRegistry
+     */
+    public UserContext getUserContext(long chatId) {
         try (Connection connection = dataBaseConnection.getConnection();
-            PreparedStatement preparedStatement = connection.prepareStatement(GET_USER)) {
+             PreparedStatement preparedStatement = connection.prepareStatement(GET_USER_CONTEXT)) {
             preparedStatement.setLong(1, chatId);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            if (resultSet.next()) {
-                resultSet.close();
-                return true;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return UserContext.builder()
+                            .chatId(chatId)
+                            .userName(resultSet.getNString("UserName"))
+                            .firstName(resultSet.getNString("FirstName"))
+                            .lastName(resultSet.getNString("LastName"))
+                            .filePath(resultSet.getNString("Folder"))
+                            .groupId(resultSet.getNString("GroupId"))
+                            .groupForLinks(resultSet.getNString("GroupForLinks"))
+                            .build();
+                }
             }
-            resultSet.close();
         } catch (SQLException e) {
-            System.err.printf("Error (UserRepositoryClass (method getUser(chatId : %d))) %n%s%n", chatId, e);
+            System.err.printf("Error (UserRepositoryClass (method getUserContext(chatId : %d))) %n%s%n", chatId, e);
         }
-        return false;
+        return null;
     }
 
     public String getUserName(long chatId) {
-        return executeSQLQuery(GET_USER, chatId);
+        return executeSQLQuery(GET_USER_NAME, chatId);
     }
 
     public String getFirstName(long chatId) {
@@ -97,50 +122,107 @@ public class UserRepository {
         return executeSQLQuery(GET_GROUP_FOR_LINKS, chatId);
     }
 
-    public boolean executeSQLQueryWithBoolean(String query, long chatId) {
+    /**
+     * Чаты, для которых в базе сохранено состояние диалога
+     */
+    public Map<Long, ConversationState> getSavedConversationStates() {
+        Map<Long, ConversationState> states = new HashMap<>();
         try (Connection connection = dataBaseConnection.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-            preparedStatement.setLong(1, chatId);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            if (resultSet.next()) {
-                int result = resultSet.getInt(1);
-                if (result == 1) {
-                    resultSet.close();
-                    return true;
+             PreparedStatement preparedStatement = connection.prepareStatement(GET_ADD_STATUSES);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                ConversationState state;
+                if (resultSet.getInt("CanAddFolder") == 1) {
+                    state = ConversationState.AWAITING_FOLDER_NAME;
+                } else if (resultSet.getInt("CanAddGroup") == 1) {
+                    state = ConversationState.AWAITING_GROUP_NAME;
+                } else {
+                    state = ConversationState.AWAITING_LINK;
                 }
+                states.put(resultSet.getLong("ChatId"), state);
             }
-            resultSet.close();
-            return false;
         } catch (SQLException e) {
-            System.err.printf("Error (UserRepositoryClass (method executeSQLQueryWithBoolean(query : %s, chatId : %d))) %n%s%n", query, chatId, e);
+            System.err.printf("Error (UserRepositoryClass (method getSavedConversationStates())) %s%n", e);
         }
-        return false;
-    }
-
-    public boolean getCanAddFolder(long chatId) {
-        return executeSQLQueryWithBoolean(GET_CAN_ADD_FOLDER, chatId);
+        return states;
     }
 
-    public boolean getCanAddGroup(long chatId) {
-        return executeSQLQueryWithBoolean(GET_CAN_ADD_GROUP, chatId);
+    /**
+     * Записать состояния диалога пачкой, IDLE сбрасывает все флаги
+     */
+    public void saveConversationStates(Map<Long, ConversationState> states) {
+        try (Connection connection = dataBaseConnection.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_ADD_STATUSES)) {
+            for (Map.Entry<Long, ConversationState> entry : states.entrySet()) {
+                ConversationState state = entry.getValue();
+                preparedStatement.setByte(1, (byte) (state == ConversationState.AWAITING_FOLDER_NAME ? 1 : 0));
+                preparedStatement.setByte(2, (byte) (state == ConversationState.AWAITING_GROUP_NAME ? 1 : 0));
+                preparedStatement.setByte(3, (byte) (state == ConversationState.AWAITING_LINK ? 1 : 0));
+                preparedStatement.setLong(4, entry.getKey());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        } catch (SQLException e) {
+            System.err.printf("Error (UserRepositoryClass (method saveConversationStates(size : %d))) %n%s%n", states.size(), e);
+        }
     }
 
-    public boolean getCanAddLink(long chatId) {
-        return executeSQLQueryWithBoolean(GET_CAN_ADD_LINK, chatId);
+    /**
+     * Следующая страница получателей с Id больше afterId
+     *
+     * @param groupId используется только для GROUP
+     */
+    public ChatIdPage getChatIdPage(BroadcastSegment segment, String groupId, long afterId, int limit) {
+        long[] ids = new long[limit];
+        long[] chatIds = new long[limit];
+        int size = 0;
+        String sql = switch (segment) {
+            case ALL -> GET_CHAT_ID_PAGE;
+            case GROUP -> GET_CHAT_ID_PAGE_BY_GROUP;
+            case ADMINS -> GET_ADMIN_CHAT_ID_PAGE;
+        };
+        try (Connection connection = dataBaseConnection.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            int index = 1;
+            preparedStatement.setLong(index++, afterId);
+            if (segment == BroadcastSegment.GROUP) {
+                preparedStatement.setNString(index++, groupId);
+            }
+            preparedStatement.setInt(index, limit);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids[size] = resultSet.getLong(1);
+                    chatIds[size] = resultSet.getLong(2);
+                    size++;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.printf("Error (UserRepositoryClass (method getChatIdPage(segment : %s, afterId : %d))) %n%s%n", segment, afterId, e);
+            return null;
+        }
+        return new ChatIdPage(ids, chatIds, size);
     }
 
-    public List<Long> getAllUsersChatId() {
-        List<Long> chatIdArray = new ArrayList<>();
+    public int countUsers(BroadcastSegment segment, String groupId) {
+        String sql = switch (segment) {
+            case ALL -> COUNT_USERS;
+            case GROUP -> COUNT_USERS_BY_GROUP;
+            case ADMINS -> COUNT_ADMIN_USERS;
+        };
         try (Connection connection = dataBaseConnection.getConnection();
-            PreparedStatement preparedStatement = connection.prepareStatement(GET_ALL_CHAT_ID)) {
-            ResultSet resultSet = preparedStatement.executeQuery();
-            while (resultSet.next()) {
-                chatIdArray.add(resultSet.getLong("ChatId"));
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            if (segment == BroadcastSegment.GROUP) {
+                preparedStatement.setNString(1, groupId);
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return resultSet.getInt(1);
+                }
             }
         } catch (SQLException e) {
-            System.err.printf("Error (UserRepositoryClass (method getAllUsersChatId())) %s%n", e);
+            System.err.printf("Error (UserRepositoryClass (method countUsers(segment : %s))) %n%s%n", segment, e);
         }
-        return chatIdArray;
+        return 0;
     }
 
     private void executeSQLUpdate(String sql, Object ... params) {
@@ -164,9 +246,35 @@ public class UserRepository {
         }
     }
 
-    public void addUser(long chatId) {
-        executeSQLUpdate(ADD_USER, chatId);
-        System.out.println("Add user with chatId: " + chatId);
+    /**
+     * Добавить пользователей или обновить их username/имя/фамилию одной пачкой
+     *
+     * @return false, если пачку записать не удалось
+     */
+    public boolean upsertProfiles(List<UserContext> profiles) {
+        try (Connection connection = dataBaseConnection.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(UPSERT_PROFILE)) {
+            for (UserContext profile : profiles) {
+                preparedStatement.setLong(1, profile.getChatId());
+                setNullableString(preparedStatement, 2, profile.getUserName());
+                setNullableString(preparedStatement, 3, profile.getFirstName());
+                setNullableString(preparedStatement, 4, profile.getLastName());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            return true;
+        } catch (SQLException e) {
+            System.err.printf("Error (UserRepositoryClass (method upsertProfiles(size : %d))) %n%s%n", profiles.size(), e);
+            return false;
+        }
+    }
+
+    private static void setNullableString(PreparedStatement preparedStatement, int index, String value) throws SQLException {
+        if (value == null || value.isEmpty()) {
+            preparedStatement.setNull(index, Types.NVARCHAR);
+        } else {
+            preparedStatement.setString(index, value);
+        }
     }
 
     public void updateGroupId(long chatId, String groupId) {
@@ -177,31 +285,7 @@ public class UserRepository {
         executeSQLUpdate(UPDATE_FILE_PATH, filePath, chatId);
     }
 
-    public void updateCanAddFolder(long chatId, byte bool) {
-        executeSQLUpdate(UPDATE_CAN_ADD_FOLDER, bool, chatId);
-    }
-
-    public void updateCanAddGroup(long chatId, byte bool) {
-        executeSQLUpdate(UPDATE_CAN_ADD_GROUP, bool, chatId);
-    }
-
-    public void updateCanAddLink(long chatId, byte bool) {
-        executeSQLUpdate(UPDATE_CAN_ADD_LINK, bool, chatId);
-    }
-
-    public void updateUserName(long chatId, String userName) {
-        executeSQLUpdate(UPDATE_USER_NAME, userName, chatId);
-    }
-
     public void updateGroupForLinks(long chatId, String groupForLinks) {
         executeSQLUpdate(UPDATE_GROUP_FOR_LINKS, groupForLinks, chatId);
     }
-
-    public void updateFirstName(long chatId, String firstName) {
-        executeSQLUpdate(UPDATE_FIRST_NAME, firstName, chatId);
-    }
-
-    public void updateLastName(long chatId, String lastName) {
-        executeSQLUpdate(UPDATE_LAST_NAME, lastName, chatId);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+package org.example.dto;
+
+import org.example.bot.broadcast.BroadcastSegment;
+
+public class BroadcastDTO {
+    private long id;
+    private long adminChatId;
+    private String text;
+    private BroadcastSegment segment;
+    private String segmentValue;
+    private long lastUserId;
+    private int sent;
+    private int failed;
+    private int total;
+
+    private BroadcastDTO(Builder builder) {
+        id = builder.id;
+        adminChatId = builder.adminChatId;
+        text = builder.text;
+        segment = builder.segment;
+        segmentValue = builder.segmentValue;
+        lastUserId = builder.lastUserId;
+        sent = builder.sent;
+        failed = builder.failed;
+        total = builder.total;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getAdminChatId() {
+        return adminChatId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public BroadcastSegment getSegment() {
+        return segment;
+    }
+
+    public String getSegmentValue() {
+        return segmentValue;
+    }
+
+    public long getLastUserId() {
+        return lastUserId;
+    }
+
+    public int getSent() {
+        return sent;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private long id;
+        private long adminChatId;
+        private String text;
+        private BroadcastSegment segment = BroadcastSegment.ALL;
+        private String segmentValue;
+        private long lastUserId;
+        private int sent;
+        private int failed;
+        private int total;
+
+        public Builder id(long id) {
+            this.id = id;
+            return this;
+        }
+
+        public Builder adminChatId(long adminChatId) {
+            this.adminChatId = adminChatId;
+            return this;
+        }
+
+        public Builder text(String text) {
+            this.text = text;
+            return this;
+        }
+
+        public Builder segment(BroadcastSegment segment) {
+            this.segment = segment;
+            return this;
+        }
+
+        public Builder segmentValue(String segmentValue) {
+            this.segmentValue = segmentValue;
+            return this;
+        }
+
+        public Builder lastUserId(long lastUserId) {
+            this.lastUserId = lastUserId;
+            return this;
+        }
+
+        public Builder sent(int sent) {
+            this.sent = sent;
+            return this;
+        }
+
+        public Builder failed(int failed) {
+            this.failed = failed;
+            return this;
+        }
+
+        public Builder total(int total) {
+            this.total = total;
+            return this;
+        }
+
+        public BroadcastDTO build() {
+            return new BroadcastDTO(this);
+        }
+    }
+}
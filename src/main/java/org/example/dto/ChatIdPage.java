@@ -0,0 +1,32 @@
+package org.example.dto;
+
+/**
+ * Страница получателей рассылки: Id строки в users (ключ для следующей страницы) и chatId, без упаковки в Long
+ */
+public class ChatIdPage {
+    private final long[] ids;
+    private final long[] chatIds;
+    private final int size;
+
+    public ChatIdPage(long[] ids, long[] chatIds, int size) {
+        this.ids = ids;
+        this.chatIds = chatIds;
+        this.size = size;
+    }
+
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    public long getChatId(int index) {
+        return chatIds[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -4,11 +4,20 @@ public class FileDTO {
     private long id;
     private String folder;
     private String fileName;
+    // file_id документа на серверах Telegram, позволяет отправлять файл без повторной загрузки
+    private String telegramFileId;
+    // Время изменения файла на диске, для которого получен telegramFileId
+    private long telegramFileModified;
+    // SHA-256 содержимого в хранилище .blobs или null для файлов, добавленных напрямую на диск
+    private String contentHash;
 
     private FileDTO(Builder builder) {
         this.id = builder.id;
         this.folder = builder.folder;
         this.fileName = builder.fileName;
+        this.telegramFileId = builder.telegramFileId;
+        this.telegramFileModified = builder.telegramFileModified;
+        this.contentHash = builder.contentHash;
     }
 
     public long getId() {
@@ -23,6 +32,18 @@ public class FileDTO {
         return folder;
     }
 
+    public String getTelegramFileId() {
+        return telegramFileId;
+    }
+
+    public long getTelegramFileModified() {
+        return telegramFileModified;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -31,6 +52,9 @@ public class FileDTO {
         private long id;
         private String folder;
         private String fileName;
+        private String telegramFileId;
+        private long telegramFileModified;
+        private String contentHash;
 
         private Builder(){}
 
@@ -49,6 +73,21 @@ public class FileDTO {
             return this;
         }
 
+        public Builder telegramFileId(String telegramFileId) {
+            this.telegramFileId = telegramFileId;
+            return this;
+        }
+
+        public Builder telegramFileModified(long telegramFileModified) {
+            this.telegramFileModified = telegramFileModified;
+            return this;
+        }
+
+        public Builder contentHash(String contentHash) {
+            this.contentHash = contentHash;
+            return this;
+        }
+
         public FileDTO build() {
             return new FileDTO(this);
         }
@@ -0,0 +1,161 @@
+package org.example.dto;
+
+import org.example.role.AdminRole;
+
+/**
+ * Строка пользователя из таблицы users вместе с ролью админа из AdminRegistry.
+ * Загружается один раз на апдейт и передается в обработчики вместо отдельных запросов на каждое поле
+ */
+public class UserContext {
+    private final long chatId;
+    private final String userName;
+    private final String firstName;
+    private final String lastName;
+    private final String filePath;
+    private final String groupId;
+    private final String groupForLinks;
+    private final boolean admin;
+    private final String adminRole;
+
+    private UserContext(Builder builder) {
+        chatId = builder.chatId;
+        userName = builder.userName;
+        firstName = builder.firstName;
+        lastName = builder.lastName;
+        filePath = builder.filePath;
+        groupId = builder.groupId;
+        groupForLinks = builder.groupForLinks;
+        admin = builder.admin;
+        adminRole = builder.adminRole;
+    }
+
+    /**
+     * Контекст без данных из базы, для внутренних ответов бота, которым нужен только chatId
+     */
+    public static UserContext of(long chatId) {
+        return builder().chatId(chatId).build();
+    }
+
+    public long getChatId() {
+        return chatId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getGroupForLinks() {
+        return groupForLinks;
+    }
+
+    public String getAdminRole() {
+        return adminRole;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    public boolean isMainAdmin() {
+        return admin && adminRole.equals(AdminRole.Main.toString());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Builder toBuilder() {
+        return builder()
+                .chatId(chatId)
+                .userName(userName)
+                .firstName(firstName)
+                .lastName(lastName)
+                .filePath(filePath)
+                .groupId(groupId)
+                .groupForLinks(groupForLinks)
+                .admin(admin)
+                .adminRole(adminRole);
+    }
+
+    public static class Builder {
+        private long chatId;
+        private String userName = "";
+        private String firstName = "";
+        private String lastName = "";
+        private String filePath = "";
+        private String groupId = "";
+        private String groupForLinks = "";
+        private boolean admin;
+        private String adminRole = "";
+
+        // null из базы превращается в пустую строку, как в UserRepository.executeSQLQuery
+        private static String orEmpty(String value) {
+            return value == null ? "" : value;
+        }
+
+        public Builder chatId(long chatId) {
+            this.chatId = chatId;
+            return this;
+        }
+
+        public Builder userName(String userName) {
+            this.userName = orEmpty(userName);
+            return this;
+        }
+
+        public Builder firstName(String firstName) {
+            this.firstName = orEmpty(firstName);
+            return this;
+        }
+
+        public Builder lastName(String lastName) {
+            this.lastName = orEmpty(lastName);
+            return this;
+        }
+
+        public Builder filePath(String filePath) {
+            this.filePath = orEmpty(filePath);
+            return this;
+        }
+
+        public Builder groupId(String groupId) {
+            this.groupId = orEmpty(groupId);
+            return this;
+        }
+
+        public Builder groupForLinks(String groupForLinks) {
+            this.groupForLinks = orEmpty(groupForLinks);
+            return this;
+        }
+
+        public Builder admin(boolean admin) {
+            this.admin = admin;
+            return this;
+        }
+
+        public Builder adminRole(String adminRole) {
+            this.adminRole = orEmpty(adminRole);
+            return this;
+        }
+
+        public UserContext build() {
+            return new UserContext(this);
+        }
+    }
+}
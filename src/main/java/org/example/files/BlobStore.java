@@ -0,0 +1,161 @@
+package org.example.files;
+
+import org.example.controller.FilesAndFoldersController;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Хранилище содержимого файлов по SHA-256 в скрытой папке .blobs внутри хранилища.
+ * Одинаковые документы, загруженные в разные папки, хранятся один раз: файл в папке группы - жесткая ссылка на blob.
+ * Таблица file_blobs хранит file_unique_id Telegram (по нему повторная загрузка пропускается целиком)
+ * и число файлов в папках, ссылающихся на blob. Blob удаляется, когда на него не остается ссылок.
+ * Blob и все ссылки на него делят одно содержимое, поэтому на POSIX-системах blob доступен только для чтения,
+ * а перед повторным использованием его размер сверяется с записанным в file_blobs
+ */
+public class BlobStore {
+    public static final String BLOB_DIRECTORY = ".blobs";
+    private static final Set<PosixFilePermission> READ_ONLY = EnumSet.of(PosixFilePermission.OWNER_READ,
+            PosixFilePermission.GROUP_READ, PosixFilePermission.OTHERS_READ);
+
+    private final Path root;
+    private final FilesAndFoldersController filesAndFoldersController;
+
+    public BlobStore(String storagePath, FilesAndFoldersController filesAndFoldersController) {
+        this.root = Path.of(storagePath, BLOB_DIRECTORY);
+        this.filesAndFoldersController = filesAndFoldersController;
+    }
+
+    private Path blobPath(String sha256) {
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    /**
+     * @return SHA-256 уже сохраненного содержимого с этим file_unique_id или null,
+     * если его нет или blob поврежден (размер не совпадает) и файл нужно загрузить заново
+     */
+    public String findByUniqueId(String fileUniqueId) {
+        if (fileUniqueId == null) {
+            return null;
+        }
+        String sha256 = filesAndFoldersController.getBlobHashByUniqueId(fileUniqueId);
+        if (sha256 == null) {
+            return null;
+        }
+        try {
+            long size = Files.size(blobPath(sha256));
+            if (size != filesAndFoldersController.getBlobSize(sha256)) {
+                System.err.printf("Error (BlobStore - blob size mismatch, sha256: %s): %d bytes on disk%n", sha256, size);
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return sha256;
+    }
+
+    public long size(String sha256) throws IOException {
+        return Files.size(blobPath(sha256));
+    }
+
+    /**
+     * Переносит скачанный файл в хранилище. Если такое содержимое уже есть, скачанный файл удаляется.
+     * Blob другого размера считается поврежденным и заменяется: файлы в папках, ссылающиеся на старый, не меняются
+     */
+    public synchronized void publish(Path downloaded, String sha256) throws IOException {
+        Path blob = blobPath(sha256);
+        if (Files.exists(blob) && Files.size(blob) == Files.size(downloaded)) {
+            Files.delete(downloaded);
+            return;
+        }
+        Files.createDirectories(blob.getParent());
+        Files.move(downloaded, blob, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        makeReadOnly(blob);
+    }
+
+    private static void makeReadOnly(Path blob) {
+        PosixFileAttributeView view = Files.getFileAttributeView(blob, PosixFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        try {
+            view.setPermissions(READ_ONLY);
+        } catch (IOException e) {
+            System.err.printf("Error (BlobStore - read-only, blob: %s): %s%n", blob, e);
+        }
+    }
+
+    /**
+     * Создает файл в папке, указывающий на blob, и учитывает ссылку
+     *
+     * @throws FileAlreadyExistsException если файл с таким именем уже есть
+     * @throws java.nio.file.NoSuchFileException если blob уже удален, тогда файл нужно загрузить заново
+     */
+    public synchronized void link(String sha256, String fileUniqueId, long size, Path target) throws IOException {
+        Path blob = blobPath(sha256);
+        try {
+            try {
+                Files.createLink(target, blob);
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                if (e instanceof FileSystemException fileSystemException && !linksUnsupported(fileSystemException)) {
+                    throw fileSystemException;
+                }
+                // Файловая система без жестких ссылок: копия, опубликованная атомарным переносом
+                Path copy = blob.resolveSibling(sha256 + ".copy");
+                Files.copy(blob, copy, StandardCopyOption.REPLACE_EXISTING);
+                if (Files.exists(target)) {
+                    Files.delete(copy);
+                    throw new FileAlreadyExistsException(target.toString());
+                }
+                Files.move(copy, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            deleteIfUnreferenced(sha256);
+            throw e;
+        }
+        if (!filesAndFoldersController.addBlobReference(sha256, fileUniqueId, size)) {
+            Files.deleteIfExists(target);
+            deleteIfUnreferenced(sha256);
+            throw new IOException("Failed to register blob reference " + sha256);
+        }
+    }
+
+    /**
+     * Ошибки, при которых жесткую ссылку создать нельзя в принципе (другой диск, FAT, предел числа ссылок),
+     * приходят как FileSystemException без уточнения. Подклассы означают другое: нет файла, нет прав, файл уже есть
+     */
+    private static boolean linksUnsupported(FileSystemException e) {
+        return e.getClass() == FileSystemException.class;
+    }
+
+    /**
+     * Вызывается после удаления файла из папки
+     */
+    public synchronized void release(String sha256) {
+        if (filesAndFoldersController.releaseBlobReference(sha256) == 0) {
+            try {
+                Files.deleteIfExists(blobPath(sha256));
+            } catch (IOException e) {
+                System.err.printf("Error (BlobStore - release, sha256: %s): %s%n", sha256, e);
+            }
+        }
+    }
+
+    private void deleteIfUnreferenced(String sha256) {
+        if (filesAndFoldersController.getBlobRefCount(sha256) == 0) {
+            try {
+                Files.deleteIfExists(blobPath(sha256));
+            } catch (IOException e) {
+                System.err.printf("Error (BlobStore - cleanup, sha256: %s): %s%n", sha256, e);
+            }
+        }
+    }
+}
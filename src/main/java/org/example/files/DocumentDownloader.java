@@ -0,0 +1,314 @@
+package org.example.files;
+
+import org.example.bot.sender.OutboundScheduler;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.api.objects.Document;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Загрузка присланных документов с серверов Telegram.
+ * Работает на своих потоках с отдельным лимитом одновременных загрузок, чтобы большие файлы не занимали
+ * потоки обработки апдейтов. Файл пишется во временный файл с подсчетом SHA-256 по ходу копирования
+ * и публикуется атомарным переименованием в BlobStore, поэтому в папках никогда не появляются недокачанные файлы.
+ * Оборванная загрузка продолжается с места обрыва запросом с заголовком Range.
+ * Документ, содержимое которого уже есть в BlobStore, не скачивается
+ */
+public class DocumentDownloader {
+    // Скрытая папка внутри хранилища: та же файловая система, что и у папок с файлами, поэтому перенос атомарный
+    public static final String TEMP_DIRECTORY = ".downloads";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Пауза перед повтором, удваивается с каждой попыткой
+    private static final long BACKOFF_BASE_MILLIS = 1000;
+
+    private final OutboundScheduler sender;
+    private final BlobStore blobStore;
+    private final String botToken;
+    private final Path tempDirectory;
+    private final Duration readTimeout;
+    private final int maxAttempts;
+    private final HttpClient httpClient;
+    private final ThreadPoolExecutor executor;
+    // Закрывает поток ответа, если данные перестали приходить дольше readTimeout
+    private final ScheduledExecutorService watchdog;
+
+    public DocumentDownloader(OutboundScheduler sender, BlobStore blobStore, String botToken, String storagePath,
+                              int concurrency, Duration connectTimeout, Duration readTimeout, int maxAttempts) {
+        this.sender = sender;
+        this.blobStore = blobStore;
+        this.botToken = botToken;
+        this.tempDirectory = Path.of(storagePath, TEMP_DIRECTORY);
+        this.readTimeout = readTimeout;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "document-download-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "document-download-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Ставит документ в очередь загрузки
+     *
+     * @param target   итоговый путь файла, существующий файл не перезаписывается
+     * @param onQueued вызывается сразу с количеством загрузок перед этой, если свободного потока нет
+     */
+    public CompletableFuture<DownloadedFile> download(long chatId, Document document, Path target, IntConsumer onQueued) {
+        // Такой файл уже загружали: достаточно ссылки на сохраненное содержимое
+        String knownHash = blobStore.findByUniqueId(document.getFileUniqueId());
+        if (knownHash != null) {
+            try {
+                long size = blobStore.size(knownHash);
+                blobStore.link(knownHash, document.getFileUniqueId(), size, target);
+                return CompletableFuture.completedFuture(new DownloadedFile(target, size, knownHash, true));
+            } catch (NoSuchFileException e) {
+                // Blob удален после проверки: загружаем заново
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        // Снимок до постановки в очередь: перед этой загрузкой ждущие и уже идущие
+        int waiting = executor.getQueue().size();
+        int active = executor.getActiveCount();
+        CompletableFuture<DownloadedFile> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(downloadNow(chatId, document, target));
+            } catch (IOException | TelegramApiException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        if (waiting > 0 || active >= executor.getMaximumPoolSize()) {
+            onQueued.accept(waiting + active);
+        }
+        return future;
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    private DownloadedFile downloadNow(long chatId, Document document, Path target)
+            throws IOException, TelegramApiException {
+        if (Files.exists(target)) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+        String filePath = sender.execute(chatId, new GetFile(document.getFileId()), "GetFile").getFilePath();
+        URI uri = URI.create("https://api.telegram.org/file/bot" + botToken + "/" + filePath);
+        long expectedSize = document.getFileSize() == null ? -1 : document.getFileSize();
+
+        Files.createDirectories(tempDirectory);
+        Path part = tempDirectory.resolve(chatId + "_" + document.getFileUniqueId() + ".part");
+        try {
+            String checksum = null;
+            for (int attempt = 1; checksum == null; attempt++) {
+                try {
+                    checksum = transfer(uri, part, expectedSize);
+                } catch (IOException e) {
+                    if (attempt >= maxAttempts || e instanceof InterruptedIOException) {
+                        throw e;
+                    }
+                    System.err.printf("Error (DocumentDownloader - attempt %d, chatId: %d, file: %s): %s%n",
+                            attempt, chatId, document.getFileName(), e);
+                    sleep(BACKOFF_BASE_MILLIS << (attempt - 1));
+                }
+            }
+            long size = Files.size(part);
+            if (expectedSize >= 0 && size != expectedSize) {
+                throw new IOException("Downloaded " + size + " bytes, expected " + expectedSize);
+            }
+            blobStore.publish(part, checksum);
+            blobStore.link(checksum, document.getFileUniqueId(), size, target);
+            return new DownloadedFile(target, size, checksum, false);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    /**
+     * Докачивает part до конца
+     *
+     * @return SHA-256 всего файла в hex
+     */
+    private String transfer(URI uri, Path part, long expectedSize) throws IOException {
+        long offset = Files.exists(part) ? Files.size(part) : 0;
+        if (expectedSize >= 0 && offset > expectedSize) {
+            Files.delete(part);
+            offset = 0;
+        }
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(readTimeout).GET();
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + "-");
+        }
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download interrupted");
+        }
+
+        int status = response.statusCode();
+        try (InputStream body = response.body()) {
+            if (status == 416 && offset == expectedSize) {
+                // Файл уже докачан целиком, осталось посчитать контрольную сумму
+                return hex(digestOf(part));
+            }
+            if (status == 200) {
+                // Сервер не поддержал Range, начинаем сначала
+                offset = 0;
+            } else if (status != 206) {
+                if (status == 416) {
+                    Files.deleteIfExists(part);
+                }
+                throw new IOException("HTTP " + status);
+            }
+
+            MessageDigest digest = offset > 0 ? digestOf(part) : newDigest();
+            StandardOpenOption mode = offset > 0 ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+            AtomicInteger progress = new AtomicInteger();
+            int[] lastSeen = {0};
+            ScheduledFuture<?> stallCheck = watchdog.scheduleAtFixedRate(() -> {
+                int current = progress.get();
+                if (current == lastSeen[0]) {
+                    closeQuietly(body);
+                }
+                lastSeen[0] = current;
+            }, readTimeout.toMillis(), readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            try (OutputStream out = Files.newOutputStream(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    digest.update(buffer, 0, read);
+                    progress.incrementAndGet();
+                }
+            } finally {
+                stallCheck.cancel(false);
+            }
+            return hex(digest);
+        }
+    }
+
+    private static MessageDigest digestOf(Path part) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = Files.newInputStream(part)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download interrupted");
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * Опубликованный файл
+     */
+    public static class DownloadedFile {
+        private final Path path;
+        private final long size;
+        private final String sha256;
+        // true, если содержимое уже было в хранилище и файл не скачивался
+        private final boolean deduplicated;
+
+        private DownloadedFile(Path path, long size, String sha256, boolean deduplicated) {
+            this.path = path;
+            this.size = size;
+            this.sha256 = sha256;
+            this.deduplicated = deduplicated;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public boolean isDeduplicated() {
+            return deduplicated;
+        }
+    }
+}
@@ -1,42 +1,49 @@
 package org.example.files;
 
-import org.example.bot.TBot;
 import org.example.controller.FilesAndFoldersController;
 import org.example.database.repository.FileTrackerRepository;
 import org.example.database.repository.FolderRepository;
 import org.example.dto.FileDTO;
+import org.example.dto.FolderDTO;
 import org.example.files.exception.FileSizeException;
 import org.example.files.exception.IncorrectExtensionException;
 import org.example.files.exception.InvalidCallbackDataException;
-import org.telegram.telegrambots.meta.api.methods.GetFile;
 import org.telegram.telegrambots.meta.api.objects.Document;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class FilesController {
-    private final TBot tBot;
     private final FilesAndFoldersController filesAndFoldersController;
-    private final String bot_token;
+    private final DocumentDownloader documentDownloader;
+    private final BlobStore blobStore;
     private final String delimiter;
     private final String path;
     private final long maxFileSize;
 
-    public FilesController(TBot tBot, FilesAndFoldersController filesAndFoldersController, String bot_token, String delimiter, String path, long maxFileSize) {
-        this.tBot = tBot;
+    public FilesController(FilesAndFoldersController filesAndFoldersController, DocumentDownloader documentDownloader,
+                           BlobStore blobStore, String delimiter, String path, long maxFileSize) {
         this.filesAndFoldersController = filesAndFoldersController;
-        this.bot_token = bot_token;
+        this.documentDownloader = documentDownloader;
+        this.blobStore = blobStore;
         this.delimiter = delimiter;
         this.path = path;
         this.maxFileSize = maxFileSize;
@@ -45,7 +52,9 @@ public class FilesController {
     private List<String> getFoldersFromPath() throws IOException{
         List<String> folders = new ArrayList<>();
         try (Stream<Path> paths = Files.list(Path.of(this.path))) {
+            // Скрытые папки служебные (недокачанные файлы), это не папки группы
             paths.filter(Files::isDirectory)
+                    .filter(p -> !p.getFileName().toString().startsWith("."))
                     .forEach(p -> folders.add(p.getFileName().toString()));
         }
         return folders;
@@ -54,9 +63,16 @@ public class FilesController {
     public void synchronizeFoldersWithDatabase() {
         try {
             List<String> folders = getFoldersFromPath();
-            if (!folders.isEmpty()) {
-                for (String folder : folders) {
-                    filesAndFoldersController.checkAndAddFolderIfNotExistsByName(folder);
+            List<FolderDTO> foldersInDatabase = filesAndFoldersController.getFolders();
+            if (foldersInDatabase == null) {
+                return;
+            }
+            Set<String> databaseFolders = foldersInDatabase.stream()
+                    .map(FolderDTO::getFolder)
+                    .collect(Collectors.toSet());
+            for (String folder : folders) {
+                if (!databaseFolders.contains(folder)) {
+                    filesAndFoldersController.addFolder(0, folder);
                 }
             }
         } catch (IOException e) {
@@ -64,49 +80,201 @@ public class FilesController {
         }
     }
 
-    private List<String> getFilesFromFolder(String folder) {
-        List<String> files = new ArrayList<>();
-        String fullPath = this.path + delimiter + folder;
-        try (Stream<Path> paths = Files.list(Path.of(fullPath))) {
-            paths.forEach(p -> files.add(p.getFileName().toString()));
-        } catch (IOException e) {
-            System.err.printf("Error (FilesControllerClass (method getFilesFromFolder(data : %s))) %n%s%n", files, e);
-        }
-        return files;
-    }
-
     public List<FileDTO> getFilesFromDatabaseByFolder(String folder) {
         List<FileDTO> files;
         files = filesAndFoldersController.getFilesByFolderName(folder);
         return files;
     }
 
-    private void addFileToDatabase(String folder, String fileName) {
-        filesAndFoldersController.putFileInfo(0, folder, fileName);
+    /**
+     * Сверка папок и файлов с базой в фоновом потоке, бот в это время уже принимает апдейты
+     */
+    public CompletableFuture<Void> synchronizeInBackground() {
+        return CompletableFuture.runAsync(() -> {
+            synchronizeFoldersWithDatabase();
+            synchronizeFilesWithDatabase();
+        }, runnable -> {
+            Thread thread = new Thread(runnable, "startup-sync");
+            thread.setDaemon(true);
+            thread.start();
+        });
     }
 
+    /**
+     * Сверяет файлы на диске с file_tracker: одним запросом читает таблицу, параллельно обходит папки,
+     * пакетно добавляет недостающие записи и удаляет записи о файлах, которых больше нет на диске
+     */
     public void synchronizeFilesWithDatabase() {
+        long start = System.nanoTime();
+
+        // Снимок базы до обхода диска: файл, загруженный во время сверки, не попадет в снимок
+        // и не будет принят за удаленный
+        List<FileDTO> filesInDatabase = filesAndFoldersController.getAllFiles();
+        if (filesInDatabase == null) {
+            return;
+        }
+        long queried = System.nanoTime();
+
+        List<String> folders;
         try {
-            List<String> folders = getFoldersFromPath();
+            folders = getFoldersFromPath();
+        } catch (IOException e) {
+            System.err.println("Error (FilesControllerClass (method synchronizeFilesWithDatabase())) " + e);
+            return;
+        }
+        Map<String, Future<List<String>>> listings = new HashMap<>();
+        try (ExecutorService walker = Executors.newVirtualThreadPerTaskExecutor()) {
             for (String folder : folders) {
-                List<String> filesInFolder = getFilesFromFolder(folder);
-                List<FileDTO> filesInDatabase = filesAndFoldersController.getFilesByFolderName(folder);
+                listings.put(folder, walker.submit(() -> listFiles(folder)));
+            }
+        }
+        Set<String> filesOnDisk = new HashSet<>();
+        // Папки, которые не удалось прочитать: их записи не удаляются
+        Set<String> unreadableFolders = new HashSet<>();
+        for (Map.Entry<String, Future<List<String>>> listing : listings.entrySet()) {
+            try {
+                for (String fileName : listing.getValue().get()) {
+                    filesOnDisk.add(fileKey(listing.getKey(), fileName));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                unreadableFolders.add(listing.getKey());
+                System.err.printf("Error (FilesControllerClass (method synchronizeFilesWithDatabase(folder : %s))) %n%s%n",
+                        listing.getKey(), e.getCause());
+            }
+        }
+        long walked = System.nanoTime();
+
+        Set<String> databaseFiles = new HashSet<>();
+        List<Long> orphanIds = new ArrayList<>();
+        Map<Long, String> orphanHashes = new HashMap<>();
+        for (FileDTO file : filesInDatabase) {
+            String key = fileKey(file.getFolder(), file.getFileName());
+            databaseFiles.add(key);
+            if (!filesOnDisk.contains(key) && !unreadableFolders.contains(file.getFolder())) {
+                orphanIds.add(file.getId());
+                if (file.getContentHash() != null) {
+                    orphanHashes.put(file.getId(), file.getContentHash());
+                }
+            }
+        }
+        List<FileDTO> missing = new ArrayList<>();
+        for (String key : filesOnDisk) {
+            if (!databaseFiles.contains(key)) {
+                int separator = key.indexOf('\0');
+                missing.add(FileDTO.builder()
+                        .folder(key.substring(0, separator))
+                        .fileName(key.substring(separator + 1))
+                        .build());
+            }
+        }
 
-                Set<String> databaseFileNames = filesInDatabase.stream()
-                        .map(FileDTO::getFileName)
-                        .collect(Collectors.toSet());
+        int added = missing.isEmpty() ? 0 : filesAndFoldersController.putFilesInfo(0, missing);
+        long inserted = System.nanoTime();
+        List<Long> removedIds = orphanIds.isEmpty() ? List.of() : filesAndFoldersController.deleteFilesByIds(orphanIds);
+        // Ссылку на содержимое освобождает тот, кто удалил запись
+        for (Long id : removedIds) {
+            String hash = orphanHashes.get(id);
+            if (hash != null) {
+                blobStore.release(hash);
+            }
+        }
+        int removed = removedIds.size();
+        long deleted = System.nanoTime();
 
-                for (String fileInF : filesInFolder) {
-                    if (!databaseFileNames.contains(fileInF)) {
-                        addFileToDatabase(folder, fileInF);
+        System.out.printf("Синхронизация файлов: папок %d, файлов на диске %d, записей в базе %d, добавлено %d, удалено %d%n" +
+                        "Время: запрос к базе %d мс, обход диска %d мс, вставка %d мс, удаление %d мс, всего %d мс%n",
+                folders.size(), filesOnDisk.size(), filesInDatabase.size(), added, removed,
+                TimeUnit.NANOSECONDS.toMillis(queried - start), TimeUnit.NANOSECONDS.toMillis(walked - queried),
+                TimeUnit.NANOSECONDS.toMillis(inserted - walked), TimeUnit.NANOSECONDS.toMillis(deleted - inserted),
+                TimeUnit.NANOSECONDS.toMillis(deleted - start));
+    }
+
+    /**
+     * Приводит запись папки в folder_tracker к состоянию диска (для StorageWatcher).
+     * Для удаленной папки удаляются и записи ее файлов
+     */
+    public void applyFolderChange(String folder) {
+        if (Files.isDirectory(Path.of(this.path, folder))) {
+            filesAndFoldersController.checkAndAddFolderIfNotExistsByName(folder);
+            return;
+        }
+        List<FileDTO> files = filesAndFoldersController.getFilesByFolderName(folder);
+        if (files == null) {
+            return;
+        }
+        for (FileDTO file : files) {
+            removeFileRecord(file);
+        }
+        if (filesAndFoldersController.checkFolderByName(folder)) {
+            filesAndFoldersController.deleteFolderByName(folder);
+            System.out.printf("Папка %s удалена с диска, записи удалены%n", folder);
+        }
+    }
+
+    /**
+     * Приводит записи file_tracker для файлов папки к состоянию диска (для StorageWatcher).
+     * Если файл на диске изменился, сохраненный file_id сбрасывается
+     */
+    public void applyFileChanges(String folder, Collection<String> fileNames) {
+        List<FileDTO> filesInDatabase = filesAndFoldersController.getFilesByFolderName(folder);
+        if (filesInDatabase == null) {
+            return;
+        }
+        Map<String, List<FileDTO>> rowsByName = filesInDatabase.stream()
+                .collect(Collectors.groupingBy(FileDTO::getFileName));
+        List<FileDTO> missing = new ArrayList<>();
+        int removed = 0;
+        for (String fileName : fileNames) {
+            Path file = Path.of(this.path, folder, fileName);
+            List<FileDTO> rows = rowsByName.getOrDefault(fileName, List.of());
+            if (Files.isRegularFile(file)) {
+                if (rows.isEmpty()) {
+                    missing.add(FileDTO.builder().folder(folder).fileName(fileName).build());
+                }
+                long modified = file.toFile().lastModified();
+                for (FileDTO row : rows) {
+                    if (row.getTelegramFileId() != null && row.getTelegramFileModified() != modified) {
+                        filesAndFoldersController.clearTelegramFileId(row.getId());
+                    }
+                }
+            } else {
+                for (FileDTO row : rows) {
+                    if (removeFileRecord(row)) {
+                        removed++;
                     }
                 }
             }
-        } catch (IOException e) {
-            System.err.println("Error (FilesControllerClass (method synchronizeFilesWithDatabase())) " + e);
+        }
+        int added = missing.isEmpty() ? 0 : filesAndFoldersController.putFilesInfo(0, missing);
+        if (added > 0 || removed > 0) {
+            System.out.printf("Изменения в папке %s: добавлено файлов %d, удалено %d%n", folder, added, removed);
         }
     }
 
+    // Удаляет запись о файле, которого больше нет на диске
+    private boolean removeFileRecord(FileDTO file) {
+        boolean removed = filesAndFoldersController.deleteUserFileFromRepository(file.getId());
+        if (removed && file.getContentHash() != null) {
+            blobStore.release(file.getContentHash());
+        }
+        return removed;
+    }
+
+    private List<String> listFiles(String folder) throws IOException {
+        try (Stream<Path> paths = Files.list(Path.of(this.path, folder))) {
+            return paths.filter(Files::isRegularFile)
+                    .map(p -> p.getFileName().toString())
+                    .toList();
+        }
+    }
+
+    private static String fileKey(String folder, String fileName) {
+        return folder + '\0' + fileName;
+    }
+
     public void addFolder(long chatId, String text) {
         try {
             if (Files.isDirectory(Path.of(this.path))) {
@@ -142,29 +310,29 @@ public class FilesController {
         return callbackData.getBytes(StandardCharsets.UTF_8).length <= 54;
     }
 
-    public String saveDocument(Document document, String caption, String extension, String userPath)
-            throws FileSizeException, TelegramApiException, IOException, InvalidCallbackDataException {
+    /**
+     * Проверяет документ и ставит его в очередь загрузки.
+     * Ошибки сети и Telegram (IOException, TelegramApiException) приходят через future
+     *
+     * @param onQueued вызывается с позицией в очереди, если загрузка начнется не сразу
+     */
+    public CompletableFuture<DocumentDownloader.DownloadedFile> saveDocument(long chatId, Document document, String caption,
+                                                                             String extension, String userPath, IntConsumer onQueued)
+            throws FileSizeException, InvalidCallbackDataException {
         if (checkMaxSize(document)) {
             throw new FileSizeException("File too large");
         }
 
-        String fileId = document.getFileId();
-
-        String filePath = tBot.execute(new GetFile(fileId)).getFilePath();
-        InputStream is = new URL("https://api.telegram.org/file/bot" + bot_token + "/" + filePath).openStream();
         String path;
         if (caption != null && !caption.isEmpty()) {
             path = userPath + delimiter + caption + "." + extension;
         } else {
             path = userPath + delimiter + document.getFileName();
         }
-        if (isValidCallbackData(path)) {
-            Files.copy(is, Paths.get(path));
-            is.close();
-        } else {
+        if (!isValidCallbackData(path)) {
             throw new InvalidCallbackDataException("File name too large for as call back data of button " + path.getBytes(StandardCharsets.UTF_8).length);
         }
-        return path;
+        return documentDownloader.download(chatId, document, Path.of(path), onQueued);
     }
 
     public void deleteFile(String rawFilePath) throws IOException {
@@ -173,12 +341,26 @@ public class FilesController {
         Files.delete(file);
     }
 
+    /**
+     * Удаляет запись и файл из папки, освобождает ссылку на его содержимое в BlobStore
+     *
+     * @return false, если записи уже не было (файл удалили раньше)
+     */
+    public boolean deleteFile(FileDTO fileDTO) throws IOException {
+        boolean removed = filesAndFoldersController.deleteUserFileFromRepository(fileDTO.getId());
+        Files.deleteIfExists(Path.of(path + fileDTO.getFolder() + delimiter + fileDTO.getFileName()));
+        // Ссылку на содержимое освобождает тот, кто удалил запись
+        if (removed && fileDTO.getContentHash() != null) {
+            blobStore.release(fileDTO.getContentHash());
+        }
+        return removed;
+    }
+
     public void deleteFolderWithFiles(String folder) throws IOException {
         List<FileDTO> filesInDB = filesAndFoldersController.getFilesByFolderName(folder);
         if (!filesInDB.isEmpty()) {
             for (FileDTO fileInDB : filesInDB) {
-                filesAndFoldersController.deleteUserFileFromRepository(fileInDB.getId());
-                deleteFile(fileInDB.getFolder() + delimiter + fileInDB.getFileName());
+                deleteFile(fileInDB);
             }
         }
         deleteFile(folder);
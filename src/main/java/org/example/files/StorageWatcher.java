@@ -0,0 +1,230 @@
+package org.example.files;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Отслеживает изменения в хранилище файлов, сделанные мимо бота (копирование, удаление, переименование на диске).
+ * Следит за корнем хранилища (папки групп) и за каждой папкой группы (файлы).
+ * События не применяются сразу: путь попадает в список ожидания и применяется, когда по нему
+ * debounce не было новых событий. Несколько событий по одному пути (переименование = удаление + создание,
+ * копирование = создание + изменения) схлопываются в одну сверку этого пути с диском
+ */
+public class StorageWatcher {
+    private final Path root;
+    private final FilesController filesController;
+    private final long debounceNanos;
+    private final WatchService watchService;
+    // Зарегистрированные каталоги: корень -> "", папка группы -> ее имя
+    private final Map<WatchKey, String> watchedFolders = new ConcurrentHashMap<>();
+    // Путь -> время последнего события
+    private final ConcurrentHashMap<String, Long> pendingFolders = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<FileKey, Long> pendingFiles = new ConcurrentHashMap<>();
+    private final Thread watcherThread;
+    private final ScheduledExecutorService flusher;
+    private volatile boolean fullRescanNeeded;
+
+    public StorageWatcher(String storagePath, FilesController filesController, Duration debounce) throws IOException {
+        this.root = Path.of(storagePath);
+        this.filesController = filesController;
+        this.debounceNanos = debounce.toNanos();
+        this.watchService = root.getFileSystem().newWatchService();
+
+        register(root, "");
+        try (Stream<Path> paths = Files.list(root)) {
+            for (Path folder : paths.filter(Files::isDirectory).toList()) {
+                String name = folder.getFileName().toString();
+                if (!isHidden(name)) {
+                    register(folder, name);
+                }
+            }
+        }
+
+        watcherThread = new Thread(this::watchLoop, "storage-watcher");
+        watcherThread.setDaemon(true);
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-watcher-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        watcherThread.start();
+        long period = Math.max(100, TimeUnit.NANOSECONDS.toMillis(debounceNanos) / 2);
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush(false);
+            } catch (RuntimeException e) {
+                System.err.printf("Error (StorageWatcher - flush): %s%n", e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Служебные каталоги хранилища (.downloads, .blobs)
+    private static boolean isHidden(String name) {
+        return name.startsWith(".");
+    }
+
+    private void register(Path directory, String folder) throws IOException {
+        WatchKey key = directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedFolders.put(key, folder);
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            String folder = watchedFolders.get(key);
+            if (folder != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    handleEvent(folder, event);
+                }
+            }
+            if (!key.reset()) {
+                // Каталог удален или недоступен
+                watchedFolders.remove(key);
+                if (folder != null && !folder.isEmpty()) {
+                    pendingFolders.put(folder, System.nanoTime());
+                }
+            }
+        }
+    }
+
+    private void handleEvent(String folder, WatchEvent<?> event) {
+        long now = System.nanoTime();
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            // Часть событий потеряна, дешевле пересверить все хранилище
+            fullRescanNeeded = true;
+            return;
+        }
+        String name = event.context().toString();
+        if (folder.isEmpty()) {
+            if (isHidden(name) || event.kind() == StandardWatchEventKinds.ENTRY_MODIFY) {
+                return;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                watchNewFolder(name);
+            }
+            pendingFolders.put(name, now);
+        } else {
+            pendingFiles.put(new FileKey(folder, name), now);
+        }
+    }
+
+    // Новая папка группы: начать следить за ней и учесть файлы, появившиеся до регистрации
+    private void watchNewFolder(String folder) {
+        Path directory = root.resolve(folder);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try {
+            register(directory, folder);
+            long now = System.nanoTime();
+            try (Stream<Path> paths = Files.list(directory)) {
+                paths.forEach(p -> pendingFiles.put(new FileKey(folder, p.getFileName().toString()), now));
+            }
+        } catch (IOException e) {
+            System.err.printf("Error (StorageWatcher - register folder: %s): %s%n", folder, e);
+        }
+    }
+
+    /**
+     * Применяет накопившиеся изменения
+     *
+     * @param all применить все, не дожидаясь debounce
+     */
+    public synchronized void flush(boolean all) {
+        if (fullRescanNeeded) {
+            fullRescanNeeded = false;
+            pendingFolders.clear();
+            pendingFiles.clear();
+            filesController.synchronizeFoldersWithDatabase();
+            filesController.synchronizeFilesWithDatabase();
+            return;
+        }
+        long now = System.nanoTime();
+        // Сначала папки: новая папка должна появиться в folder_tracker раньше своих файлов
+        for (Map.Entry<String, Long> entry : pendingFolders.entrySet()) {
+            if ((all || now - entry.getValue() >= debounceNanos)
+                    && pendingFolders.remove(entry.getKey(), entry.getValue())) {
+                filesController.applyFolderChange(entry.getKey());
+            }
+        }
+        Map<String, List<String>> readyByFolder = new HashMap<>();
+        for (Map.Entry<FileKey, Long> entry : pendingFiles.entrySet()) {
+            FileKey file = entry.getKey();
+            if ((all || now - entry.getValue() >= debounceNanos) && pendingFiles.remove(file, entry.getValue())) {
+                readyByFolder.computeIfAbsent(file.folder, folder -> new ArrayList<>()).add(file.fileName);
+            }
+        }
+        readyByFolder.forEach(filesController::applyFileChanges);
+    }
+
+    public int getPendingCount() {
+        return pendingFolders.size() + pendingFiles.size();
+    }
+
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.printf("Error (StorageWatcher - shutdown): %s%n", e);
+        }
+        try {
+            flush(true);
+        } catch (RuntimeException e) {
+            System.err.printf("Error (StorageWatcher - final flush): %s%n", e);
+        }
+    }
+
+    private static final class FileKey {
+        private final String folder;
+        private final String fileName;
+
+        private FileKey(String folder, String fileName) {
+            this.folder = folder;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FileKey other)) {
+                return false;
+            }
+            return folder.equals(other.folder) && fileName.equals(other.fileName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * folder.hashCode() + fileName.hashCode();
+        }
+    }
+}
@@ -1,32 +1,51 @@
 package org.example.site.fetcher;
 
 import org.example.site.info.ScheduleDocumentInfo;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 public class DocumentFetcher {
     private final String BASE_URL = "https://lk.ks.psuti.ru/?mn=2";
     private final String SCHEDULE_URL = BASE_URL + "&obj=";
-    private static final String USER_AGENT = "Chrome";
-    private static final int TIMEOUT_MS = 10_000;
 
     private static final int NEXT_WEEK_ROW_INDEX = 4;
     private static final int NEXT_WEEK_COL_INDEX = 8;
 
+    // Параметр следующей недели из последней разобранной страницы группы: с ним обе недели загружаются одновременно
+    private static final Map<String, String> knownWeekParams = new ConcurrentHashMap<>();
+
+    private final PageFetcher pageFetcher = PageFetcher.getInstance();
+
+    // Загруженные страницы, валидаторы которых сохраняются в commit
+    private final List<PageFetcher.FetchedPage> fetchedPages = new ArrayList<>(2);
+
     private Document documentThisWeek;
     private Document documentNextWeek;
     private Document baseDocument;
     private String weekParam;
 
     public DocumentFetcher(String groupId) throws IOException {
-        documentThisWeek = fetchDocumentsWithSchedule(groupId);
-        documentNextWeek = fetchDocumentsWithScheduleNextWeek(groupId);
+        this(groupId, false);
+    }
+
+    /**
+     * @param conditional загрузить только изменившиеся недели, документ неизменившейся недели будет null
+     */
+    public DocumentFetcher(String groupId, boolean conditional) throws IOException {
+        fetchSchedule(groupId, conditional);
     }
 
     public DocumentFetcher() throws IOException {
-        baseDocument = fetchDocumentWithYearsAndGroups();
+        baseDocument = await(pageFetcher.fetch("base", BASE_URL, false)).getDocument();
     }
 
     public ScheduleDocumentInfo getScheduleDocumentInfo() {
@@ -37,26 +56,71 @@ public class DocumentFetcher {
         return baseDocument;
     }
 
-    private Document fetchDocumentsWithSchedule(String groupId) throws IOException {
-        String formattedUrl = SCHEDULE_URL + groupId;
-        Document document = Jsoup.connect(formattedUrl)
-                .userAgent(USER_AGENT)
-                .timeout(TIMEOUT_MS)
-                .get();
-        weekParam = extractNextWeekParameter(document);
-        return document;
+    /**
+     * Сохраняет валидаторы загруженных недель. Вызывать после того, как расписание попало в кэш,
+     * иначе следующий условный запрос не увидит изменений, которые не были сохранены
+     */
+    public void commit() {
+        fetchedPages.forEach(pageFetcher::commit);
     }
 
-    private Document fetchDocumentsWithScheduleNextWeek(String groupId) throws IOException {
-        String formattedUrl = SCHEDULE_URL + groupId + "&" + weekParam;
-        return Jsoup.connect(formattedUrl)
-                .userAgent(USER_AGENT)
-                .timeout(TIMEOUT_MS)
-                .get();
+    private void fetchSchedule(String groupId, boolean conditional) throws IOException {
+        String thisWeekUrl = SCHEDULE_URL + groupId;
+        String knownWeekParam = knownWeekParams.get(groupId);
+
+        CompletableFuture<PageFetcher.FetchedPage> thisWeek =
+                pageFetcher.fetch(groupId + "#this", thisWeekUrl, conditional);
+        CompletableFuture<PageFetcher.FetchedPage> nextWeek = knownWeekParam == null ? null
+                : pageFetcher.fetch(groupId + "#next", thisWeekUrl + "&" + knownWeekParam, conditional);
+
+        PageFetcher.FetchedPage thisWeekPage;
+        try {
+            thisWeekPage = await(thisWeek);
+        } catch (IOException e) {
+            if (nextWeek != null) {
+                nextWeek.cancel(false);
+            }
+            throw e;
+        }
+        documentThisWeek = thisWeekPage.getDocument();
+        weekParam = thisWeekPage.isModified() ? extractNextWeekParameter(documentThisWeek) : knownWeekParam;
+        if (weekParam == null) {
+            // Страница не изменилась, а параметр не запомнен: загружаем ее заново целиком
+            thisWeekPage = await(pageFetcher.fetch(groupId + "#this", thisWeekUrl, false));
+            documentThisWeek = thisWeekPage.getDocument();
+            weekParam = extractNextWeekParameter(documentThisWeek);
+        }
+        fetchedPages.add(thisWeekPage);
+        knownWeekParams.put(groupId, weekParam);
+
+        if (nextWeek == null || !weekParam.equals(knownWeekParam)) {
+            // Неделя сменилась или параметр еще не был известен
+            if (nextWeek != null) {
+                nextWeek.cancel(false);
+            }
+            nextWeek = pageFetcher.fetch(groupId + "#next", thisWeekUrl + "&" + weekParam, conditional);
+        }
+        PageFetcher.FetchedPage nextWeekPage = await(nextWeek);
+        documentNextWeek = nextWeekPage.getDocument();
+        fetchedPages.add(nextWeekPage);
     }
 
-    private Document fetchDocumentWithYearsAndGroups() throws IOException {
-        return Jsoup.connect(BASE_URL).get();
+    private static PageFetcher.FetchedPage await(CompletableFuture<PageFetcher.FetchedPage> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Загрузка страницы прервана", e);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(cause);
+        }
     }
 
     private String extractNextWeekParameter(Document document) {
@@ -0,0 +1,180 @@
+package org.example.site.fetcher;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Загрузка страниц сайта через один общий HttpClient: соединения переиспользуются, ответы сжимаются gzip.
+ * Для каждой страницы запоминаются ETag, Last-Modified и SHA-256 содержимого.
+ * При условном запросе ответ 304 или тело с тем же хэшем означает, что страница не изменилась,
+ * и она не разбирается повторно. Валидаторы ответа сохраняются только через commit, после того как
+ * результат разбора попал в кэш: иначе при ошибке на другой странице изменение было бы потеряно
+ */
+public class PageFetcher {
+    private static final String USER_AGENT = "Chrome";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static final PageFetcher instance = new PageFetcher();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    // Ключ страницы (например, группа и неделя) -> валидаторы последнего полученного ответа
+    private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+
+    private PageFetcher() {}
+
+    public static PageFetcher getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param key         постоянный ключ страницы, по нему хранятся валидаторы; при смене url они не отправляются
+     * @param conditional отправить валидаторы и не разбирать неизменившуюся страницу
+     */
+    public CompletableFuture<FetchedPage> fetch(String key, String url, boolean conditional) {
+        Validators known = conditional ? validators.get(key) : null;
+        if (known != null && !known.url.equals(url)) {
+            known = null;
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(TIMEOUT)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        if (known != null && known.etag != null) {
+            request.header("If-None-Match", known.etag);
+        }
+        if (known != null && known.lastModified != null) {
+            request.header("If-Modified-Since", known.lastModified);
+        }
+        Validators previous = known;
+        return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> handleResponse(key, url, previous, response));
+    }
+
+    /**
+     * Запоминает валидаторы загруженной страницы для следующих условных запросов
+     */
+    public void commit(FetchedPage page) {
+        if (page.validators != null) {
+            validators.put(page.key, page.validators);
+        }
+    }
+
+    private FetchedPage handleResponse(String key, String url, Validators previous, HttpResponse<byte[]> response) {
+        int status = response.statusCode();
+        if (status == 304 && previous != null) {
+            return FetchedPage.UNCHANGED;
+        }
+        if (status != 200) {
+            throw new UncheckedIOException(new IOException("HTTP " + status + " " + url));
+        }
+        try {
+            byte[] body = decode(response);
+            byte[] sha256 = sha256(body);
+            Validators received = new Validators(url,
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null),
+                    sha256);
+            if (previous != null && Arrays.equals(previous.sha256, sha256)) {
+                return new FetchedPage(null, key, received);
+            }
+            Document document = Jsoup.parse(new ByteArrayInputStream(body), charset(response), url);
+            return new FetchedPage(document, key, received);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] decode(HttpResponse<byte[]> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        if (!encoding.equalsIgnoreCase("gzip")) {
+            return response.body();
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            return in.readAllBytes();
+        }
+    }
+
+    // Кодировка из Content-Type или null, тогда jsoup определит ее по meta страницы
+    private static String charset(HttpResponse<byte[]> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                return trimmed.substring(8).replace("\"", "");
+            }
+        }
+        return null;
+    }
+
+    private static byte[] sha256(byte[] body) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Результат загрузки: документ или отметка, что страница не изменилась с прошлой загрузки
+     */
+    public static class FetchedPage {
+        private static final FetchedPage UNCHANGED = new FetchedPage(null, null, null);
+
+        private final Document document;
+        private final String key;
+        // Валидаторы этого ответа, null для 304
+        private final Validators validators;
+
+        private FetchedPage(Document document, String key, Validators validators) {
+            this.document = document;
+            this.key = key;
+            this.validators = validators;
+        }
+
+        public boolean isModified() {
+            return document != null;
+        }
+
+        /**
+         * @return разобранная страница или null, если она не изменилась
+         */
+        public Document getDocument() {
+            return document;
+        }
+    }
+
+    private static class Validators {
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+        private final byte[] sha256;
+
+        private Validators(String url, String etag, String lastModified, byte[] sha256) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.sha256 = sha256;
+        }
+    }
+}
@@ -3,26 +3,88 @@ package org.example.site.info;
 import org.example.bot.config.BotConfig;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Пары на один день в компактном виде: поля всех пар лежат подряд в одном массиве кодов StringDictionary.
+ * Текст расписания собирается при запросе
+ */
 public class DailySchedule {
+    // Поля пары в lessons: номер, время, дисциплина, преподаватель, кабинет, адрес, дистант (0/1)
+    private static final int NUMBER = 0;
+    private static final int TIME = 1;
+    private static final int SUBJECT = 2;
+    private static final int TEACHER = 3;
+    private static final int ROOM = 4;
+    private static final int LOCATION = 5;
+    private static final int REMOTE = 6;
+    private static final int FIELDS = 7;
+
     private final LocalDate date;
-    private final String scheduleText;
+    private final int[] lessons;
 
-    public DailySchedule(LocalDate date, String scheduleText) {
+    public DailySchedule(LocalDate date, List<Lesson> lessons) {
         this.date = date;
-        this.scheduleText = scheduleText;
+        this.lessons = new int[lessons.size() * FIELDS];
+        StringDictionary dictionary = StringDictionary.SHARED;
+        int offset = 0;
+        for (Lesson lesson : lessons) {
+            this.lessons[offset + NUMBER] = dictionary.encode(lesson.getNumber());
+            this.lessons[offset + TIME] = dictionary.encode(lesson.getTimeRange());
+            this.lessons[offset + SUBJECT] = dictionary.encode(lesson.getSubject());
+            this.lessons[offset + TEACHER] = dictionary.encode(lesson.getTeacher());
+            this.lessons[offset + ROOM] = dictionary.encode(lesson.getRoom());
+            this.lessons[offset + LOCATION] = dictionary.encode(lesson.getLocation());
+            this.lessons[offset + REMOTE] = lesson.isRemote() ? 1 : 0;
+            offset += FIELDS;
+        }
     }
 
     public LocalDate getDate() {
         return date;
     }
 
+    public int getLessonCount() {
+        return lessons.length / FIELDS;
+    }
+
+    public List<Lesson> getLessons() {
+        StringDictionary dictionary = StringDictionary.SHARED;
+        List<Lesson> result = new ArrayList<>(getLessonCount());
+        for (int offset = 0; offset < lessons.length; offset += FIELDS) {
+            result.add(Lesson.builder()
+                    .number(dictionary.decode(lessons[offset + NUMBER]))
+                    .timeRange(dictionary.decode(lessons[offset + TIME]))
+                    .subject(dictionary.decode(lessons[offset + SUBJECT]))
+                    .teacher(dictionary.decode(lessons[offset + TEACHER]))
+                    .room(dictionary.decode(lessons[offset + ROOM]))
+                    .location(dictionary.decode(lessons[offset + LOCATION]))
+                    .remote(lessons[offset + REMOTE] != 0)
+                    .build());
+        }
+        return result;
+    }
+
     public String getScheduleText() {
-        return scheduleText;
+        StringDictionary dictionary = StringDictionary.SHARED;
+        StringBuilder schedule = new StringBuilder();
+        for (int offset = 0; offset < lessons.length; offset += FIELDS) {
+            String details = Lesson.composeDetails(
+                    dictionary.decode(lessons[offset + SUBJECT]),
+                    dictionary.decode(lessons[offset + TEACHER]),
+                    dictionary.decode(lessons[offset + ROOM]),
+                    dictionary.decode(lessons[offset + LOCATION]),
+                    lessons[offset + REMOTE] != 0);
+            ScheduleText.appendLesson(schedule, dictionary.decode(lessons[offset + NUMBER]),
+                    dictionary.decode(lessons[offset + TIME]), details);
+            schedule.append('\n');
+        }
+        return ScheduleText.clean(schedule.toString());
     }
 
     @Override
     public String toString() {
-        return String.format("Расписание на %s:\n%s", BotConfig.formatter, scheduleText);
+        return String.format("Расписание на %s:\n%s", date.format(BotConfig.formatter), getScheduleText());
     }
-}
\ No newline at end of file
+}
@@ -2,24 +2,61 @@ package org.example.site.info;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
+/**
+ * Расписание группы. Неизменяемо: при обновлении в кэше заменяется целиком,
+ * поэтому дни хранятся в массивах, отсортированных по дате, без копий для читателей.
+ * Недели хранятся раздельно, чтобы при обновлении заменить только изменившуюся
+ */
 public class GroupScheduleInfo {
+    private static final DailySchedule[] NO_DAYS = new DailySchedule[0];
+
     private final String groupId;
-    private final Map<LocalDate, DailySchedule> dailySchedules;
+    private final DailySchedule[] thisWeek;
+    private final DailySchedule[] nextWeek;
     private final LocalDateTime lastUpdateTime;
     private static final long CACHE_DURATION_MINUTES = 30;
 
-    public GroupScheduleInfo(String groupId, Map<LocalDate, String> scheduleTexts) {
+    public GroupScheduleInfo(String groupId, Map<LocalDate, List<Lesson>> lessons) {
+        this(groupId, toDays(lessons), NO_DAYS);
+    }
+
+    public GroupScheduleInfo(String groupId, Map<LocalDate, List<Lesson>> thisWeek,
+                             Map<LocalDate, List<Lesson>> nextWeek) {
+        this(groupId, toDays(thisWeek), toDays(nextWeek));
+    }
+
+    private GroupScheduleInfo(String groupId, DailySchedule[] thisWeek, DailySchedule[] nextWeek) {
         this.groupId = groupId;
-        this.dailySchedules = new ConcurrentHashMap<>();
+        this.thisWeek = thisWeek;
+        this.nextWeek = nextWeek;
         this.lastUpdateTime = LocalDateTime.now();
+    }
 
-        // Преобразуем тексты расписаний в объекты DailySchedule
-        for (Map.Entry<LocalDate, String> entry : scheduleTexts.entrySet()) {
-            dailySchedules.put(entry.getKey(), new DailySchedule(entry.getKey(), entry.getValue()));
+    // Преобразуем пары в объекты DailySchedule
+    private static DailySchedule[] toDays(Map<LocalDate, List<Lesson>> lessons) {
+        List<DailySchedule> days = new ArrayList<>(lessons.size());
+        for (Map.Entry<LocalDate, List<Lesson>> entry : new TreeMap<>(lessons).entrySet()) {
+            days.add(new DailySchedule(entry.getKey(), entry.getValue()));
         }
+        return days.toArray(NO_DAYS);
+    }
+
+    /**
+     * Расписание с новым временем обновления
+     *
+     * @param thisWeek пары текущей недели или null, если неделя не изменилась
+     * @param nextWeek пары следующей недели или null, если неделя не изменилась
+     */
+    public GroupScheduleInfo update(Map<LocalDate, List<Lesson>> thisWeek, Map<LocalDate, List<Lesson>> nextWeek) {
+        return new GroupScheduleInfo(groupId,
+                thisWeek == null ? this.thisWeek : toDays(thisWeek),
+                nextWeek == null ? this.nextWeek : toDays(nextWeek));
     }
 
     public String getGroupId() {
@@ -27,12 +64,49 @@ public class GroupScheduleInfo {
     }
 
     public String getScheduleForDate(LocalDate date) {
-        DailySchedule schedule = dailySchedules.get(date);
+        DailySchedule schedule = getDailySchedule(date);
         return schedule != null ? schedule.getScheduleText() : null;
     }
 
-    public Map<LocalDate, DailySchedule> getAllSchedules() {
-        return new ConcurrentHashMap<>(dailySchedules);
+    public DailySchedule getDailySchedule(LocalDate date) {
+        // Следующая неделя важнее, как и при разборе страниц по порядку
+        DailySchedule schedule = find(nextWeek, date);
+        return schedule != null ? schedule : find(thisWeek, date);
+    }
+
+    private static DailySchedule find(DailySchedule[] days, LocalDate date) {
+        int low = 0;
+        int high = days.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = days[middle].getDate().compareTo(date);
+            if (comparison == 0) {
+                return days[middle];
+            } else if (comparison < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Даты с расписанием по возрастанию
+     */
+    public List<LocalDate> getAvailableDates() {
+        TreeSet<LocalDate> dates = new TreeSet<>();
+        for (DailySchedule schedule : thisWeek) {
+            dates.add(schedule.getDate());
+        }
+        for (DailySchedule schedule : nextWeek) {
+            dates.add(schedule.getDate());
+        }
+        return new ArrayList<>(dates);
+    }
+
+    public boolean isEmpty() {
+        return thisWeek.length == 0 && nextWeek.length == 0;
     }
 
     public boolean isExpired() {
@@ -44,11 +118,4 @@ public class GroupScheduleInfo {
     public LocalDateTime getLastUpdateTime() {
         return lastUpdateTime;
     }
-
-    /**
-     * Добавить или обновить расписание на день
-     */
-    public void addOrUpdateSchedule(LocalDate date, String scheduleText) {
-        dailySchedules.put(date, new DailySchedule(date, scheduleText));
-    }
-}
\ No newline at end of file
+}
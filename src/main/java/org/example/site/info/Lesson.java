@@ -0,0 +1,137 @@
+package org.example.site.info;
+
+/**
+ * Одна пара из расписания.
+ * Ячейка "Дисциплина, преподаватель" раскладывается на поля без потерь: getDetails() возвращает исходный текст ячейки.
+ * Если ячейку не удалось разобрать, весь текст хранится в subject, остальные поля пустые
+ */
+public class Lesson {
+    static final String ROOM_PREFIX = "Кабинет: ";
+    static final String REMOTE_MARK = "дистанционно";
+
+    private final String number;
+    private final String timeRange;
+    private final String subject;
+    private final String teacher;
+    private final String room;
+    // Адрес после номера кабинета ("Московское шоссе, 120")
+    private final String location;
+    private final boolean remote;
+
+    private Lesson(Builder builder) {
+        this.number = builder.number;
+        this.timeRange = builder.timeRange;
+        this.subject = builder.subject;
+        this.teacher = builder.teacher;
+        this.room = builder.room;
+        this.location = builder.location;
+        this.remote = builder.remote;
+    }
+
+    public String getNumber() {
+        return number;
+    }
+
+    public String getTimeRange() {
+        return timeRange;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getTeacher() {
+        return teacher;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public boolean isRemote() {
+        return remote;
+    }
+
+    /**
+     * Текст ячейки "Дисциплина, преподаватель", собранный из полей
+     */
+    public String getDetails() {
+        return composeDetails(subject, teacher, room, location, remote);
+    }
+
+    static String composeDetails(String subject, String teacher, String room, String location, boolean remote) {
+        StringBuilder details = new StringBuilder(subject == null ? "" : subject);
+        if (teacher != null) {
+            details.append(' ').append(teacher);
+        }
+        if (room != null) {
+            details.append(' ').append(ROOM_PREFIX).append(room);
+            if (location != null) {
+                details.append(' ').append(location);
+            }
+        }
+        if (remote) {
+            details.append(' ').append(REMOTE_MARK);
+        }
+        return details.toString();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private String number;
+        private String timeRange;
+        private String subject;
+        private String teacher;
+        private String room;
+        private String location;
+        private boolean remote;
+
+        private Builder(){}
+
+        public Builder number(String number) {
+            this.number = number;
+            return this;
+        }
+
+        public Builder timeRange(String timeRange) {
+            this.timeRange = timeRange;
+            return this;
+        }
+
+        public Builder subject(String subject) {
+            this.subject = subject;
+            return this;
+        }
+
+        public Builder teacher(String teacher) {
+            this.teacher = teacher;
+            return this;
+        }
+
+        public Builder room(String room) {
+            this.room = room;
+            return this;
+        }
+
+        public Builder location(String location) {
+            this.location = location;
+            return this;
+        }
+
+        public Builder remote(boolean remote) {
+            this.remote = remote;
+            return this;
+        }
+
+        public Lesson build() {
+            return new Lesson(this);
+        }
+    }
+}
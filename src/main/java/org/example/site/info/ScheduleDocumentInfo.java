@@ -4,6 +4,9 @@ import org.jsoup.nodes.Document;
 
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Страницы расписания группы. При условной загрузке документ недели, не изменившейся с прошлой загрузки, равен null
+ */
 public class ScheduleDocumentInfo {
     private final Document thisWeekDocument;
     private final Document nextWeekDocument;
@@ -0,0 +1,50 @@
+package org.example.site.info;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Текст расписания, который отправляется пользователю
+ */
+public final class ScheduleText {
+    private static final Pattern TRAILING_WHITESPACE = Pattern.compile("\\s+$");
+
+    private ScheduleText() {}
+
+    /**
+     * @param header          текст перед парами
+     * @param lineAfterLesson пустая строка между парами
+     */
+    public static String render(String header, List<Lesson> lessons, boolean lineAfterLesson) {
+        StringBuilder schedule = new StringBuilder(header);
+        for (Lesson lesson : lessons) {
+            appendLesson(schedule, lesson.getNumber(), lesson.getTimeRange(), lesson.getDetails());
+            if (lineAfterLesson) {
+                schedule.append('\n');
+            }
+        }
+        return clean(schedule.toString());
+    }
+
+    static void appendLesson(StringBuilder schedule, String number, String timeRange, String details) {
+        schedule.append('\n')
+                .append(number)
+                .append(") ")
+                .append(timeRange)
+                .append('\n')
+                .append(normalize(details));
+    }
+
+    private static String normalize(String details) {
+        return details.replace("Кабинет:", "\nКабинет:")
+                .replace(Lesson.REMOTE_MARK, "(дистант)")
+                .trim();
+    }
+
+    static String clean(String schedule) {
+        return TRAILING_WHITESPACE.matcher(schedule).replaceFirst("")
+                .replace("Московское шоссе, 120", "")
+                .replace(" Замена Свободное время на:", "")
+                .trim();
+    }
+}
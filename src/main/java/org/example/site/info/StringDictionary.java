@@ -0,0 +1,51 @@
+package org.example.site.info;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словарь строк расписания: каждая различная строка (дисциплина, преподаватель, кабинет, время пары)
+ * хранится один раз на все группы, в расписаниях лежат только ее номера.
+ * Словарь только растет: набор дисциплин, преподавателей и кабинетов колледжа ограничен.
+ * Код 0 означает null
+ */
+final class StringDictionary {
+    static final StringDictionary SHARED = new StringDictionary();
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    // Запись в values происходит до публикации кода, поэтому получивший код поток видит строку
+    private volatile String[] values = new String[256];
+    private int size = 1;
+
+    int encode(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            String[] current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = value;
+            values = current;
+            codes.put(value, size);
+            return size++;
+        }
+    }
+
+    String decode(int code) {
+        return values[code];
+    }
+
+    synchronized int size() {
+        return size - 1;
+    }
+}
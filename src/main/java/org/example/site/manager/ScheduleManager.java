@@ -3,22 +3,60 @@ package org.example.site.manager;
 import org.example.bot.config.BotConfig;
 import org.example.site.fetcher.DocumentFetcher;
 import org.example.site.info.GroupScheduleInfo;
+import org.example.site.info.Lesson;
+import org.example.site.info.ScheduleDocumentInfo;
 import org.example.site.parser.ScheduleParser;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ScheduleManager {
+    private static final int REFRESH_THREADS = 2;
+    // После неудачной загрузки фоновые обновления группы не запускаются это время, чтобы не нагружать упавший сайт
+    private static final long FAILURE_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(2);
+    private static final DateTimeFormatter UPDATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+
     private final Map<String, GroupScheduleInfo> scheduleCache = new ConcurrentHashMap<>();
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
     private final ScheduleParser scheduleParser = new ScheduleParser();
+    // Группа -> идущее обновление: одновременные запросы ждут его результат вместо своей загрузки
+    private final Map<String, CompletableFuture<GroupScheduleInfo>> inFlightUpdates = new ConcurrentHashMap<>();
+    private final LongAdder updateRequests = new LongAdder();
+    private final LongAdder updateFetches = new LongAdder();
+    private final LongAdder coalescedUpdates = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+    private final LongAdder backoffSkipped = new LongAdder();
+    // Группа -> System.nanoTime() последней неудачной загрузки
+    private final Map<String, Long> lastFailures = new ConcurrentHashMap<>();
+    // Фоновые обновления устаревших расписаний, чтобы ответ не ждал сайт
+    private final AtomicInteger refreshThreadNumber = new AtomicInteger();
+    private final ExecutorService refreshExecutor = Executors.newFixedThreadPool(REFRESH_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "schedule-refresh-" + refreshThreadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Duration maxStale;
 
-    public ScheduleManager() {
+    /**
+     * @param maxStale сколько может быть устаревшее расписание, которое отдается сразу с обновлением в фоне;
+     *                 более старое ответ ждет
+     */
+    public ScheduleManager(Duration maxStale) {
+        this.maxStale = maxStale;
         startScheduledUpdates();
     }
 
@@ -28,32 +66,23 @@ public class ScheduleManager {
     public String getScheduleForDate(String groupId, LocalDate date) {
         GroupScheduleInfo groupInfo = scheduleCache.get(groupId);
 
-        // Если нет в кэше или истек срок, пытаемся обновить
-        if (groupInfo == null || groupInfo.isExpired()) {
-            try {
-                updateGroupSchedule(groupId);
-                groupInfo = scheduleCache.get(groupId);
-            } catch (IOException e) {
-                System.err.printf("Не удалось обновить расписание для группы %s: %s%n",
-                        groupId, e.getMessage());
-                return getFallbackSchedule(groupId, date, groupInfo);
-            }
-        }
-
-        // Если после обновления всё равно нет информации
-        if (groupInfo == null) {
-            return String.format("Нет данных о расписании для группы %s", groupId);
+        try {
+            groupInfo = getGroupSchedule(groupId);
+        } catch (IOException e) {
+            System.err.printf("Не удалось обновить расписание для группы %s: %s%n",
+                    groupId, e.getMessage());
+            return getFallbackSchedule(groupId, date, groupInfo);
         }
 
         // Ищем расписание на конкретную дату
         String schedule = groupInfo.getScheduleForDate(date);
 
         if (schedule != null) {
-            return schedule;
+            return schedule + "\n\n" + describeFreshness(groupInfo);
         } else {
             // Если расписание не найдено для точной даты
-            return String.format("Нет данных о расписании на %s",
-                    date.format(BotConfig.formatter));
+            return String.format("Нет данных о расписании на %s%n%n%s",
+                    date.format(BotConfig.formatter), describeFreshness(groupInfo));
         }
     }
 
@@ -62,23 +91,75 @@ public class ScheduleManager {
      */
     public List<LocalDate> getAvailableDates(String groupId) {
         GroupScheduleInfo groupInfo = scheduleCache.get(groupId);
-        if (groupInfo == null || groupInfo.getAllSchedules().isEmpty() || groupInfo.isExpired()) {
-            try {
-                updateGroupSchedule(groupId);
-                groupInfo = scheduleCache.get(groupId);
-            } catch (IOException e) {
-                System.err.printf("Не удалось обновить расписание для группы %s: %s%n",
-                        groupId, e.getMessage());
-            }
+        try {
+            groupInfo = getGroupSchedule(groupId);
+        } catch (IOException e) {
+            System.err.printf("Не удалось обновить расписание для группы %s: %s%n",
+                    groupId, e.getMessage());
         }
 
-        if (groupInfo == null || groupInfo.getAllSchedules().isEmpty()) {
+        if (groupInfo == null) {
             return new ArrayList<>();
         }
+        return groupInfo.getAvailableDates();
+    }
+
+    /**
+     * Расписание группы для ответа пользователю. Устаревшее, но не старше maxStale, отдается сразу,
+     * а обновление запускается в фоне. Ответ ждет сайт, только если группы нет в кэше или данные слишком старые
+     */
+    private GroupScheduleInfo getGroupSchedule(String groupId) throws IOException {
+        GroupScheduleInfo groupInfo = scheduleCache.get(groupId);
+        if (groupInfo == null || getAge(groupInfo).compareTo(maxStale) > 0) {
+            return refreshGroupSchedule(groupId, false);
+        }
+        if (groupInfo.isExpired()) {
+            staleServed.increment();
+            refreshInBackground(groupId);
+        }
+        return groupInfo;
+    }
+
+    private void refreshInBackground(String groupId) {
+        if (inFlightUpdates.containsKey(groupId)) {
+            return;
+        }
+        if (isBackingOff(groupId)) {
+            backoffSkipped.increment();
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refreshGroupSchedule(groupId, false);
+                } catch (IOException | RuntimeException e) {
+                    System.err.printf("Не удалось обновить расписание для группы %s в фоне: %s%n",
+                            groupId, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Менеджер останавливается
+        }
+    }
 
-        List<LocalDate> dates = new ArrayList<>(groupInfo.getAllSchedules().keySet());
-        dates.sort(LocalDate::compareTo);
-        return dates;
+    private static Duration getAge(GroupScheduleInfo groupInfo) {
+        return Duration.between(groupInfo.getLastUpdateTime(), LocalDateTime.now());
+    }
+
+    /**
+     * Строка о том, когда расписание загружено с сайта
+     */
+    private String describeFreshness(GroupScheduleInfo groupInfo) {
+        long minutes = getAge(groupInfo).toMinutes();
+        String updated;
+        if (minutes < 1) {
+            updated = "Обновлено только что";
+        } else if (minutes < 60) {
+            updated = String.format("Обновлено %d мин. назад", minutes);
+        } else {
+            updated = "Обновлено " + groupInfo.getLastUpdateTime().format(UPDATE_TIME_FORMATTER);
+        }
+        return inFlightUpdates.containsKey(groupInfo.getGroupId()) ? updated + ", идет обновление" : updated;
     }
 
     /**
@@ -88,40 +169,111 @@ public class ScheduleManager {
         if (oldInfo != null) {
             String schedule = oldInfo.getScheduleForDate(date);
             if (schedule != null) {
-                return schedule + "\n(может быть не актуально)";
+                return schedule + "\n\n" + describeFreshness(oldInfo) + " (может быть не актуально)";
             }
         }
         return String.format("Не удалось получить расписание на %s для группы %s",
                 date.format(BotConfig.formatter), groupId);
     }
 
+    private boolean isBackingOff(String groupId) {
+        Long failedAt = lastFailures.get(groupId);
+        return failedAt != null && System.nanoTime() - failedAt < FAILURE_BACKOFF_NANOS;
+    }
+
     /**
      * Принудительное обновление расписания для группы
      */
     public boolean updateGroupSchedule(String groupId) throws IOException {
+        refreshGroupSchedule(groupId, true);
+        return true;
+    }
+
+    /**
+     * Обновить расписание группы. Если обновление этой группы уже идет, дождаться его результата
+     *
+     * @param force загрузить, даже если расписание обновили, пока вызывающий поток проверял срок
+     */
+    private GroupScheduleInfo refreshGroupSchedule(String groupId, boolean force) throws IOException {
+        updateRequests.increment();
+        CompletableFuture<GroupScheduleInfo> update = new CompletableFuture<>();
+        CompletableFuture<GroupScheduleInfo> running = inFlightUpdates.putIfAbsent(groupId, update);
+        if (running != null) {
+            coalescedUpdates.increment();
+            return awaitUpdate(running);
+        }
+        try {
+            GroupScheduleInfo cached = scheduleCache.get(groupId);
+            GroupScheduleInfo result;
+            if (!force && cached != null && !cached.isExpired() && !cached.isEmpty()) {
+                // Предыдущее обновление закончилось между проверкой срока и этой точкой
+                coalescedUpdates.increment();
+                result = cached;
+            } else {
+                updateFetches.increment();
+                try {
+                    result = fetchGroupSchedule(groupId);
+                } catch (IOException | RuntimeException e) {
+                    lastFailures.put(groupId, System.nanoTime());
+                    throw e;
+                }
+                lastFailures.remove(groupId);
+            }
+            update.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            update.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightUpdates.remove(groupId, update);
+        }
+    }
+
+    private static GroupScheduleInfo awaitUpdate(CompletableFuture<GroupScheduleInfo> update) throws IOException {
         try {
-            DocumentFetcher documentFetcher = new DocumentFetcher(groupId);
-            org.example.site.info.ScheduleDocumentInfo docInfo = documentFetcher.getScheduleDocumentInfo();
+            return update.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Ожидание обновления расписания прервано", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(cause);
+        }
+    }
 
-            Map<LocalDate, String> schedules = new HashMap<>();
+    private GroupScheduleInfo fetchGroupSchedule(String groupId) throws IOException {
+        try {
+            // Если группа уже в кэше, загружаются и разбираются только изменившиеся недели
+            GroupScheduleInfo oldInfo = scheduleCache.get(groupId);
+            DocumentFetcher documentFetcher = new DocumentFetcher(groupId, oldInfo != null);
+            ScheduleDocumentInfo docInfo = documentFetcher.getScheduleDocumentInfo();
 
             // Парсим текущую неделю
-            Map<LocalDate, String> currentWeekSchedules =
-                    scheduleParser.parseAllSchedules(docInfo.getThisWeekDocument());
-            schedules.putAll(currentWeekSchedules);
+            Map<LocalDate, List<Lesson>> currentWeekSchedules = docInfo.getThisWeekDocument() == null ? null
+                    : scheduleParser.parseAllLessons(docInfo.getThisWeekDocument());
 
             // Парсим следующую неделю
-            Map<LocalDate, String> nextWeekSchedules =
-                    scheduleParser.parseAllSchedules(docInfo.getNextWeekDocument());
-            schedules.putAll(nextWeekSchedules);
+            Map<LocalDate, List<Lesson>> nextWeekSchedules = docInfo.getNextWeekDocument() == null ? null
+                    : scheduleParser.parseAllLessons(docInfo.getNextWeekDocument());
 
             // Создаем или обновляем информацию о группе
-            GroupScheduleInfo groupInfo = new GroupScheduleInfo(groupId, schedules);
+            GroupScheduleInfo groupInfo = oldInfo == null
+                    ? new GroupScheduleInfo(groupId, currentWeekSchedules, nextWeekSchedules)
+                    : oldInfo.update(currentWeekSchedules, nextWeekSchedules);
             scheduleCache.put(groupId, groupInfo);
+            // Только теперь изменения сохранены, и неизменившиеся страницы можно пропускать
+            documentFetcher.commit();
 
-            System.out.printf("Обновлено расписание для группы %s. Найдено %d дней%n",
-                    groupId, schedules.size());
-            return true;
+            System.out.printf("Обновлено расписание для группы %s. Найдено %d дней, изменилось недель: %d%n",
+                    groupId, groupInfo.getAvailableDates().size(),
+                    (currentWeekSchedules == null ? 0 : 1) + (nextWeekSchedules == null ? 0 : 1));
+            return groupInfo;
 
         } catch (IOException e) {
             throw new IOException("Ошибка при обновлении расписания для группы " + groupId, e);
@@ -137,7 +289,7 @@ public class ScheduleManager {
                 GroupScheduleInfo groupInfo = scheduleCache.get(groupId);
                 if (groupInfo != null && groupInfo.isExpired()) {
                     try {
-                        updateGroupSchedule(groupId);
+                        refreshGroupSchedule(groupId, false);
                         System.out.printf("Автоматически обновлено расписание для группы: %s%n", groupId);
                     } catch (IOException e) {
                         System.err.printf("Не удалось обновить расписание для группы %s: %s%n",
@@ -176,10 +328,22 @@ public class ScheduleManager {
         scheduleCache.clear();
     }
 
+    public String getStats() {
+        long fetches = updateFetches.sum();
+        long requests = updateRequests.sum();
+        return String.format("""
+                Расписание: групп в кэше %d, обновляется сейчас %d
+                Запросов обновления: %d, загрузок с сайта: %d, объединено с другими: %d (%.2f запроса на загрузку)
+                Отдано устаревшим с обновлением в фоне: %d, фоновых обновлений пропущено после ошибки: %d""",
+                scheduleCache.size(), inFlightUpdates.size(), requests, fetches, coalescedUpdates.sum(),
+                fetches == 0 ? 0.0 : (double) requests / fetches, staleServed.sum(), backoffSkipped.sum());
+    }
+
     /**
      * Остановка менеджера
      */
     public void shutdown() {
+        refreshExecutor.shutdownNow();
         scheduler.shutdown();
         try {
             if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
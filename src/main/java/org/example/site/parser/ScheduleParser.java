@@ -1,40 +1,65 @@
 package org.example.site.parser;
 
+import org.example.site.info.Lesson;
+import org.example.site.info.ScheduleText;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Разбор таблицы расписания (body > table:nth-child(5) > tbody).
+ * Таблица читается за один проход по строкам tbody: текст каждой строки берется один раз,
+ * ячейки читаются напрямую из строки, без CSS-запросов по всему документу
+ */
 public class ScheduleParser {
     private static final int MAX_ROWS = 60;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final String TABLE_BODY_SELECTOR = "body > table:nth-child(5) > tbody";
+    // Дата dd.MM.yyyy отдельным словом
+    private static final Pattern DATE_PATTERN = Pattern.compile("(?<!\\S)\\d{2}\\.\\d{2}\\.\\d{4}(?!\\S)");
+    // Дисциплина, преподаватель "Фамилия И.О.", "Кабинет: номер" с адресом, отметка о дистанте
+    private static final Pattern LESSON_DETAILS = Pattern.compile(
+            "(.*?)(?: (\\p{Lu}[\\p{L}-]* \\p{Lu}\\.(?: ?\\p{Lu}\\.)?))?(?: Кабинет: (\\S+)(?: (.+?))?)?( дистанционно)?");
 
     /**
      * Найти все расписания с датами из документа
      */
     public Map<LocalDate, String> parseAllSchedules(Document document) {
         Map<LocalDate, String> schedules = new HashMap<>();
+        parseAllLessons(document).forEach((date, lessons) ->
+                schedules.put(date, ScheduleText.render("", lessons, true)));
+        return schedules;
+    }
 
-        for (int row = 1; row <= MAX_ROWS; row++) {
-            Element rowElement = document.select(createRowSelector(row)).first();
-            if (rowElement != null) {
-                String rowText = rowElement.text();
+    /**
+     * Найти пары на все даты из документа
+     */
+    public Map<LocalDate, List<Lesson>> parseAllLessons(Document document) {
+        Map<LocalDate, List<Lesson>> schedules = new HashMap<>();
+        Table table = Table.of(document);
 
+        for (int row = 1; row <= MAX_ROWS; row++) {
+            String rowText = table.text(row);
+            if (rowText != null) {
                 // Ищем дату в строке
                 LocalDate date = extractDateFromText(rowText);
                 if (date != null) {
-                    // Следующие строки содержат расписание
-                    String schedule = extractScheduleForDate(row, document);
-                    if (!schedule.trim().isEmpty()) {
-                        schedules.put(date, schedule);
+                    // Строка после даты - заголовок, дальше расписание
+                    List<Lesson> lessons = extractLessons(table, row + 2);
+                    if (!lessons.isEmpty()) {
+                        schedules.put(date, lessons);
                     }
-                    // Пропускаем строки с расписанием
-                    row += countScheduleRows(row, document);
+                    // Пропускаем заголовок и строки с расписанием, повторно строки не обходятся
+                    row += table.hasScheduleRow(row + 1) ? 1 + lessons.size() : 0;
                 }
             }
         }
@@ -46,9 +71,11 @@ public class ScheduleParser {
      * Старый метод для обратной совместимости
      */
     public String findScheduleForDay(String day, Document document) {
+        Table table = Table.of(document);
         for (int row = 1; row <= MAX_ROWS; row++) {
-            if (isDayRow(day, row, document)) {
-                return formatDaySchedule(day, row + 1, document);
+            String rowText = table.text(row);
+            if ((rowText == null ? "" : rowText).contains(day)) {
+                return ScheduleText.render(day, extractLessons(table, row + 2), false);
             }
         }
         return "Not found";
@@ -59,106 +86,114 @@ public class ScheduleParser {
      */
     private LocalDate extractDateFromText(String text) {
         // Ищем подстроку с форматом даты dd.MM.yyyy
-        String[] words = text.split("\\s+");
-        for (String word : words) {
-            word = word.trim();
-            if (word.matches("\\d{2}\\.\\d{2}\\.\\d{4}")) {
-                try {
-                    return LocalDate.parse(word, DATE_FORMATTER);
-                } catch (DateTimeParseException e) {
-                    // Продолжаем поиск
-                }
+        Matcher matcher = DATE_PATTERN.matcher(text);
+        while (matcher.find()) {
+            try {
+                return LocalDate.parse(matcher.group(), DATE_FORMATTER);
+            } catch (DateTimeParseException e) {
+                // Продолжаем поиск
             }
         }
         return null;
     }
 
     /**
-     * Извлечь расписание для найденной даты
+     * Собрать пары, начиная со строки firstRow и до первой пустой строки
      */
-    private String extractScheduleForDate(int dateRow, Document document) {
-        StringBuilder schedule = new StringBuilder();
-        int currentRow = dateRow + 2;
-
-        while (hasScheduleRow(currentRow, document)) {
-            schedule.append(extractLessonInfo(currentRow, document)).append("\n");
-            currentRow++;
+    private List<Lesson> extractLessons(Table table, int firstRow) {
+        List<Lesson> lessons = new ArrayList<>();
+        for (int row = firstRow; table.hasScheduleRow(row); row++) {
+            Element element = table.row(row);
+            lessons.add(parseLesson(cellText(element, 1), cellText(element, 2), cellText(element, 4)));
         }
-
-        return cleanScheduleText(schedule.toString());
+        return lessons;
     }
 
-    /**
-     * Подсчитать количество строк с расписанием
-     */
-    private int countScheduleRows(int startRow, Document document) {
-        int count = 0;
-        int currentRow = startRow + 1;
-
-        while (hasScheduleRow(currentRow, document)) {
-            count++;
-            currentRow++;
+    // Разложить ячейку "Дисциплина, преподаватель" на поля; если поля не собираются обратно в тот же текст,
+    // текст ячейки целиком остается дисциплиной
+    static Lesson parseLesson(String number, String timeRange, String details) {
+        Matcher matcher = LESSON_DETAILS.matcher(details);
+        if (matcher.matches()) {
+            Lesson lesson = Lesson.builder()
+                    .number(number)
+                    .timeRange(timeRange)
+                    .subject(matcher.group(1))
+                    .teacher(matcher.group(2))
+                    .room(matcher.group(3))
+                    .location(matcher.group(4))
+                    .remote(matcher.group(5) != null)
+                    .build();
+            if (lesson.getDetails().equals(details)) {
+                return lesson;
+            }
         }
-
-        return count;
-    }
-
-    private boolean isDayRow(String day, int row, Document document) {
-        String selector = createRowSelector(row);
-        return document.select(selector).text().contains(day);
+        return Lesson.builder()
+                .number(number)
+                .timeRange(timeRange)
+                .subject(details)
+                .build();
     }
 
-    private String formatDaySchedule(String day, int startRow, Document document) {
-        StringBuilder schedule = new StringBuilder(day);
-        int currentRow = startRow;
-        currentRow++;
-
-        while (hasScheduleRow(currentRow, document)) {
-            schedule.append(extractLessonInfo(currentRow, document));
-            currentRow++;
+    // Ячейка td:nth-child(column) строки
+    private static String cellText(Element row, int column) {
+        if (column > row.childrenSize()) {
+            return "";
         }
-
-        return cleanScheduleText(schedule.toString());
+        Element cell = row.child(column - 1);
+        return "td".equals(cell.normalName()) ? cell.text().trim() : "";
     }
 
-    private boolean hasScheduleRow(int row, Document document) {
-        String selector = createRowSelector(row);
-        Elements elements = document.select(selector);
-        return !elements.isEmpty() && !elements.text().trim().isEmpty();
-    }
+    /**
+     * Строки tbody с номерами как у tr:nth-child(n): текст строки считается один раз
+     */
+    private static final class Table {
+        private static final Table EMPTY = new Table(new Element[0]);
 
-    private String extractLessonInfo(int row, Document document) {
-        String number = extractCellText(document, row, 1);
-        String time = extractCellText(document, row, 2);
-        String schedule = extractCellText(document, row, 4);
-        String normalizedSchedule = normalizeScheduleText(schedule);
+        // rows[n - 1] - n-й дочерний элемент tbody, если это tr, иначе null
+        private final Element[] rows;
+        private final String[] texts;
 
-        return String.format("\n%s) %s\n%s", number, time, normalizedSchedule);
-    }
+        private Table(Element[] rows) {
+            this.rows = rows;
+            this.texts = new String[rows.length];
+        }
 
-    private String extractCellText(Document document, int row, int column) {
-        String selector = String.format(
-                "body > table:nth-child(5) > tbody > tr:nth-child(%d) > td:nth-child(%d)",
-                row, column
-        );
-        Element element = document.select(selector).first();
-        return element != null ? element.text().trim() : "";
-    }
+        private static Table of(Document document) {
+            Element body = document.selectFirst(TABLE_BODY_SELECTOR);
+            if (body == null) {
+                return EMPTY;
+            }
+            Element[] rows = new Element[body.childrenSize()];
+            for (int i = 0; i < rows.length; i++) {
+                Element child = body.child(i);
+                if ("tr".equals(child.normalName())) {
+                    rows[i] = child;
+                }
+            }
+            return new Table(rows);
+        }
 
-    private String createRowSelector(int row) {
-        return String.format("body > table:nth-child(5) > tbody > tr:nth-child(%d)", row);
-    }
+        private Element row(int row) {
+            return row >= 1 && row <= rows.length ? rows[row - 1] : null;
+        }
 
-    private String normalizeScheduleText(String schedule) {
-        return schedule.replace("Кабинет:", "\nКабинет:")
-                .replace("дистанционно", "(дистант)")
-                .trim();
-    }
+        // Текст строки или null, если строки с таким номером нет
+        private String text(int row) {
+            Element element = row(row);
+            if (element == null) {
+                return null;
+            }
+            String text = texts[row - 1];
+            if (text == null) {
+                text = element.text();
+                texts[row - 1] = text;
+            }
+            return text;
+        }
 
-    private String cleanScheduleText(String schedule) {
-        return schedule.replaceAll("\\s+$", "")
-                .replaceAll("Московское шоссе, 120", "")
-                .replaceAll(" Замена Свободное время на:", "")
-                .trim();
+        private boolean hasScheduleRow(int row) {
+            String text = text(row);
+            return text != null && !text.trim().isEmpty();
+        }
     }
-}
\ No newline at end of file
+}
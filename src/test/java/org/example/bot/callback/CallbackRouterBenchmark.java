@@ -0,0 +1,108 @@
+package org.example.bot.callback;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение CallbackRouter со старой цепочкой endsWith/contains из CallbackResponseHandler,
+ * после которой обработчики заново разбирали аргумент через replaceAll.
+ * Набор callback данных примерно повторяет реальные нажатия: меню, файлы, ссылки, даты расписания, курсы и группы.
+ * Запуск: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath org.openjdk.jmh.Main CallbackRouterBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallbackRouterBenchmark {
+    private static final String[] CALLBACKS = {
+            "BackButton", "LessonButton", "FileButton", "LinksButton", "ScheduleDay", "Help",
+            "BackButton", "FileButton", "LessonButton", "ScheduleDay",
+            "Лекции_Folder", "Практика по ООП_Folder", "1532File", "87File", "20145File",
+            "12GroupForLinks", "3GroupForLinks", "418_lnk", "9_lnk",
+            "2025-03-14_ScheduleDate", "2025-03-15_ScheduleDate",
+            "1 курсYear1", "3 курсYear3", "ИС-21Group=1024", "ПИ-23Group=2048",
+            "ЛекцииAddFileButton", "ИС-21AddLinkButton", "DeleteFileButton", "77FilesDelAdm",
+            "1532_FDel", "418_LDel", "5_DFolder", "12_DGroup", "12_LinkFlrDel", "unexpected"
+    };
+
+    private final CallbackRouter router = new CallbackRouter();
+
+    @Benchmark
+    public void router(Blackhole blackhole) {
+        for (String callback : CALLBACKS) {
+            CallbackCommand command = router.route(callback);
+            blackhole.consume(command.getType());
+            blackhole.consume(command.getId());
+            blackhole.consume(command.getText());
+            blackhole.consume(command.getDate());
+        }
+    }
+
+    @Benchmark
+    public void legacyChain(Blackhole blackhole) {
+        for (String callback : CALLBACKS) {
+            legacyRoute(callback, blackhole);
+        }
+    }
+
+    private static boolean isBasicCommand(String data) {
+        return switch (data) {
+            case "Help", "LessonButton", "BackButton", "FileButton", "AddFolderButton", "AddGroupButton",
+                 "TodayScheduleButton", "TomorrowScheduleButton", "SelectYearButton", "GetNotification",
+                 "DeleteFileButton", "GroupNotSelected", "LinksButton", "DeleteLinksButton", "FullBan",
+                 "SharingBan", "SimpleError", "AdminError" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Старая цепочка проверок вместе с разбором аргумента в обработчиках
+     */
+    private static void legacyRoute(String data, Blackhole blackhole) {
+        if (isBasicCommand(data)) {
+            blackhole.consume(data);
+        } else if (data.endsWith("_Folder") || data.equals("FileButton")) {
+            blackhole.consume(data.replace("_Folder", ""));
+        } else if (data.contains("DeleteFileButton") || data.contains("FilesDelAdm")) {
+            blackhole.consume(Long.parseLong(data.replaceAll("FilesDelAdm", "")));
+        } else if (data.contains("ScheduleDay")) {
+            blackhole.consume(data);
+        } else if (data.endsWith("_ScheduleDate")) {
+            blackhole.consume(LocalDate.parse(data.replaceAll("_ScheduleDate", "")));
+        } else if (data.endsWith("File")) {
+            blackhole.consume(Long.parseLong(data.replaceAll("File$", "")));
+        } else if (data.endsWith("_FDel")) {
+            blackhole.consume(Long.parseLong(data.replaceAll("_FDel$", "")));
+        } else if (data.endsWith("_LDel")) {
+            blackhole.consume(Long.parseLong(data.replaceAll("_LDel", "")));
+        } else if (data.endsWith("_DFolder")) {
+            blackhole.consume(Long.parseLong(data.replaceAll("_DFolder$", "")));
+        } else if (data.endsWith("_DGroup")) {
+            blackhole.consume(Long.parseLong(data.replaceAll("_DGroup$", "")));
+        } else if (data.endsWith("_LinkFlrDel")) {
+            blackhole.consume(Long.parseLong(data.replaceAll("_LinkFlrDel$", "")));
+        } else if (data.endsWith("GroupForLinks")) {
+            blackhole.consume(Long.parseLong(data.replace("GroupForLinks", "")));
+        } else if (data.endsWith("AddFileButton")) {
+            blackhole.consume(data.replaceAll("AddFileButton$", ""));
+        } else if (data.endsWith("AddLinkButton")) {
+            blackhole.consume(data.replace("AddLinkButton", ""));
+        } else if (data.endsWith("_lnk")) {
+            blackhole.consume(Long.parseLong((data + "_lnk").replaceAll("[^0-9]+$", "")));
+        } else if (data.contains("Year")) {
+            int index = data.indexOf("Year");
+            blackhole.consume(Integer.parseInt(data.substring(index).replace("Year", "")));
+        } else if (data.contains("Group")) {
+            String group = data.substring(data.indexOf("Group") + 5);
+            blackhole.consume(group.startsWith("=") ? group.substring(1) : group);
+        } else {
+            blackhole.consume(data);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.example.bot.dispatcher;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Сравнение RingBuffer с LinkedBlockingDeque, через которую раньше шли апдейты в пул потоков.
+ * Производители - поток опроса (1) и нагрузка на 4 и 16 потоков, потребитель всегда один, как UpdateScheduler.
+ * Результат смотреть по счетчикам offered и polled (операций в миллисекунду).
+ * Запуск: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath org.openjdk.jmh.Main IngestQueueBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class IngestQueueBenchmark {
+    private static final int CAPACITY = 256;
+    private static final int BATCH = 32;
+    private static final Object ITEM = new Object();
+
+    private RingBuffer<Object> ring;
+    private LinkedBlockingDeque<Object> deque;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        ring = new RingBuffer<>(CAPACITY);
+        deque = new LinkedBlockingDeque<>(CAPACITY);
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long offered;
+        public long polled;
+        private final Consumer<Object> sink = item -> polled++;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            offered = 0;
+            polled = 0;
+        }
+    }
+
+    private void offerRing(Counters counters) {
+        if (ring.offer(ITEM)) {
+            counters.offered++;
+        } else {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void pollRing(Counters counters) {
+        if (ring.drain(counters.sink, BATCH) == 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void offerDeque(Counters counters) {
+        if (deque.offer(ITEM)) {
+            counters.offered++;
+        } else {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void pollDeque(Counters counters) {
+        int polled = 0;
+        while (polled < BATCH && deque.poll() != null) {
+            polled++;
+        }
+        if (polled == 0) {
+            Thread.onSpinWait();
+        }
+        counters.polled += polled;
+    }
+
+    @Benchmark
+    @Group("ring_p1")
+    @GroupThreads(1)
+    public void ringProducer1(Counters counters) {
+        offerRing(counters);
+    }
+
+    @Benchmark
+    @Group("ring_p1")
+    @GroupThreads(1)
+    public void ringConsumer1(Counters counters) {
+        pollRing(counters);
+    }
+
+    @Benchmark
+    @Group("ring_p4")
+    @GroupThreads(4)
+    public void ringProducer4(Counters counters) {
+        offerRing(counters);
+    }
+
+    @Benchmark
+    @Group("ring_p4")
+    @GroupThreads(1)
+    public void ringConsumer4(Counters counters) {
+        pollRing(counters);
+    }
+
+    @Benchmark
+    @Group("ring_p16")
+    @GroupThreads(16)
+    public void ringProducer16(Counters counters) {
+        offerRing(counters);
+    }
+
+    @Benchmark
+    @Group("ring_p16")
+    @GroupThreads(1)
+    public void ringConsumer16(Counters counters) {
+        pollRing(counters);
+    }
+
+    @Benchmark
+    @Group("deque_p1")
+    @GroupThreads(1)
+    public void dequeProducer1(Counters counters) {
+        offerDeque(counters);
+    }
+
+    @Benchmark
+    @Group("deque_p1")
+    @GroupThreads(1)
+    public void dequeConsumer1(Counters counters) {
+        pollDeque(counters);
+    }
+
+    @Benchmark
+    @Group("deque_p4")
+    @GroupThreads(4)
+    public void dequeProducer4(Counters counters) {
+        offerDeque(counters);
+    }
+
+    @Benchmark
+    @Group("deque_p4")
+    @GroupThreads(1)
+    public void dequeConsumer4(Counters counters) {
+        pollDeque(counters);
+    }
+
+    @Benchmark
+    @Group("deque_p16")
+    @GroupThreads(16)
+    public void dequeProducer16(Counters counters) {
+        offerDeque(counters);
+    }
+
+    @Benchmark
+    @Group("deque_p16")
+    @GroupThreads(1)
+    public void dequeConsumer16(Counters counters) {
+        pollDeque(counters);
+    }
+}
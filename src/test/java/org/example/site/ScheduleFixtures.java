@@ -0,0 +1,28 @@
+package org.example.site;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Сохраненные страницы расписания из src/test/resources/schedule
+ */
+public final class ScheduleFixtures {
+    private ScheduleFixtures() {}
+
+    public static Document loadFixture(String name) throws IOException {
+        return Jsoup.parse(readFixture(name), "");
+    }
+
+    public static String readFixture(String name) throws IOException {
+        try (InputStream is = ScheduleFixtures.class.getResourceAsStream("/schedule/" + name + ".html")) {
+            assertNotNull(is, "fixture " + name);
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.example.site.fetcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageFetcherTest {
+    private HttpServer server;
+    private volatile String page = "<html><head><title>Неделя 1</title></head><body></body></html>";
+    private volatile String etag;
+    private volatile String lastIfNoneMatch;
+    private volatile String lastAcceptEncoding;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        lastAcceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (etag != null && etag.equals(lastIfNoneMatch)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(page.getBytes(StandardCharsets.UTF_8));
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+        exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        if (etag != null) {
+            exchange.getResponseHeaders().add("ETag", etag);
+        }
+        exchange.sendResponseHeaders(200, compressed.size());
+        try (OutputStream body = exchange.getResponseBody()) {
+            compressed.writeTo(body);
+        }
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    void notModifiedByEtag() {
+        etag = "\"v1\"";
+        PageFetcher fetcher = PageFetcher.getInstance();
+
+        PageFetcher.FetchedPage first = fetcher.fetch("etag", url("/etag"), true).join();
+        fetcher.commit(first);
+        assertTrue(first.isModified());
+        assertEquals("Неделя 1", first.getDocument().title());
+        assertEquals("gzip", lastAcceptEncoding);
+
+        PageFetcher.FetchedPage second = fetcher.fetch("etag", url("/etag"), true).join();
+        assertEquals("\"v1\"", lastIfNoneMatch);
+        assertFalse(second.isModified());
+        assertNull(second.getDocument());
+
+        // Без условия документ возвращается всегда
+        assertTrue(fetcher.fetch("etag", url("/etag"), false).join().isModified());
+    }
+
+    @Test
+    void sameContentIsNotParsedAgain() {
+        PageFetcher fetcher = PageFetcher.getInstance();
+
+        assertTrue(fetchAndCommit(fetcher, "hash", url("/hash")).isModified());
+        assertFalse(fetchAndCommit(fetcher, "hash", url("/hash")).isModified());
+
+        page = "<html><head><title>Неделя 2</title></head><body></body></html>";
+        PageFetcher.FetchedPage changed = fetchAndCommit(fetcher, "hash", url("/hash"));
+        assertTrue(changed.isModified());
+        assertEquals("Неделя 2", changed.getDocument().title());
+
+        // Другой адрес под тем же ключом (сменилась неделя) загружается целиком
+        assertTrue(fetchAndCommit(fetcher, "hash", url("/hash?wk=2")).isModified());
+    }
+
+    @Test
+    void uncommittedChangeIsSeenOnRetry() {
+        etag = "\"v1\"";
+        PageFetcher fetcher = PageFetcher.getInstance();
+
+        // Первая загрузка прошла и попала в кэш
+        assertTrue(fetchAndCommit(fetcher, "retry", url("/retry")).isModified());
+
+        // Текущая неделя изменилась, но загрузка второй недели упала, и результат не сохранен
+        page = "<html><head><title>Неделя 2</title></head><body></body></html>";
+        etag = "\"v2\"";
+        assertTrue(fetcher.fetch("retry", url("/retry"), true).join().isModified());
+
+        // Повтор отправляет старые валидаторы и снова получает изменившуюся страницу
+        PageFetcher.FetchedPage retry = fetcher.fetch("retry", url("/retry"), true).join();
+        assertEquals("\"v1\"", lastIfNoneMatch);
+        assertTrue(retry.isModified());
+        assertEquals("Неделя 2", retry.getDocument().title());
+    }
+
+    private static PageFetcher.FetchedPage fetchAndCommit(PageFetcher fetcher, String key, String url) {
+        PageFetcher.FetchedPage page = fetcher.fetch(key, url, true).join();
+        fetcher.commit(page);
+        return page;
+    }
+}
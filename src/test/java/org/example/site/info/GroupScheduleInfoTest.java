@@ -0,0 +1,52 @@
+package org.example.site.info;
+
+import org.example.site.parser.ScheduleParser;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.example.site.ScheduleFixtures.loadFixture;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GroupScheduleInfoTest {
+    @Test
+    void compactScheduleRendersParserText() throws IOException {
+        ScheduleParser parser = new ScheduleParser();
+        for (String fixture : new String[]{"week", "edge"}) {
+            Document document = loadFixture(fixture);
+            Map<LocalDate, String> texts = parser.parseAllSchedules(document);
+            GroupScheduleInfo info = new GroupScheduleInfo(fixture, parser.parseAllLessons(document));
+
+            assertEquals(new ArrayList<>(new TreeMap<>(texts).keySet()), info.getAvailableDates(), fixture);
+            texts.forEach((date, text) -> assertEquals(text, info.getScheduleForDate(date), fixture + " " + date));
+            assertNull(info.getScheduleForDate(LocalDate.of(2000, 1, 1)));
+        }
+    }
+
+    @Test
+    void lessonFieldsAreExtracted() throws IOException {
+        GroupScheduleInfo info = new GroupScheduleInfo("week", new ScheduleParser().parseAllLessons(loadFixture("week")));
+
+        List<Lesson> monday = info.getDailySchedule(LocalDate.of(2025, 10, 13)).getLessons();
+        Lesson first = monday.get(0);
+        assertEquals("1", first.getNumber());
+        assertEquals("08:30-10:00", first.getTimeRange());
+        assertEquals("Базы данных", first.getSubject());
+        assertEquals("Петрова А.С.", first.getTeacher());
+        assertEquals("200", first.getRoom());
+        assertEquals("Московское шоссе, 120", first.getLocation());
+        assertFalse(first.isRemote());
+
+        Lesson remote = info.getDailySchedule(LocalDate.of(2025, 10, 14)).getLessons().get(1);
+        assertEquals("Иностранный язык", remote.getSubject());
+        assertEquals("Smith J.", remote.getTeacher());
+        assertNull(remote.getRoom());
+        assertTrue(remote.isRemote());
+    }
+}
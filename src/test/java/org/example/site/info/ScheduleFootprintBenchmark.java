@@ -0,0 +1,123 @@
+package org.example.site.info;
+
+import org.example.site.ScheduleFixtures;
+import org.example.site.parser.ScheduleParser;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сколько памяти занимает закэшированное расписание одной группы: прежнее хранение (готовый текст на каждый день
+ * в ConcurrentHashMap) против компактного (коды StringDictionary в одном массиве на день).
+ * Расписание каждой группы разбирается из своей копии страницы, как при загрузке с сайта, номера кабинетов
+ * различаются между группами. Счетчик bytesPerGroup - прирост занятой кучи после GC, деленный на число групп.
+ * Общий словарь строк заполняется на разогреве, поэтому в замер попадают только данные самих групп.
+ * Запуск: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath org.openjdk.jmh.Main ScheduleFootprintBenchmark"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 1)
+// Serial GC на одном процессоре не всегда освобождает память по System.gc(), замер нестабилен
+@Fork(value = 1, jvmArgsAppend = {"-Xmx512m", "-XX:+UseG1GC"})
+@State(Scope.Benchmark)
+public class ScheduleFootprintBenchmark {
+    private static final int GROUPS = 500;
+    // Различных наборов кабинетов среди групп
+    private static final int ROOM_VARIANTS = 50;
+
+    @Param({"legacy", "compact"})
+    private String layout;
+
+    private final String[][] pages = new String[ROOM_VARIANTS][];
+    private final ScheduleParser parser = new ScheduleParser();
+    // Кэш держится до следующего замера, чтобы его не собрал GC до подсчета
+    private Object[] cache;
+    private long heapBefore;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerGroup;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        String thisWeek = ScheduleFixtures.readFixture("week");
+        String nextWeek = ScheduleFixtures.readFixture("edge");
+        for (int variant = 0; variant < ROOM_VARIANTS; variant++) {
+            String room = "Кабинет: " + variant;
+            pages[variant] = new String[]{thisWeek.replace("Кабинет: ", room), nextWeek.replace("Кабинет: ", room)};
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void releaseCache() {
+        cache = null;
+        heapBefore = usedHeap();
+    }
+
+    @Benchmark
+    public void cacheGroups(Footprint footprint) {
+        cache = new Object[GROUPS];
+        for (int group = 0; group < GROUPS; group++) {
+            String[] groupPages = pages[group % ROOM_VARIANTS];
+            String groupId = String.valueOf(group);
+            if (layout.equals("legacy")) {
+                Map<LocalDate, String> schedules = new HashMap<>();
+                for (String page : groupPages) {
+                    schedules.putAll(parser.parseAllSchedules(Jsoup.parse(page)));
+                }
+                cache[group] = new LegacyGroupScheduleInfo(groupId, schedules);
+            } else {
+                Map<LocalDate, List<Lesson>> lessons = new HashMap<>();
+                for (String page : groupPages) {
+                    lessons.putAll(parser.parseAllLessons(Jsoup.parse(page)));
+                }
+                cache[group] = new GroupScheduleInfo(groupId, lessons);
+            }
+        }
+        footprint.bytesPerGroup = (usedHeap() - heapBefore) / GROUPS;
+    }
+
+    private long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Прежнее хранение расписания группы
+     */
+    private static class LegacyGroupScheduleInfo {
+        private final String groupId;
+        private final Map<LocalDate, LegacyDailySchedule> dailySchedules = new ConcurrentHashMap<>();
+        private final LocalDateTime lastUpdateTime = LocalDateTime.now();
+
+        private LegacyGroupScheduleInfo(String groupId, Map<LocalDate, String> scheduleTexts) {
+            this.groupId = groupId;
+            scheduleTexts.forEach((date, text) -> dailySchedules.put(date, new LegacyDailySchedule(date, text)));
+        }
+    }
+
+    private static class LegacyDailySchedule {
+        private final LocalDate date;
+        private final String scheduleText;
+
+        private LegacyDailySchedule(LocalDate date, String scheduleText) {
+            this.date = date;
+            this.scheduleText = scheduleText;
+        }
+    }
+}
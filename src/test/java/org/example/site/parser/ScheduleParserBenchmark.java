@@ -0,0 +1,46 @@
+package org.example.site.parser;
+
+import org.example.site.ScheduleFixtures;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение однопроходного ScheduleParser с прежней реализацией (CSS-запрос по документу на каждую строку и ячейку)
+ * на сохраненных страницах расписания из src/test/resources/schedule.
+ * Запуск: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath org.openjdk.jmh.Main ScheduleParserBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScheduleParserBenchmark {
+    @Param({"week", "edge"})
+    private String fixture;
+
+    private Document document;
+    private final ScheduleParser parser = new ScheduleParser();
+    private final LegacyScheduleParser legacyParser = new LegacyScheduleParser();
+
+    @Setup
+    public void setup() throws IOException {
+        document = ScheduleFixtures.loadFixture(fixture);
+    }
+
+    @Benchmark
+    public Map<LocalDate, String> singlePass() {
+        return parser.parseAllSchedules(document);
+    }
+
+    @Benchmark
+    public Map<LocalDate, String> legacy() {
+        return legacyParser.parseAllSchedules(document);
+    }
+}
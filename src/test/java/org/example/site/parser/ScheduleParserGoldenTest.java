@@ -0,0 +1,60 @@
+package org.example.site.parser;
+
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.example.site.ScheduleFixtures.loadFixture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Сверка однопроходного ScheduleParser с эталонным выводом (schedule/*.golden.txt),
+ * полученным прежней реализацией на сохраненных страницах расписания
+ */
+public class ScheduleParserGoldenTest {
+    private static final String[] FIXTURES = {"week", "edge"};
+    private static final String[] DAYS = {"Понедельник", "Вторник", "Среда", "Пятница", "Суббота", "Воскресенье", "13.10"};
+
+    private static String readGolden(String name) throws IOException {
+        try (InputStream is = ScheduleParserGoldenTest.class.getResourceAsStream("/schedule/" + name + ".golden.txt")) {
+            assertNotNull(is, "golden " + name);
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    static String render(Map<LocalDate, String> schedules) {
+        StringBuilder out = new StringBuilder();
+        new TreeMap<>(schedules).forEach((date, schedule) ->
+                out.append("== ").append(date).append(" ==\n").append(schedule).append('\n'));
+        return out.toString();
+    }
+
+    @Test
+    void parseAllSchedulesMatchesGolden() throws IOException {
+        ScheduleParser parser = new ScheduleParser();
+        for (String fixture : FIXTURES) {
+            assertEquals(readGolden(fixture), render(parser.parseAllSchedules(loadFixture(fixture))), fixture);
+        }
+    }
+
+    @Test
+    void sameResultAsLegacyParser() throws IOException {
+        ScheduleParser parser = new ScheduleParser();
+        LegacyScheduleParser legacy = new LegacyScheduleParser();
+        for (String fixture : FIXTURES) {
+            Document document = loadFixture(fixture);
+            assertEquals(legacy.parseAllSchedules(document), parser.parseAllSchedules(document), fixture);
+            for (String day : DAYS) {
+                assertEquals(legacy.findScheduleForDay(day, document), parser.findScheduleForDay(day, document),
+                        fixture + " " + day);
+            }
+        }
+    }
+}